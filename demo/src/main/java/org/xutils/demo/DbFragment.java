@@ -32,13 +32,8 @@ public class DbFragment extends BaseFragment {
             // 不设置dbDir时, 默认存储在app的私有目录.
             .setDbDir(new File("/sdcard")) // "sdcard"的写法并非最佳实践, 这里为了简单, 先这样写了.
             .setDbVersion(2)
-            .setDbOpenListener(new DbManager.DbOpenListener() {
-                @Override
-                public void onDbOpened(DbManager db) {
-                    // 开启WAL, 对写入加速提升巨大
-                    db.getDatabase().enableWriteAheadLogging();
-                }
-            })
+            // 开启WAL, 对写入加速提升巨大, 读写也可以并发
+            .setWalEnabled(true)
             .setDbUpgradeListener(new DbManager.DbUpgradeListener() {
                 @Override
                 public void onUpgrade(DbManager db, int oldVersion, int newVersion) {
@@ -105,6 +105,11 @@ public interface DbManager extends Closeable {
      */
     void close() throws IOException;
 
+    /**
+     * WAL模式下把日志写回数据库文件并截断日志, 可以在空闲时调用.
+     */
+    void checkpoint() throws DbException;
+
     ///////////// custom
     int executeUpdateDelete(SqlInfo sqlInfo) throws DbException;
 
@@ -139,6 +144,12 @@ public interface DbManager extends Closeable {
         private TableCreateListener tableCreateListener;
         private DbOpenListener dbOpenListener;
 
+        private boolean walEnabled = false;
+        private String synchronousMode;
+        private int cacheSize = 0;
+        private long mmapSize = -1;
+        private int walAutoCheckpoint = -1;
+
         public DaoConfig() {
         }
 
@@ -179,6 +190,51 @@ public interface DbManager extends Closeable {
             return this;
         }
 
+        /**
+         * 开启WAL(write-ahead logging): 读写可以并发,
+         * 事务之外的查询使用系统SQLiteDatabase连接池中的只读连接, 不会被后台写入的事务阻塞.
+         */
+        public DaoConfig setWalEnabled(boolean walEnabled) {
+            this.walEnabled = walEnabled;
+            return this;
+        }
+
+        /**
+         * PRAGMA synchronous: "OFF", "NORMAL", "FULL"; 为null时使用系统默认值.
+         * WAL模式下使用NORMAL可以减少提交时的fsync.
+         */
+        public DaoConfig setSynchronousMode(String synchronousMode) {
+            this.synchronousMode = synchronousMode;
+            return this;
+        }
+
+        /**
+         * PRAGMA cache_size: 正数为页数, 负数为KB; 为0时使用系统默认值.
+         * 只作用于主连接(写入和事务), WAL模式下的只读连接使用系统默认值.
+         */
+        public DaoConfig setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * PRAGMA mmap_size(byte), 0为不使用内存映射; 小于0时使用系统默认值.
+         * 只作用于主连接(写入和事务), WAL模式下的只读连接使用系统默认值.
+         */
+        public DaoConfig setMmapSize(long mmapSize) {
+            this.mmapSize = mmapSize;
+            return this;
+        }
+
+        /**
+         * PRAGMA wal_autocheckpoint: 日志达到多少页时自动checkpoint, 0为关闭自动checkpoint
+         * (需要调用DbManager.checkpoint()); 小于0时使用系统默认值.
+         */
+        public DaoConfig setWalAutoCheckpoint(int walAutoCheckpoint) {
+            this.walAutoCheckpoint = walAutoCheckpoint;
+            return this;
+        }
+
         public File getDbDir() {
             return dbDir;
         }
@@ -195,6 +251,26 @@ public interface DbManager extends Closeable {
             return allowTransaction;
         }
 
+        public boolean isWalEnabled() {
+            return walEnabled;
+        }
+
+        public String getSynchronousMode() {
+            return synchronousMode;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public long getMmapSize() {
+            return mmapSize;
+        }
+
+        public int getWalAutoCheckpoint() {
+            return walAutoCheckpoint;
+        }
+
         public DbOpenListener getDbOpenListener() {
             return dbOpenListener;
         }
@@ -45,4 +45,19 @@ public interface HttpManager {
      * 同步请求
      */
     <T> T requestSync(HttpMethod method, RequestParams entity, Callback.TypedCallback<T> callback) throws Throwable;
+
+    /**
+     * 后台预先解析域名, 结果缓存ttlMillis.
+     * 使用PooledHttpTransport时连接直接使用缓存的地址;
+     * 默认的UrlConnectionTransport由系统自己解析域名, 只能预热系统的域名缓存(有效期很短), 效果有限.
+     */
+    void prefetchDns(long ttlMillis, String... hosts);
+
+    /**
+     * 后台预先解析域名并建立连接(包括tls握手), 连接放入连接池供之后的请求复用.
+     * 只在使用PooledHttpTransport时有效; 默认的UrlConnectionTransport和其他传输层只预先解析域名.
+     * HostStats中的tcp连接和tls握手时间同样只有PooledHttpTransport会记录.
+     * entity的代理和SSL设置需要与之后的请求一致.
+     */
+    void preconnect(RequestParams entity);
 }
@@ -5,6 +5,7 @@ import android.widget.ImageView;
 
 import org.xutils.common.Callback;
 import org.xutils.image.ImageOptions;
+import org.xutils.image.MemCacheStats;
 
 import java.io.File;
 
@@ -28,5 +29,17 @@ public interface ImageManager {
 
     void clearMemCache();
 
+    /**
+     * 内存不足时释放图片内存缓存和BitmapPool, 可在Application.onTrimMemory中调用.
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_*
+     */
+    void trimMemory(int level);
+
+    /**
+     * 内存缓存各级的命中统计
+     */
+    MemCacheStats getMemCacheStats();
+
     void clearCacheFiles();
 }
@@ -0,0 +1,353 @@
+package org.xutils.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段加锁的LRU缓存, 用于替代多线程频繁访问时的{@link LruCache}.
+ * <p>
+ * key按hash分散到多个段中, 每个段是一个按访问排序的LinkedHashMap, 只由该段自己的锁保护,
+ * get/put不再竞争同一个监视器. 容量按所有段的总大小计算(单个条目可以占用全部容量),
+ * 超出容量时轮流从各段淘汰最久未访问的条目, 因此整体上是近似的LRU.
+ * <p>
+ * sizeOf/entryRemoved/create的约定与{@link LruCache}相同;
+ * 命中, 未命中和淘汰等计数器按线程分散累加, 读取时求和.
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private static final int MAX_SHARD_COUNT = 16;
+
+    private final Shard<K, V>[] shards;
+    private final int shardMask;
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger evictCursor = new AtomicInteger(0);
+    private volatile int maxSize;
+
+    private final StripedCounter putCount = new StripedCounter();
+    private final StripedCounter createCount = new StripedCounter();
+    private final StripedCounter evictionCount = new StripedCounter();
+    private final StripedCounter hitCount = new StripedCounter();
+    private final StripedCounter missCount = new StripedCounter();
+
+    /**
+     * @param maxSize 未重写{@link #sizeOf}时为最大条目数, 否则为所有条目大小之和的上限.
+     */
+    public ConcurrentLruCache(int maxSize) {
+        this(maxSize, defaultShardCount());
+    }
+
+    /**
+     * @param shardCount 段数, 会被调整为不小于它的2的幂.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int maxSize, int shardCount) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount <= 0");
+        }
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        this.maxSize = maxSize;
+        this.shardMask = count - 1;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard<K, V>();
+        }
+    }
+
+    /**
+     * 修改缓存容量
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * 返回缓存中的值, 或由{@link #create}创建的值; 命中时该条目被移到所在段的队尾.
+     */
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Shard<K, V> shard = shardFor(key);
+        V mapValue;
+        synchronized (shard) {
+            mapValue = shard.map.get(key);
+        }
+        if (mapValue != null) {
+            hitCount.increment();
+            return mapValue;
+        }
+        missCount.increment();
+
+        // create()可能耗时较长, 在锁外执行; 返回时如果已有其他值, 保留已有的值.
+        V createdValue = create(key);
+        if (createdValue == null) {
+            return null;
+        }
+
+        createCount.increment();
+        int createdSize = 0;
+        synchronized (shard) {
+            mapValue = shard.map.get(key);
+            if (mapValue == null) {
+                createdSize = safeSizeOf(key, createdValue);
+                shard.map.put(key, createdValue);
+                shard.size += createdSize;
+            }
+        }
+
+        if (mapValue != null) {
+            entryRemoved(false, key, createdValue, mapValue);
+            return mapValue;
+        } else {
+            size.addAndGet(createdSize);
+            trimToSize(maxSize);
+            return createdValue;
+        }
+    }
+
+    /**
+     * 缓存value, 该条目被移到所在段的队尾.
+     *
+     * @return key之前对应的值
+     */
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        putCount.increment();
+        Shard<K, V> shard = shardFor(key);
+        int delta;
+        V previous;
+        synchronized (shard) {
+            delta = safeSizeOf(key, value);
+            previous = shard.map.put(key, value);
+            if (previous != null) {
+                delta -= safeSizeOf(key, previous);
+            }
+            shard.size += delta;
+        }
+        size.addAndGet(delta);
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    /**
+     * 轮流从各段淘汰最久未访问的条目, 直到总大小不超过maxSize.
+     *
+     * @param maxSize 为-1时会淘汰所有条目(包括大小为0的条目).
+     */
+    public void trimToSize(int maxSize) {
+        int emptyShards = 0;
+        while (size.get() > maxSize && emptyShards < shards.length) {
+            Shard<K, V> shard = shards[evictCursor.getAndIncrement() & shardMask];
+            K key;
+            V value;
+            int valueSize;
+            synchronized (shard) {
+                if (shard.size < 0 || (shard.map.isEmpty() && shard.size != 0)) {
+                    throw new IllegalStateException(getClass().getName()
+                            + ".sizeOf() is reporting inconsistent results!");
+                }
+
+                if (shard.map.isEmpty()) {
+                    emptyShards++;
+                    continue;
+                }
+
+                Map.Entry<K, V> toEvict = shard.map.entrySet().iterator().next();
+                key = toEvict.getKey();
+                value = toEvict.getValue();
+                shard.map.remove(key);
+                valueSize = safeSizeOf(key, value);
+                shard.size -= valueSize;
+            }
+            emptyShards = 0;
+            size.addAndGet(-valueSize);
+            evictionCount.increment();
+
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    /**
+     * 移除key对应的条目
+     *
+     * @return key之前对应的值
+     */
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Shard<K, V> shard = shardFor(key);
+        V previous;
+        int previousSize = 0;
+        synchronized (shard) {
+            previous = shard.map.remove(key);
+            if (previous != null) {
+                previousSize = safeSizeOf(key, previous);
+                shard.size -= previousSize;
+            }
+        }
+
+        if (previous != null) {
+            size.addAndGet(-previousSize);
+            entryRemoved(false, key, previous, null);
+        }
+
+        return previous;
+    }
+
+    /**
+     * 条目被淘汰, 移除或替换时调用, 调用时不持有任何锁.
+     *
+     * @param evicted  true: 为腾出空间而被淘汰; false: 由put或remove引起.
+     * @param newValue 不为null时表示被put替换.
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    /**
+     * 未命中时创建对应的值, 默认返回null. 调用时不持有任何锁,
+     * 如果返回时缓存中已有该key, 创建的值会通过{@link #entryRemoved}释放并丢弃.
+     */
+    protected V create(K key) {
+        return null;
+    }
+
+    /**
+     * 条目的大小, 默认为1. 条目在缓存中时其大小不能改变.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * 清空缓存, 每个被移除的条目都会回调{@link #entryRemoved}.
+     */
+    public final void evictAll() {
+        trimToSize(-1); // -1 will evict 0-sized elements
+    }
+
+    public final int size() {
+        return size.get();
+    }
+
+    public final int maxSize() {
+        return maxSize;
+    }
+
+    public final int hitCount() {
+        return (int) hitCount.sum();
+    }
+
+    public final int missCount() {
+        return (int) missCount.sum();
+    }
+
+    public final int createCount() {
+        return (int) createCount.sum();
+    }
+
+    public final int putCount() {
+        return (int) putCount.sum();
+    }
+
+    public final int evictionCount() {
+        return (int) evictionCount.sum();
+    }
+
+    /**
+     * 当前内容的副本, 只在每个段内部按访问顺序排列.
+     */
+    public final Map<K, V> snapshot() {
+        LinkedHashMap<K, V> result = new LinkedHashMap<K, V>();
+        for (Shard<K, V> shard : shards) {
+            synchronized (shard) {
+                result.putAll(shard.map);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        long hits = hitCount.sum();
+        long accesses = hits + missCount.sum();
+        long hitPercent = accesses != 0 ? (100 * hits / accesses) : 0;
+        return String.format(Locale.getDefault(),
+                "ConcurrentLruCache[maxSize=%d,shards=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize, shards.length, hits, accesses - hits, hitPercent);
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return shards[h & shardMask];
+    }
+
+    private static int defaultShardCount() {
+        int count = Runtime.getRuntime().availableProcessors() * 2;
+        return Math.max(2, Math.min(count, MAX_SHARD_COUNT));
+    }
+
+    private static final class Shard<K, V> {
+        final LinkedHashMap<K, V> map = new LinkedHashMap<K, V>(0, 0.75f, true);
+        int size;
+    }
+
+    /**
+     * 按线程分散累加的计数器, 每个槽位占用单独的缓存行, 避免多线程争用同一个变量.
+     */
+    private static final class StripedCounter {
+        private static final int STRIPE_COUNT = 8; // 2的幂
+        private static final int PADDING = 8; // 8 * 8字节, 一个缓存行
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPE_COUNT * PADDING);
+
+        void increment() {
+            long id = Thread.currentThread().getId();
+            int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+            int index = ((h >>> 16) & (STRIPE_COUNT - 1)) * PADDING;
+            cells.incrementAndGet(index);
+        }
+
+        long sum() {
+            long result = 0;
+            for (int i = 0; i < STRIPE_COUNT; i++) {
+                result += cells.get(i * PADDING);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.xutils.cache;
+
+import org.xutils.common.util.KeyValue;
+import org.xutils.db.sqlite.SqlInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 缓存访问记录(hits, lastAccess)的写回缓冲区.
+ * 同一个key的多次访问会被合并, 由LruDiskCache定时或达到数量阈值时批量写回数据库.
+ */
+/*package*/ final class DiskCacheAccessBuffer {
+
+    // 每个key占用5个绑定参数, sqlite默认最多999个.
+    private static final int MAX_KEYS_PER_STATEMENT = 150;
+
+    private LinkedHashMap<String, Access> pendingMap = new LinkedHashMap<String, Access>();
+    private boolean flushScheduled = false;
+
+    /**
+     * 记录一次访问, 同时更新内存中实体的hits和lastAccess.
+     *
+     * @return 当前待写回的key数量
+     */
+    public synchronized int record(DiskCacheEntity entity) {
+        long now = System.currentTimeMillis();
+        entity.setHits(entity.getHits() + 1);
+        entity.setLastAccess(now);
+
+        String key = entity.getKey();
+        Access access = pendingMap.get(key);
+        if (access == null) {
+            access = new Access(key);
+            pendingMap.put(key, access);
+        }
+        access.hits++;
+        access.lastAccess = now;
+        return pendingMap.size();
+    }
+
+    /**
+     * @return true: 需要调度新的定时写回
+     */
+    public synchronized boolean markFlushScheduled() {
+        if (flushScheduled) return false;
+        flushScheduled = true;
+        return true;
+    }
+
+    public synchronized Collection<Access> drain() {
+        flushScheduled = false;
+        if (pendingMap.isEmpty()) return null;
+        Collection<Access> result = pendingMap.values();
+        pendingMap = new LinkedHashMap<String, Access>();
+        return result;
+    }
+
+    /**
+     * 构建批量更新的sql, 每条sql最多更新MAX_KEYS_PER_STATEMENT个key:
+     * UPDATE "disk_cache" SET
+     * "hits"="hits"+CASE "key" WHEN ? THEN ? ... ELSE 0 END,
+     * "lastAccess"=CASE "key" WHEN ? THEN ? ... ELSE "lastAccess" END
+     * WHERE "key" IN (?,...)
+     */
+    public static List<SqlInfo> buildUpdateSqlInfoList(String tableName, Collection<Access> accessList) {
+        List<SqlInfo> result = new ArrayList<SqlInfo>();
+        List<Access> batch = new ArrayList<Access>(MAX_KEYS_PER_STATEMENT);
+        for (Access access : accessList) {
+            batch.add(access);
+            if (batch.size() >= MAX_KEYS_PER_STATEMENT) {
+                result.add(buildUpdateSqlInfo(tableName, batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            result.add(buildUpdateSqlInfo(tableName, batch));
+        }
+        return result;
+    }
+
+    private static SqlInfo buildUpdateSqlInfo(String tableName, List<Access> batch) {
+        SqlInfo result = new SqlInfo();
+        StringBuilder builder = new StringBuilder("UPDATE ");
+        builder.append("\"").append(tableName).append("\"");
+
+        builder.append(" SET \"hits\"=\"hits\"+CASE \"key\"");
+        for (Access access : batch) {
+            builder.append(" WHEN ? THEN ?");
+            result.addBindArg(new KeyValue("key", access.key));
+            result.addBindArg(new KeyValue("hits", access.hits));
+        }
+        builder.append(" ELSE 0 END");
+
+        builder.append(", \"lastAccess\"=CASE \"key\"");
+        for (Access access : batch) {
+            builder.append(" WHEN ? THEN ?");
+            result.addBindArg(new KeyValue("key", access.key));
+            result.addBindArg(new KeyValue("lastAccess", access.lastAccess));
+        }
+        builder.append(" ELSE \"lastAccess\" END");
+
+        builder.append(" WHERE \"key\" IN (");
+        for (Access access : batch) {
+            builder.append("?,");
+            result.addBindArg(new KeyValue("key", access.key));
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(")");
+
+        result.setSql(builder.toString());
+        return result;
+    }
+
+    /*package*/ static final class Access {
+        final String key;
+        long hits;
+        long lastAccess;
+
+        Access(String key) {
+            this.key = key;
+        }
+    }
+}
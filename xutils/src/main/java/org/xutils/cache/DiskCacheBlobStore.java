@@ -0,0 +1,439 @@
+package org.xutils.cache;
+
+import org.xutils.DbManager;
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+import org.xutils.common.util.ProcessLock;
+import org.xutils.db.table.DbModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分段的只追加blob日志, 用于保存DiskCacheEntity的textContent和bytesContent.
+ * 数据库中只保存blob的位置(blobPath, blobOffset, blobLength), 读取时只需一次定位读.
+ * <p>
+ * 记录格式: [int textLength][text(UTF-8)][int bytesLength][bytes], 长度为-1表示null.
+ * 每次启动都会新建一个活动段, 已封存的段不再修改, 由compact()在后台整理.
+ * 同一目录可能被多个进程使用: 活动段在关闭前一直持有它的进程锁(写模式),
+ * 整理时也先获取段的进程锁, 其他进程正在追加或整理的段将被跳过.
+ * <p>
+ * 有效数据大小(liveSize)和段文件总大小(segmentSize)在内存中增量维护, 二者之差为已失效的数据,
+ * 失效数据增长超过阈值时才需要compact()扫描数据库.
+ */
+/*package*/ final class DiskCacheBlobStore {
+
+    /*package*/ static final String BLOB_DIR_NAME = "blob";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long MAX_SEGMENT_SIZE = 1024L * 1024L * 4L; // 每段4M
+    private static final float COMPACT_LIVE_RATIO = 0.5f; // 有效数据低于一半时整理
+    private static final float COMPACT_DEAD_RATIO = 0.3f; // 新增的失效数据超过总大小的30%时整理
+    private static final long MIN_COMPACT_DEAD_SIZE = 1024L * 1024L; // 且至少1M
+    private static final int MAX_OPEN_SEGMENT_RETRY = 10;
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * 已封存段的内存映射, key: segment path
+     */
+    private static final LruCache<String, MappedByteBuffer> MAPPED_SEGMENTS = new LruCache<String, MappedByteBuffer>(8);
+    /**
+     * 正在追加的段, 它们的内存映射不能缓存.
+     */
+    private static final HashSet<String> ACTIVE_SEGMENTS = new HashSet<String>(5);
+
+    private final File blobDir;
+    private final DbManager cacheDb;
+
+    private long nextSegmentId;
+    private File activeSegment;
+    private RandomAccessFile activeFile;
+    private ProcessLock activeLock;
+
+    // guarded by this
+    private long liveSize = 0L;
+    private long segmentSize = 0L;
+    private long deadSizeAfterCompact = 0L;
+
+    /*package*/ DiskCacheBlobStore(File cacheDir, DbManager cacheDb) {
+        this.blobDir = new File(cacheDir, BLOB_DIR_NAME);
+        this.cacheDb = cacheDb;
+        this.nextSegmentId = findMaxSegmentId() + 1;
+        this.segmentSize = sumSegmentSize();
+    }
+
+    /**
+     * 被数据库引用的记录的总大小(估算值), 计入缓存目录大小.
+     */
+    public synchronized long getLiveSize() {
+        return liveSize;
+    }
+
+    /**
+     * 启动时由数据库中的blobLength汇总
+     */
+    public synchronized void setLiveSize(long liveSize) {
+        this.liveSize = liveSize;
+        this.deadSizeAfterCompact = 0L;
+    }
+
+    /**
+     * 实体被删除或替换, 它指向的记录失效.
+     */
+    public void release(DiskCacheEntity entity) {
+        release(entity.getBlobPath(), entity.getBlobLength());
+    }
+
+    public synchronized void release(String blobPath, int blobLength) {
+        if (blobPath == null || !blobPath.startsWith(blobDir.getAbsolutePath() + File.separator)) return;
+        liveSize = Math.max(liveSize - blobLength, 0L);
+    }
+
+    public File getBlobDir() {
+        return blobDir;
+    }
+
+    /**
+     * 上次整理之后新增的失效数据超过阈值时才需要整理
+     */
+    public synchronized boolean needCompact() {
+        long deadSize = segmentSize - liveSize - deadSizeAfterCompact;
+        return deadSize >= MIN_COMPACT_DEAD_SIZE && deadSize >= segmentSize * COMPACT_DEAD_RATIO;
+    }
+
+    /**
+     * 追加一条记录, 成功后将entity的blob位置指向这条记录.
+     */
+    public synchronized void append(DiskCacheEntity entity) throws IOException {
+        byte[] text = entity.getTextContent() == null ? null : entity.getTextContent().getBytes(CHARSET);
+        byte[] bytes = entity.getBytesContent();
+        int length = 8 + (text == null ? 0 : text.length) + (bytes == null ? 0 : bytes.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        putBytes(buffer, text);
+        putBytes(buffer, bytes);
+        buffer.flip();
+
+        appendRecord(entity, buffer);
+        liveSize += length;
+    }
+
+    /**
+     * 读取entity指向的记录, 填充textContent和bytesContent.
+     *
+     * @return false: 记录不存在或已损坏
+     */
+    public static boolean read(DiskCacheEntity entity, boolean memoryMapped) {
+        String blobPath = entity.getBlobPath();
+        long offset = entity.getBlobOffset();
+        int length = entity.getBlobLength();
+        if (blobPath == null || length < 8) return false;
+
+        try {
+            ByteBuffer buffer = readRecord(blobPath, offset, length, memoryMapped);
+            if (buffer == null) return false;
+            byte[] text = getBytes(buffer);
+            byte[] bytes = getBytes(buffer);
+            entity.setTextContent(text == null ? null : new String(text, CHARSET));
+            entity.setBytesContent(bytes);
+            return true;
+        } catch (Throwable ex) {
+            LogUtil.w(ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * 整理已封存的段: 有效数据比例过低的段, 将其中仍被引用的记录复制到活动段后删除.
+     * 在trimExecutor中执行.
+     */
+    public void compact() {
+        File[] segments = blobDir.listFiles();
+        if (segments == null || segments.length == 0) return;
+
+        // 每个段中仍被数据库引用的数据大小
+        HashMap<String, Long> liveSizeMap = new HashMap<String, Long>();
+        try {
+            List<DbModel> models = cacheDb.selector(DiskCacheEntity.class)
+                    .where("blobPath", "!=", null)
+                    .groupBy("blobPath")
+                    .select("blobPath", "sum(\"blobLength\") as liveSize").findAll();
+            if (models != null) {
+                for (DbModel model : models) {
+                    liveSizeMap.put(model.getString("blobPath"), model.getLong("liveSize", 0L));
+                }
+            }
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+            return;
+        }
+
+        for (File segment : segments) {
+            String segmentPath = segment.getAbsolutePath();
+            synchronized (this) {
+                if (segment.equals(activeSegment) || !segment.getName().endsWith(SEGMENT_SUFFIX)) {
+                    continue;
+                }
+            }
+            // 其他进程的活动段, 或正在被其他进程整理.
+            ProcessLock segmentLock = ProcessLock.tryLock(segmentPath, true);
+            if (segmentLock == null) continue;
+            try {
+                if (!segment.exists()) continue;
+                Long segmentLiveSize = liveSizeMap.get(segmentPath);
+                if (segmentLiveSize == null || segmentLiveSize <= 0L) {
+                    deleteSegment(segment);
+                } else if (segmentLiveSize < segment.length() * COMPACT_LIVE_RATIO) {
+                    compactSegment(segment);
+                }
+            } finally {
+                segmentLock.release();
+            }
+        }
+
+        // 用扫描结果校正估算值, 留在活动段和有效比例较高的段中的失效数据不再触发整理.
+        long totalLiveSize = 0L;
+        String prefix = blobDir.getAbsolutePath() + File.separator;
+        for (Map.Entry<String, Long> entry : liveSizeMap.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                totalLiveSize += entry.getValue();
+            }
+        }
+        synchronized (this) {
+            segmentSize = sumSegmentSize();
+            liveSize = totalLiveSize;
+            deadSizeAfterCompact = Math.max(segmentSize - liveSize, 0L);
+        }
+    }
+
+    /**
+     * 删除所有段(缓存目录被清空时调用)
+     */
+    public synchronized void clear() {
+        closeActiveSegment();
+        liveSize = 0L;
+        segmentSize = 0L;
+        deadSizeAfterCompact = 0L;
+        File[] segments = blobDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                MAPPED_SEGMENTS.remove(segment.getAbsolutePath());
+            }
+        }
+        IOUtil.deleteFileOrDir(blobDir);
+    }
+
+    private void compactSegment(File segment) {
+        String segmentPath = segment.getAbsolutePath();
+        try {
+            List<DiskCacheEntity> entities = cacheDb.selector(DiskCacheEntity.class)
+                    .where("blobPath", "=", segmentPath).findAll();
+            if (entities != null && entities.size() > 0) {
+                List<DiskCacheEntity> movedList = new ArrayList<DiskCacheEntity>(entities.size());
+                for (DiskCacheEntity entity : entities) {
+                    ByteBuffer buffer = readRecord(segmentPath, entity.getBlobOffset(), entity.getBlobLength(), false);
+                    if (buffer != null) {
+                        synchronized (this) {
+                            appendRecord(entity, buffer);
+                        }
+                        movedList.add(entity);
+                    }
+                }
+                // 按id更新, 期间被替换或删除的实体不受影响.
+                cacheDb.update(movedList, "blobPath", "blobOffset", "blobLength");
+                for (DiskCacheEntity entity : movedList) {
+                    LruDiskCache.removeFromIndex(entity.getKey());
+                }
+            }
+            deleteSegment(segment);
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+        }
+    }
+
+    private void appendRecord(DiskCacheEntity entity, ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        if (activeFile == null
+                || (activeFile.length() > 0 && activeFile.length() + length > MAX_SEGMENT_SIZE)) {
+            openNewSegment();
+        }
+        long offset = activeFile.length();
+        FileChannel channel = activeFile.getChannel();
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        segmentSize += length;
+
+        entity.setBlobPath(activeSegment.getAbsolutePath());
+        entity.setBlobOffset(offset);
+        entity.setBlobLength(length);
+    }
+
+    private static ByteBuffer readRecord(String blobPath, long offset, int length, boolean memoryMapped) throws IOException {
+        File segment = new File(blobPath);
+        if (!segment.exists() || offset + length > segment.length()) {
+            return null;
+        }
+
+        // 活动段仍在追加, 映射不能缓存, 直接通过channel读取.
+        if (memoryMapped && !isActiveSegment(blobPath)) {
+            MappedByteBuffer mapped = MAPPED_SEGMENTS.get(blobPath);
+            if (mapped == null) {
+                RandomAccessFile file = null;
+                try {
+                    file = new RandomAccessFile(segment, "r");
+                    mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                } finally {
+                    IOUtil.closeQuietly(file);
+                }
+                MAPPED_SEGMENTS.put(blobPath, mapped);
+            }
+            if (offset + length <= mapped.capacity()) {
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.position((int) offset);
+                buffer.limit((int) offset + length);
+                return buffer.slice();
+            }
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(segment, "r");
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                int len = channel.read(buffer, position);
+                if (len < 0) return null;
+                position += len;
+            }
+            buffer.flip();
+            return buffer;
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+    }
+
+    private void openNewSegment() throws IOException {
+        closeActiveSegment();
+        if (!blobDir.exists() && !blobDir.mkdirs()) {
+            throw new IOException("create blob dir error: " + blobDir.getAbsolutePath());
+        }
+        // 其他进程可能已经创建了更大编号的段; 只使用新建成功且取得进程锁的段.
+        nextSegmentId = Math.max(nextSegmentId, findMaxSegmentId() + 1);
+        for (int i = 0; i < MAX_OPEN_SEGMENT_RETRY; i++) {
+            File segment = new File(blobDir, (nextSegmentId++) + SEGMENT_SUFFIX);
+            if (segment.exists()) continue;
+            ProcessLock lock = ProcessLock.tryLock(segment.getAbsolutePath(), true);
+            if (lock == null) continue;
+            try {
+                if (!segment.createNewFile()) {
+                    lock.release();
+                    continue;
+                }
+                activeFile = new RandomAccessFile(segment, "rw");
+            } catch (IOException ex) {
+                lock.release();
+                throw ex;
+            }
+            activeSegment = segment;
+            activeLock = lock;
+            synchronized (ACTIVE_SEGMENTS) {
+                ACTIVE_SEGMENTS.add(activeSegment.getAbsolutePath());
+            }
+            return;
+        }
+        throw new IOException("create blob segment error: " + blobDir.getAbsolutePath());
+    }
+
+    private void closeActiveSegment() {
+        if (activeSegment != null) {
+            synchronized (ACTIVE_SEGMENTS) {
+                ACTIVE_SEGMENTS.remove(activeSegment.getAbsolutePath());
+            }
+        }
+        IOUtil.closeQuietly(activeFile);
+        if (activeLock != null) {
+            activeLock.release();
+        }
+        activeFile = null;
+        activeSegment = null;
+        activeLock = null;
+    }
+
+    private void deleteSegment(File segment) {
+        MAPPED_SEGMENTS.remove(segment.getAbsolutePath());
+        long length = segment.length();
+        if (IOUtil.deleteFileOrDir(segment)) {
+            synchronized (this) {
+                segmentSize = Math.max(segmentSize - length, 0L);
+            }
+        }
+    }
+
+    private long sumSegmentSize() {
+        long result = 0L;
+        File[] segments = blobDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                if (segment.getName().endsWith(SEGMENT_SUFFIX)) {
+                    result += segment.length();
+                }
+            }
+        }
+        return result;
+    }
+
+    private long findMaxSegmentId() {
+        long result = 0;
+        File[] segments = blobDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                String name = segment.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                        result = Math.max(result, id);
+                    } catch (Throwable ignored) {
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isActiveSegment(String blobPath) {
+        synchronized (ACTIVE_SEGMENTS) {
+            return ACTIVE_SEGMENTS.contains(blobPath);
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] data) {
+        if (data == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(data.length);
+            buffer.put(data);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) {
+            throw new IOException("broken blob record");
+        }
+        byte[] result = new byte[length];
+        buffer.get(result);
+        return result;
+    }
+}
@@ -21,16 +21,50 @@ public final class DiskCacheEntity {
     @Column(name = "path")
     private String path;
 
+    // 缓存文件大小(byte), 仅对文件缓存有效
+    @Column(name = "fileSize")
+    private long fileSize;
+
     @Column(name = "textContent")
     private String textContent;
 
     @Column(name = "bytesContent")
     private byte[] bytesContent;
 
+    // bytesContent的压缩格式(如gzip), 为空时未压缩.
+    @Column(name = "contentEncoding")
+    private String contentEncoding;
+
+    // 压缩前的内容是文本时为它的字符集, 否则为空.
+    @Column(name = "contentCharset")
+    private String contentCharset;
+
+    // textContent和bytesContent保存在blob日志中的位置
+    @Column(name = "blobPath")
+    private String blobPath;
+
+    @Column(name = "blobOffset")
+    private long blobOffset;
+
+    @Column(name = "blobLength")
+    private int blobLength;
+
     // from "max-age" (since http 1.1)
     @Column(name = "expires")
     private long expires = Long.MAX_VALUE;
 
+    // HTTP缓存模式: 在此之前缓存是新鲜的; 0: 非HTTP缓存模式保存, 使用前需要验证.
+    @Column(name = "freshUntil")
+    private long freshUntil;
+
+    // HTTP缓存模式: stale-while-revalidate, 在此之前可以先使用过期的缓存, 同时在后台验证.
+    @Column(name = "staleWhileRevalidateUntil")
+    private long staleWhileRevalidateUntil;
+
+    // HTTP缓存模式: stale-if-error, 在此之前请求出错时可以使用过期的缓存.
+    @Column(name = "staleIfErrorUntil")
+    private long staleIfErrorUntil;
+
     @Column(name = "etag")
     private String etag;
 
@@ -47,6 +81,33 @@ public final class DiskCacheEntity {
     public DiskCacheEntity() {
     }
 
+    /**
+     * 复制所有字段(内容数组不复制), 用于修改缓存索引中共享的实体.
+     */
+    public DiskCacheEntity copy() {
+        DiskCacheEntity result = new DiskCacheEntity();
+        result.id = id;
+        result.key = key;
+        result.path = path;
+        result.fileSize = fileSize;
+        result.textContent = textContent;
+        result.bytesContent = bytesContent;
+        result.contentEncoding = contentEncoding;
+        result.contentCharset = contentCharset;
+        result.blobPath = blobPath;
+        result.blobOffset = blobOffset;
+        result.blobLength = blobLength;
+        result.expires = expires;
+        result.freshUntil = freshUntil;
+        result.staleWhileRevalidateUntil = staleWhileRevalidateUntil;
+        result.staleIfErrorUntil = staleIfErrorUntil;
+        result.etag = etag;
+        result.hits = hits;
+        result.lastModify = lastModify;
+        result.lastAccess = lastAccess;
+        return result;
+    }
+
     public long getId() {
         return id;
     }
@@ -71,6 +132,14 @@ public final class DiskCacheEntity {
         this.path = path;
     }
 
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /*package*/ void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
     public String getTextContent() {
         return textContent;
     }
@@ -87,6 +156,53 @@ public final class DiskCacheEntity {
         this.bytesContent = bytesContent;
     }
 
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public String getContentCharset() {
+        return contentCharset;
+    }
+
+    public void setContentCharset(String contentCharset) {
+        this.contentCharset = contentCharset;
+    }
+
+    /**
+     * 占用的磁盘空间(byte): 缓存文件大小和blob记录长度之和
+     */
+    public long getDiskSize() {
+        return fileSize + (blobPath == null ? 0L : blobLength);
+    }
+
+    /*package*/ String getBlobPath() {
+        return blobPath;
+    }
+
+    /*package*/ void setBlobPath(String blobPath) {
+        this.blobPath = blobPath;
+    }
+
+    /*package*/ long getBlobOffset() {
+        return blobOffset;
+    }
+
+    /*package*/ void setBlobOffset(long blobOffset) {
+        this.blobOffset = blobOffset;
+    }
+
+    /*package*/ int getBlobLength() {
+        return blobLength;
+    }
+
+    /*package*/ void setBlobLength(int blobLength) {
+        this.blobLength = blobLength;
+    }
+
     public long getExpires() {
         return expires;
     }
@@ -95,6 +211,30 @@ public final class DiskCacheEntity {
         this.expires = expires;
     }
 
+    public long getFreshUntil() {
+        return freshUntil;
+    }
+
+    public void setFreshUntil(long freshUntil) {
+        this.freshUntil = freshUntil;
+    }
+
+    public long getStaleWhileRevalidateUntil() {
+        return staleWhileRevalidateUntil;
+    }
+
+    public void setStaleWhileRevalidateUntil(long staleWhileRevalidateUntil) {
+        this.staleWhileRevalidateUntil = staleWhileRevalidateUntil;
+    }
+
+    public long getStaleIfErrorUntil() {
+        return staleIfErrorUntil;
+    }
+
+    public void setStaleIfErrorUntil(long staleIfErrorUntil) {
+        this.staleIfErrorUntil = staleIfErrorUntil;
+    }
+
     public String getEtag() {
         return etag;
     }
@@ -0,0 +1,184 @@
+package org.xutils.cache;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import org.xutils.db.table.EntityAdapter;
+
+import java.util.Date;
+
+/**
+ * DiskCacheEntity的EntityAdapter, 缓存的读取和写入不使用反射.
+ * 读写规则与反射方式相同: 值为null时保持默认值, lastAccess使用getLastAccess()的值写入.
+ */
+/*package*/ final class DiskCacheEntityAdapter implements EntityAdapter<DiskCacheEntity> {
+
+    private static final String[] COLUMN_NAMES = {
+            "id", "key", "path", "fileSize", "textContent", "bytesContent",
+            "contentEncoding", "contentCharset", "blobPath", "blobOffset", "blobLength",
+            "expires", "freshUntil", "staleWhileRevalidateUntil", "staleIfErrorUntil",
+            "etag", "hits", "lastModify", "lastAccess"
+    };
+
+    @Override
+    public String[] getColumnNames() {
+        return COLUMN_NAMES.clone();
+    }
+
+    @Override
+    public DiskCacheEntity newInstance() {
+        return new DiskCacheEntity();
+    }
+
+    @Override
+    public void readColumn(DiskCacheEntity entity, Cursor cursor, int index, int column) {
+        if (cursor.isNull(index)) return;
+        switch (column) {
+            case 0:
+                entity.setId(cursor.getLong(index));
+                break;
+            case 1:
+                entity.setKey(cursor.getString(index));
+                break;
+            case 2:
+                entity.setPath(cursor.getString(index));
+                break;
+            case 3:
+                entity.setFileSize(cursor.getLong(index));
+                break;
+            case 4:
+                entity.setTextContent(cursor.getString(index));
+                break;
+            case 5:
+                entity.setBytesContent(cursor.getBlob(index));
+                break;
+            case 6:
+                entity.setContentEncoding(cursor.getString(index));
+                break;
+            case 7:
+                entity.setContentCharset(cursor.getString(index));
+                break;
+            case 8:
+                entity.setBlobPath(cursor.getString(index));
+                break;
+            case 9:
+                entity.setBlobOffset(cursor.getLong(index));
+                break;
+            case 10:
+                entity.setBlobLength(cursor.getInt(index));
+                break;
+            case 11:
+                entity.setExpires(cursor.getLong(index));
+                break;
+            case 12:
+                entity.setFreshUntil(cursor.getLong(index));
+                break;
+            case 13:
+                entity.setStaleWhileRevalidateUntil(cursor.getLong(index));
+                break;
+            case 14:
+                entity.setStaleIfErrorUntil(cursor.getLong(index));
+                break;
+            case 15:
+                entity.setEtag(cursor.getString(index));
+                break;
+            case 16:
+                entity.setHits(cursor.getLong(index));
+                break;
+            case 17:
+                entity.setLastModify(new Date(cursor.getLong(index)));
+                break;
+            case 18:
+                entity.setLastAccess(cursor.getLong(index));
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void bindColumn(SQLiteStatement statement, int index, int column, DiskCacheEntity entity) {
+        switch (column) {
+            case 0:
+                statement.bindLong(index, entity.getId());
+                break;
+            case 1:
+                bindString(statement, index, entity.getKey());
+                break;
+            case 2:
+                bindString(statement, index, entity.getPath());
+                break;
+            case 3:
+                statement.bindLong(index, entity.getFileSize());
+                break;
+            case 4:
+                bindString(statement, index, entity.getTextContent());
+                break;
+            case 5: {
+                byte[] value = entity.getBytesContent();
+                if (value == null) {
+                    statement.bindNull(index);
+                } else {
+                    statement.bindBlob(index, value);
+                }
+                break;
+            }
+            case 6:
+                bindString(statement, index, entity.getContentEncoding());
+                break;
+            case 7:
+                bindString(statement, index, entity.getContentCharset());
+                break;
+            case 8:
+                bindString(statement, index, entity.getBlobPath());
+                break;
+            case 9:
+                statement.bindLong(index, entity.getBlobOffset());
+                break;
+            case 10:
+                statement.bindLong(index, entity.getBlobLength());
+                break;
+            case 11:
+                statement.bindLong(index, entity.getExpires());
+                break;
+            case 12:
+                statement.bindLong(index, entity.getFreshUntil());
+                break;
+            case 13:
+                statement.bindLong(index, entity.getStaleWhileRevalidateUntil());
+                break;
+            case 14:
+                statement.bindLong(index, entity.getStaleIfErrorUntil());
+                break;
+            case 15:
+                bindString(statement, index, entity.getEtag());
+                break;
+            case 16:
+                statement.bindLong(index, entity.getHits());
+                break;
+            case 17: {
+                Date value = entity.getLastModify();
+                if (value == null) {
+                    statement.bindNull(index);
+                } else {
+                    statement.bindLong(index, value.getTime());
+                }
+                break;
+            }
+            case 18:
+                statement.bindLong(index, entity.getLastAccess());
+                break;
+            default:
+                statement.bindNull(index);
+                break;
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
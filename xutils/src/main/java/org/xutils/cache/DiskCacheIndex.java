@@ -0,0 +1,111 @@
+package org.xutils.cache;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 磁盘缓存的内存索引(key -> DiskCacheEntity).
+ * 所有LruDiskCache共用同一张disk_cache表, 所以索引也是全局共享的;
+ * 命中时直接返回内存中的实体, 未命中时再查询数据库.
+ */
+/*package*/ final class DiskCacheIndex {
+
+    private static final int ENTITY_OVERHEAD = 128; // 实体对象本身的估算开销
+
+    private final ConcurrentLruCache<String, DiskCacheEntity> entityCache;
+    private final int maxEntitySize;
+
+    /**
+     * 加载索引期间被修改过的key, 加载结果不能覆盖它们.
+     */
+    private HashSet<String> touchedKeys;
+    private boolean loaded = false;
+
+    /*package*/ DiskCacheIndex(int maxSize) {
+        this.maxEntitySize = maxSize / 8; // 过大的实体不进入索引, 避免冲掉其他条目
+        this.entityCache = new ConcurrentLruCache<String, DiskCacheEntity>(maxSize) {
+            @Override
+            protected int sizeOf(String key, DiskCacheEntity value) {
+                return sizeOfEntity(value);
+            }
+        };
+    }
+
+    public DiskCacheEntity get(String key) {
+        return entityCache.get(key);
+    }
+
+    public synchronized void put(DiskCacheEntity entity) {
+        String key = entity.getKey();
+        if (key == null) return;
+        if (touchedKeys != null) {
+            touchedKeys.add(key);
+        }
+        if (sizeOfEntity(entity) > maxEntitySize) {
+            entityCache.remove(key);
+        } else {
+            entityCache.put(key, entity);
+        }
+    }
+
+    public synchronized void remove(String key) {
+        if (key == null) return;
+        if (touchedKeys != null) {
+            touchedKeys.add(key);
+        }
+        entityCache.remove(key);
+    }
+
+    public int maxSize() {
+        return entityCache.maxSize();
+    }
+
+    /*package*/ synchronized boolean beginLoad() {
+        if (loaded || touchedKeys != null) return false;
+        touchedKeys = new HashSet<String>();
+        return true;
+    }
+
+    /**
+     * 写入启动时加载的索引数据
+     *
+     * @param entities 按lastAccess倒序排列的实体, 为null时表示加载失败.
+     */
+    /*package*/ synchronized void finishLoad(List<DiskCacheEntity> entities) {
+        if (touchedKeys == null) return;
+        if (entities != null) {
+            Map<String, DiskCacheEntity> current = entityCache.snapshot();
+            // 倒序写入, 使最近访问的实体位于LRU队列的尾部
+            for (int i = entities.size() - 1; i >= 0; i--) {
+                DiskCacheEntity entity = entities.get(i);
+                String key = entity.getKey();
+                if (key == null || touchedKeys.contains(key) || current.containsKey(key)) {
+                    continue;
+                }
+                if (sizeOfEntity(entity) <= maxEntitySize) {
+                    entityCache.put(key, entity);
+                }
+            }
+            loaded = true;
+        }
+        touchedKeys = null;
+    }
+
+    /*package*/ static int sizeOfEntity(DiskCacheEntity entity) {
+        int size = ENTITY_OVERHEAD;
+        size += sizeOfString(entity.getKey());
+        size += sizeOfString(entity.getPath());
+        size += sizeOfString(entity.getTextContent());
+        size += sizeOfString(entity.getEtag());
+        byte[] bytesContent = entity.getBytesContent();
+        if (bytesContent != null) {
+            size += bytesContent.length;
+        }
+        return size;
+    }
+
+    private static int sizeOfString(String str) {
+        return str == null ? 0 : str.length() * 2;
+    }
+}
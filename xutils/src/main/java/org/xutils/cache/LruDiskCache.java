@@ -1,9 +1,12 @@
 package org.xutils.cache;
 
 
+import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
 import org.xutils.DbManager;
+import org.xutils.cache.policy.EvictionPolicy;
+import org.xutils.cache.policy.LruEvictionPolicy;
 import org.xutils.common.task.PriorityExecutor;
 import org.xutils.common.util.FileUtil;
 import org.xutils.common.util.IOUtil;
@@ -11,15 +14,24 @@ import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.MD5;
 import org.xutils.common.util.ProcessLock;
 import org.xutils.config.DbConfigs;
+import org.xutils.db.sqlite.SqlInfo;
 import org.xutils.db.sqlite.WhereBuilder;
+import org.xutils.db.table.ColumnUtils;
+import org.xutils.db.table.DbModel;
+import org.xutils.db.table.EntityAdapterFactory;
+import org.xutils.ex.DbException;
 import org.xutils.ex.FileLockedException;
 import org.xutils.x;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by wyouflf on 15/7/23.
@@ -32,8 +44,25 @@ public final class LruDiskCache {
      */
     private static final HashMap<String, LruDiskCache> DISK_CACHE_MAP = new HashMap<String, LruDiskCache>(5);
 
-    private static final int LIMIT_COUNT = 5000; // 限制最多5000条数据
-    private static final long LIMIT_SIZE = 1024L * 1024L * 100L; // 限制最多100M文件
+    private static final int INDEX_MEM_SIZE = 1024 * 1024 * 2; // 内存索引最多占用2M
+    private static final int INDEX_LOAD_PAGE_SIZE = 100;
+    /**
+     * 所有缓存目录共用disk_cache表, 内存索引也全局共享.
+     */
+    private static final DiskCacheIndex INDEX = new DiskCacheIndex(INDEX_MEM_SIZE);
+
+    static {
+        // 在disk_cache表第一次使用之前注册
+        EntityAdapterFactory.registerEntityAdapter(DiskCacheEntity.class, new DiskCacheEntityAdapter());
+    }
+
+    private static final int LIMIT_COUNT = 5000; // 默认限制最多5000条数据
+    private static final long LIMIT_SIZE = 1024L * 1024L * 100L; // 默认限制最多100M文件
+    private static final int MIN_TRIM_CANDIDATE_COUNT = 100;
+    private static final int TRIM_PAGE_SIZE = 200; // 按大小清理时每页读取的实体数
+    private static final int DELETE_BATCH_SIZE = 500; // 每条delete语句最多删除的实体数
+    private static final int SWEEP_BATCH_SIZE = 100; // 每批清理的文件数
+    private static final long SWEEP_BATCH_INTERVAL = 200; // 批次间隔(ms)
 
     private static final int LOCK_WAIT = 1000 * 3; // 3s
     private static final String CACHE_DIR_NAME = "xUtils_cache";
@@ -43,11 +72,32 @@ public final class LruDiskCache {
     private DbManager cacheDb;
     private File cacheDir;
     private long diskCacheSize = LIMIT_SIZE;
+    private int maxCount = LIMIT_COUNT;
+    private volatile EvictionPolicy evictionPolicy = new LruEvictionPolicy();
+    private DiskCacheBlobStore blobStore;
+    private volatile boolean blobMemoryMapped = false;
+    /**
+     * 缓存目录中已提交文件的总大小, 启动时由数据库中的fileSize汇总, 之后增量维护.
+     * blob记录的大小由blobStore维护, 见getCacheSize().
+     */
+    private final AtomicLong cacheFileSize = new AtomicLong(0L);
     private final Executor trimExecutor = new PriorityExecutor(1, true);
 
     private long lastTrimTime = 0L;
     private static final long TRIM_TIME_SPAN = 1000;
 
+    private static final long ACCESS_FLUSH_INTERVAL = 1000 * 5; // 5s
+    private static final int ACCESS_FLUSH_BATCH_SIZE = 100;
+    private long accessFlushInterval = ACCESS_FLUSH_INTERVAL;
+    private int accessFlushBatchSize = ACCESS_FLUSH_BATCH_SIZE;
+    private final DiskCacheAccessBuffer accessBuffer = new DiskCacheAccessBuffer();
+    private final Runnable flushAccessRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushAccess();
+        }
+    };
+
     public synchronized static LruDiskCache getDiskCache(String dirName) {
         if (TextUtils.isEmpty(dirName)) dirName = CACHE_DIR_NAME;
         LruDiskCache cache = DISK_CACHE_MAP.get(dirName);
@@ -58,6 +108,19 @@ public final class LruDiskCache {
         return cache;
     }
 
+    /**
+     * 获取缓存目录对应的LruDiskCache, 并指定它的淘汰策略.
+     *
+     * @param evictionPolicy 为null时保持原有策略(默认LRU)
+     */
+    public synchronized static LruDiskCache getDiskCache(String dirName, EvictionPolicy evictionPolicy) {
+        LruDiskCache cache = getDiskCache(dirName);
+        if (evictionPolicy != null) {
+            cache.setEvictionPolicy(evictionPolicy);
+        }
+        return cache;
+    }
+
     private LruDiskCache(String dirName) {
         try {
             this.cacheDir = FileUtil.getCacheDir(dirName);
@@ -65,11 +128,16 @@ public final class LruDiskCache {
                 available = true;
             }
             this.cacheDb = x.getDb(DbConfigs.HTTP.getConfig());
+            if (available) {
+                this.blobStore = new DiskCacheBlobStore(cacheDir, cacheDb);
+            }
         } catch (Throwable ex) {
             available = false;
             LogUtil.e(ex.getMessage(), ex);
         }
         deleteNoIndexFiles();
+        loadCacheFileSize();
+        loadIndex();
     }
 
     public LruDiskCache setMaxSize(long maxSize) {
@@ -84,37 +152,104 @@ public final class LruDiskCache {
         return this;
     }
 
+    /**
+     * 设置缓存条目数量上限(disk_cache表为所有缓存目录共用)
+     */
+    public LruDiskCache setMaxCount(int maxCount) {
+        if (maxCount > 0) {
+            this.maxCount = maxCount;
+        }
+        return this;
+    }
+
+    public LruDiskCache setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        if (evictionPolicy != null) {
+            this.evictionPolicy = evictionPolicy;
+        }
+        return this;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * 读取blob日志中已封存的段时是否使用内存映射
+     */
+    public LruDiskCache setBlobMemoryMapped(boolean blobMemoryMapped) {
+        this.blobMemoryMapped = blobMemoryMapped;
+        return this;
+    }
+
+    /**
+     * 设置访问记录(hits, lastAccess)批量写回数据库的时间间隔
+     *
+     * @param interval 单位毫秒
+     */
+    public LruDiskCache setAccessFlushInterval(long interval) {
+        if (interval > 0L) {
+            accessFlushInterval = interval;
+        }
+        return this;
+    }
+
+    /**
+     * 设置待写回的访问记录达到多少个key时立即写回数据库
+     */
+    public LruDiskCache setAccessFlushBatchSize(int batchSize) {
+        if (batchSize > 0) {
+            accessFlushBatchSize = batchSize;
+        }
+        return this;
+    }
+
     public DiskCacheEntity get(String key) {
         if (!available || TextUtils.isEmpty(key)) return null;
 
-        DiskCacheEntity result = null;
-        try {
-            result = this.cacheDb.selector(DiskCacheEntity.class)
-                    .where("key", "=", key).findFirst();
-        } catch (Throwable ex) {
-            LogUtil.e(ex.getMessage(), ex);
+        evictionPolicy.recordAccess(key);
+
+        DiskCacheEntity result = INDEX.get(key);
+        if (result != null && !loadBlobContent(result)) {
+            // 索引中的blob位置已失效(如被整理), 从数据库重新查询.
+            INDEX.remove(key);
+            result = null;
+        }
+        if (result == null) {
+            try {
+                result = this.cacheDb.selector(DiskCacheEntity.class)
+                        .where("key", "=", key).findFirst();
+                if (result != null) {
+                    if (loadBlobContent(result)) {
+                        INDEX.put(result);
+                    } else {
+                        result = null;
+                    }
+                }
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
         }
 
         if (result != null) {
 
             if (result.getExpires() < System.currentTimeMillis()) {
+                INDEX.remove(key);
+                deleteExpiredEntity(result);
                 return null;
             }
 
             { // update hint & lastAccess...
-                final DiskCacheEntity finalResult = result;
-                trimExecutor.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        finalResult.setHits(finalResult.getHits() + 1);
-                        finalResult.setLastAccess(System.currentTimeMillis());
-                        try {
-                            cacheDb.update(finalResult, "hits", "lastAccess");
-                        } catch (Throwable ex) {
-                            LogUtil.e(ex.getMessage(), ex);
+                int pendingCount = accessBuffer.record(result);
+                if (pendingCount >= accessFlushBatchSize) {
+                    trimExecutor.execute(flushAccessRunnable);
+                } else if (accessBuffer.markFlushScheduled()) {
+                    x.task().postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            trimExecutor.execute(flushAccessRunnable);
                         }
-                    }
-                });
+                    }, accessFlushInterval);
+                }
             }
 
         }
@@ -122,17 +257,50 @@ public final class LruDiskCache {
         return result;
     }
 
-    public void put(DiskCacheEntity entity) {
+    public void put(DiskCacheEntity newEntity) {
         if (!available
-                || entity == null
-                || TextUtils.isEmpty(entity.getTextContent())
-                || entity.getExpires() < System.currentTimeMillis()) {
+                || newEntity == null
+                || (TextUtils.isEmpty(newEntity.getTextContent())
+                && (newEntity.getBytesContent() == null || newEntity.getBytesContent().length == 0))
+                || newEntity.getExpires() < System.currentTimeMillis()) {
             return;
         }
 
+        // 调用者的实体可能就是索引中的实体(get()的返回值), 只修改副本.
+        DiskCacheEntity entity = newEntity.copy();
+
+        // 被替换的实体的blob记录将失效, 先记录位置.
+        DiskCacheEntity oldEntity = INDEX.get(entity.getKey());
+        if (oldEntity == null) {
+            try {
+                oldEntity = cacheDb.selector(DiskCacheEntity.class)
+                        .where("key", "=", entity.getKey()).findFirst();
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+        String oldBlobPath = oldEntity == null ? null : oldEntity.getBlobPath();
+        int oldBlobLength = oldEntity == null ? 0 : oldEntity.getBlobLength();
+
+        // textContent和bytesContent写入blob日志, 数据库中只保存位置.
+        DiskCacheEntity dbEntity = entity;
         try {
-            cacheDb.replace(entity);
+            blobStore.append(entity);
+            dbEntity = entity.copy();
+            dbEntity.setTextContent(null);
+            dbEntity.setBytesContent(null);
         } catch (Throwable ex) {
+            entity.setBlobPath(null);
+            LogUtil.w(ex.getMessage(), ex);
+        }
+
+        try {
+            cacheDb.replace(dbEntity);
+            INDEX.put(entity);
+            blobStore.release(oldBlobPath, oldBlobLength);
+        } catch (Throwable ex) {
+            INDEX.remove(entity.getKey());
+            blobStore.release(entity); // 记录已追加但没有被引用
             LogUtil.e(ex.getMessage(), ex);
         }
 
@@ -151,8 +319,10 @@ public final class LruDiskCache {
             if (processLock != null && processLock.isValid()) {
                 result = new DiskCacheFile(entity.getPath(), entity, processLock);
                 if (!result.exists()) {
+                    INDEX.remove(entity.getKey());
+                    addCacheFileSize(-entity.getFileSize());
                     try {
-                        cacheDb.delete(entity);
+                        cacheDb.delete(DiskCacheEntity.class, WhereBuilder.b("key", "=", entity.getKey()));
                     } catch (Throwable ex) {
                         LogUtil.e(ex.getMessage(), ex);
                     }
@@ -187,7 +357,11 @@ public final class LruDiskCache {
     }
 
     public void clearCacheFiles() {
+        if (blobStore != null) {
+            blobStore.clear();
+        }
         IOUtil.deleteFileOrDir(cacheDir);
+        cacheFileSize.set(0L);
     }
 
     /**
@@ -210,11 +384,17 @@ public final class LruDiskCache {
                 processLock = ProcessLock.tryLock(destPath, true, LOCK_WAIT);
                 if (processLock != null && processLock.isValid()) { // lock
                     destFile = new DiskCacheFile(destPath, cacheEntity, processLock);
+                    long oldFileSize = destFile.length();
                     if (cacheFile.renameTo(destFile)) {
+                        long fileSize = destFile.length();
+                        cacheEntity.setFileSize(fileSize);
+                        addCacheFileSize(fileSize - oldFileSize);
                         try {
                             result = destFile;
                             cacheDb.replace(cacheEntity);
+                            INDEX.put(cacheEntity);
                         } catch (Throwable ex) {
+                            INDEX.remove(cacheEntity.getKey());
                             LogUtil.e(ex.getMessage(), ex);
                         }
 
@@ -259,33 +439,23 @@ public final class LruDiskCache {
                     lastTrimTime = current;
                 }
 
+                // 先写回访问记录, 保证淘汰顺序准确
+                flushAccess();
+
                 // trim expires
                 deleteExpiry();
 
                 // trim db
                 try {
                     int count = (int) cacheDb.selector(DiskCacheEntity.class).count();
-                    if (count > LIMIT_COUNT + 10) {
-                        List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class)
+                    if (count > maxCount + 10) {
+                        // 从最久未访问的一批实体中由淘汰策略选择
+                        int rmCount = count - maxCount;
+                        List<DiskCacheEntity> candidates = cacheDb.selector(DiskCacheEntity.class)
                                 .orderBy("lastAccess").orderBy("hits")
-                                .limit(count - LIMIT_COUNT).offset(0).findAll();
-                        if (rmList != null && rmList.size() > 0) {
-                            // delete cache files
-                            for (DiskCacheEntity entity : rmList) {
-                                try {
-                                    // delete db entity
-                                    cacheDb.delete(entity);
-                                    // delete cache files
-                                    String path = entity.getPath();
-                                    if (!TextUtils.isEmpty(path)) {
-                                        deleteFileWithLock(path);
-                                        deleteFileWithLock(path + TEMP_FILE_SUFFIX);
-                                    }
-                                } catch (Throwable ex) {
-                                    LogUtil.e(ex.getMessage(), ex);
-                                }
-                            }
-
+                                .limit(Math.max(rmCount * 4, MIN_TRIM_CANDIDATE_COUNT)).offset(0).findAll();
+                        if (candidates != null && candidates.size() > 0) {
+                            deleteEntities(evictionPolicy.selectVictims(candidates, rmCount, 0L));
                         }
                     }
                 } catch (Throwable ex) {
@@ -294,34 +464,60 @@ public final class LruDiskCache {
 
                 // trim disk
                 try {
-                    while (FileUtil.getFileOrDirSize(cacheDir) > diskCacheSize) {
-                        List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class)
-                                .orderBy("lastAccess").orderBy("hits").limit(10).offset(0).findAll();
-                        if (rmList != null && rmList.size() > 0) {
-                            // delete cache files
-                            for (DiskCacheEntity entity : rmList) {
-                                try {
-                                    // delete db entity
-                                    cacheDb.delete(entity);
-                                    // delete cache files
-                                    String path = entity.getPath();
-                                    if (!TextUtils.isEmpty(path)) {
-                                        deleteFileWithLock(path);
-                                        deleteFileWithLock(path + TEMP_FILE_SUFFIX);
-                                    }
-                                } catch (Throwable ex) {
-                                    LogUtil.e(ex.getMessage(), ex);
-                                }
-                            }
-                        }
+                    // 分页读取最久未访问的实体, 由淘汰策略选择, 直到不再超出大小限制
+                    int offset = 0;
+                    long excessSize = getCacheSize() - diskCacheSize;
+                    while (excessSize > 0) {
+                        List<DiskCacheEntity> candidates = cacheDb.selector(DiskCacheEntity.class)
+                                .where(buildCacheDirWhere())
+                                .orderBy("lastAccess").orderBy("hits")
+                                .limit(TRIM_PAGE_SIZE).offset(offset).findAll();
+                        if (candidates == null || candidates.isEmpty()) break;
+                        List<DiskCacheEntity> victims = evictionPolicy.selectVictims(candidates, 0, excessSize);
+                        deleteEntities(victims);
+                        if (candidates.size() < TRIM_PAGE_SIZE) break;
+                        // 已删除的实体不再占用偏移
+                        offset += candidates.size() - (victims == null ? 0 : victims.size());
+                        excessSize = getCacheSize() - diskCacheSize;
                     }
                 } catch (Throwable ex) {
                     LogUtil.e(ex.getMessage(), ex);
                 }
+
+                // compact blob log
+                if (blobStore.needCompact()) {
+                    blobStore.compact();
+                }
             }
         });
     }
 
+    /**
+     * 批量写回合并后的访问记录, 在trimExecutor中执行.
+     */
+    private void flushAccess() {
+        Collection<DiskCacheAccessBuffer.Access> accessList = accessBuffer.drain();
+        if (!available || accessList == null) return;
+
+        try {
+            String tableName = cacheDb.getTable(DiskCacheEntity.class).getName();
+            List<SqlInfo> sqlInfoList = DiskCacheAccessBuffer.buildUpdateSqlInfoList(tableName, accessList);
+            // 所有批次在一个事务中提交, 只同步一次日志.
+            SQLiteDatabase database = cacheDb.getDatabase();
+            database.beginTransactionNonExclusive();
+            try {
+                for (SqlInfo sqlInfo : sqlInfoList) {
+                    cacheDb.executeUpdateDelete(sqlInfo);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+        }
+    }
+
     private void deleteExpiry() {
         if (!available) return;
 
@@ -333,10 +529,8 @@ public final class LruDiskCache {
             if (rmList != null && rmList.size() > 0) {
                 // delete cache files
                 for (DiskCacheEntity entity : rmList) {
-                    String path = entity.getPath();
-                    if (!TextUtils.isEmpty(path)) {
-                        deleteFileWithLock(path);
-                    }
+                    INDEX.remove(entity.getKey());
+                    releaseEntity(entity);
                 }
             }
         } catch (Throwable ex) {
@@ -345,36 +539,315 @@ public final class LruDiskCache {
     }
 
     /**
-     * 清理未被数据库索引的历史缓存文件
+     * 在trimExecutor中删除读取时发现已过期的实体
      */
-    private void deleteNoIndexFiles() {
+    private void deleteExpiredEntity(final DiskCacheEntity entity) {
+        trimExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!available) return;
+                try {
+                    // 索引中的实体没有id, 按key删除; 期间被重新写入(未过期)的缓存不受影响.
+                    WhereBuilder whereBuilder = WhereBuilder.b("key", "=", entity.getKey())
+                            .and("expires", "<", System.currentTimeMillis());
+                    DiskCacheEntity current = cacheDb.selector(DiskCacheEntity.class)
+                            .where(whereBuilder).findFirst();
+                    if (current != null) {
+                        cacheDb.delete(DiskCacheEntity.class, whereBuilder);
+                        INDEX.remove(current.getKey());
+                        releaseEntity(current);
+                        String path = current.getPath();
+                        if (!TextUtils.isEmpty(path)) {
+                            deleteFileWithLock(path + TEMP_FILE_SUFFIX);
+                        }
+                    }
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+        });
+    }
+
+    /*package*/ static void removeFromIndex(String key) {
+        INDEX.remove(key);
+    }
+
+    /**
+     * 从blob日志中读取实体的textContent和bytesContent(如果尚未读取).
+     *
+     * @return false: blob记录已失效
+     */
+    private boolean loadBlobContent(DiskCacheEntity entity) {
+        if (entity.getBlobPath() == null
+                || entity.getTextContent() != null
+                || entity.getBytesContent() != null) {
+            return true;
+        }
+        if (DiskCacheBlobStore.read(entity, blobMemoryMapped)) {
+            INDEX.put(entity); // 内容已加载, 更新索引中的大小
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 批量删除实体及其缓存文件
+     */
+    private void deleteEntities(List<DiskCacheEntity> rmList) throws DbException {
+        if (rmList == null || rmList.isEmpty()) return;
+
+        // delete db entities, 分批删除以限制IN列表的长度
+        List<Long> idList = new ArrayList<Long>(Math.min(rmList.size(), DELETE_BATCH_SIZE));
+        for (DiskCacheEntity entity : rmList) {
+            idList.add(entity.getId());
+            if (idList.size() >= DELETE_BATCH_SIZE) {
+                cacheDb.delete(DiskCacheEntity.class, WhereBuilder.b("id", "IN", idList));
+                idList.clear();
+            }
+        }
+        if (!idList.isEmpty()) {
+            cacheDb.delete(DiskCacheEntity.class, WhereBuilder.b("id", "IN", idList));
+        }
+
+        // delete cache files
+        for (DiskCacheEntity entity : rmList) {
+            INDEX.remove(entity.getKey());
+            try {
+                releaseEntity(entity);
+                String path = entity.getPath();
+                if (!TextUtils.isEmpty(path)) {
+                    deleteFileWithLock(path + TEMP_FILE_SUFFIX);
+                }
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * 删除已从数据库中删除的实体的缓存文件, 释放它的blob记录.
+     * disk_cache表为所有缓存目录共用, 大小计入实体所属目录的LruDiskCache.
+     */
+    private void releaseEntity(DiskCacheEntity entity) {
+        LruDiskCache owner = findOwner(entity);
+        String path = entity.getPath();
+        if (owner != null) {
+            owner.blobStore.release(entity);
+            if (!TextUtils.isEmpty(path)) {
+                owner.deleteCacheFile(path);
+            }
+        } else if (!TextUtils.isEmpty(path)) {
+            // 所属目录在当前进程中还没有打开, 打开时会从数据库重新汇总大小.
+            deleteFileWithLock(path);
+        }
+    }
+
+    /**
+     * 缓存文件或blob记录所在目录的LruDiskCache, 没有打开时返回null.
+     */
+    private synchronized static LruDiskCache findOwner(DiskCacheEntity entity) {
+        String path = entity.getPath();
+        String blobPath = entity.getBlobPath();
+        for (LruDiskCache cache : DISK_CACHE_MAP.values()) {
+            if (!cache.available) continue;
+            if (path != null && path.startsWith(cache.cacheDir.getAbsolutePath() + File.separator)) {
+                return cache;
+            }
+            if (blobPath != null
+                    && blobPath.startsWith(cache.blobStore.getBlobDir().getAbsolutePath() + File.separator)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 启动时根据数据库中记录的fileSize和blobLength汇总缓存目录大小, 代替遍历目录.
+     */
+    private void loadCacheFileSize() {
         trimExecutor.execute(new Runnable() {
             @Override
             public void run() {
                 if (!available) return;
 
                 try {
-                    File[] fileList = cacheDir.listFiles();
-                    if (fileList != null) {
-                        for (File file : fileList) {
-                            try {
-                                long count = cacheDb.selector(DiskCacheEntity.class)
-                                        .where("path", "=", file.getAbsolutePath()).count();
-                                if (count < 1) {
-                                    IOUtil.deleteFileOrDir(file);
-                                }
-                            } catch (Throwable ex) {
-                                LogUtil.e(ex.getMessage(), ex);
-                            }
+                    DbModel model = cacheDb.selector(DiskCacheEntity.class)
+                            .where(buildCacheDirWhere())
+                            .select("sum(\"fileSize\") as totalSize",
+                                    "sum(CASE WHEN \"blobPath\" IS NULL THEN 0 ELSE \"blobLength\" END) as blobSize")
+                            .findFirst();
+                    if (model != null) {
+                        cacheFileSize.set(model.getLong("totalSize", 0L));
+                        blobStore.setLiveSize(model.getLong("blobSize", 0L));
+                    }
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * 缓存文件和blob记录占用的总大小
+     */
+    private long getCacheSize() {
+        return cacheFileSize.get() + blobStore.getLiveSize();
+    }
+
+    private void addCacheFileSize(long delta) {
+        long current, next;
+        do {
+            current = cacheFileSize.get();
+            next = current + delta;
+            if (next < 0) next = 0;
+        } while (!cacheFileSize.compareAndSet(current, next));
+    }
+
+    /**
+     * 缓存文件或blob记录在当前缓存目录中的实体
+     */
+    private WhereBuilder buildCacheDirWhere() {
+        return WhereBuilder.b().expr("(" + buildPathLike("path", cacheDir)
+                + " OR " + buildPathLike("blobPath", blobStore.getBlobDir()) + ")");
+    }
+
+    private static String buildPathLike(String columnName, File dir) {
+        String prefix = dir.getAbsolutePath() + File.separator;
+        prefix = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "\"" + columnName + "\" LIKE '" + ColumnUtils.convert2SafeExpr(prefix) + "%' ESCAPE '\\'";
+    }
+
+    /**
+     * 加载最近访问的缓存实体到内存索引, 直到索引占满.
+     */
+    private void loadIndex() {
+        if (!available || !INDEX.beginLoad()) return;
+        trimExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<DiskCacheEntity> entities = null;
+                try {
+                    entities = new ArrayList<DiskCacheEntity>();
+                    long totalSize = 0;
+                    int offset = 0;
+                    while (totalSize < INDEX.maxSize()) {
+                        List<DiskCacheEntity> page = cacheDb.selector(DiskCacheEntity.class)
+                                .orderBy("lastAccess", true)
+                                .limit(INDEX_LOAD_PAGE_SIZE).offset(offset).findAll();
+                        if (page == null || page.isEmpty()) break;
+                        for (DiskCacheEntity entity : page) {
+                            entities.add(entity);
+                            totalSize += DiskCacheIndex.sizeOfEntity(entity);
                         }
+                        if (page.size() < INDEX_LOAD_PAGE_SIZE) break;
+                        offset += INDEX_LOAD_PAGE_SIZE;
                     }
                 } catch (Throwable ex) {
+                    entities = null;
                     LogUtil.e(ex.getMessage(), ex);
+                } finally {
+                    INDEX.finishLoad(entities);
+                }
+            }
+        });
+    }
+
+    /**
+     * 清理未被数据库索引的历史缓存文件.
+     * 分批进行, 每批只查询一次数据库, 批次之间让出trimExecutor.
+     */
+    private void deleteNoIndexFiles() {
+        trimExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!available) return;
+
+                String[] fileNames = cacheDir.list();
+                if (fileNames != null && fileNames.length > 0) {
+                    new NoIndexFileSweeper(fileNames).run();
                 }
             }
         });
     }
 
+    /**
+     * 可分批恢复执行的无索引文件清理任务
+     */
+    private class NoIndexFileSweeper implements Runnable {
+
+        private final String[] fileNames;
+        private final long startTime = System.currentTimeMillis();
+        private int position = 0;
+
+        public NoIndexFileSweeper(String[] fileNames) {
+            this.fileNames = fileNames;
+        }
+
+        @Override
+        public void run() {
+            if (!available) return;
+
+            int end = Math.min(position + SWEEP_BATCH_SIZE, fileNames.length);
+            try {
+                sweep(position, end);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+            position = end;
+
+            if (position < fileNames.length) {
+                x.task().postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        trimExecutor.execute(NoIndexFileSweeper.this);
+                    }
+                }, SWEEP_BATCH_INTERVAL);
+            }
+        }
+
+        private void sweep(int start, int end) throws DbException {
+            List<String> pathList = new ArrayList<String>(end - start);
+            for (int i = start; i < end; i++) {
+                if (DiskCacheBlobStore.BLOB_DIR_NAME.equals(fileNames[i])) continue;
+                pathList.add(new File(cacheDir, fileNames[i]).getAbsolutePath());
+            }
+            if (pathList.isEmpty()) return;
+
+            // 一次查询这批文件中被索引的路径
+            HashSet<String> indexedPathSet = new HashSet<String>(pathList.size());
+            List<DbModel> models = cacheDb.selector(DiskCacheEntity.class)
+                    .where("path", "IN", pathList).select("path").findAll();
+            if (models != null) {
+                for (DbModel model : models) {
+                    indexedPathSet.add(model.getString("path"));
+                }
+            }
+
+            for (String path : pathList) {
+                if (indexedPathSet.contains(path)) continue;
+                // 清理开始后写入的文件可能尚未提交到数据库
+                if (new File(path).lastModified() >= startTime) continue;
+                try {
+                    deleteFileWithLock(path);
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除已提交的缓存文件, 并更新缓存目录大小.
+     */
+    private boolean deleteCacheFile(String path) {
+        long fileSize = new File(path).length();
+        boolean deleted = deleteFileWithLock(path);
+        if (deleted) {
+            addCacheFileSize(-fileSize);
+        }
+        return deleted;
+    }
+
     private boolean deleteFileWithLock(String path) {
         ProcessLock processLock = null;
         try {
@@ -0,0 +1,27 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+import java.util.List;
+
+/**
+ * 磁盘缓存的淘汰策略.
+ * 通过LruDiskCache.getDiskCache(dirName, policy)为每个缓存目录指定.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * 缓存被查询时调用(包括未命中), 可用于统计访问频率.
+     */
+    void recordAccess(String key);
+
+    /**
+     * 从候选实体中选出需要淘汰的实体.
+     *
+     * @param candidates 候选实体, 按lastAccess升序排列
+     * @param minCount   至少淘汰的实体数量
+     * @param minSize    至少释放的磁盘空间(byte), 见DiskCacheEntity.getDiskSize()
+     * @return 需要淘汰的实体
+     */
+    List<DiskCacheEntity> selectVictims(List<DiskCacheEntity> candidates, int minCount, long minSize);
+}
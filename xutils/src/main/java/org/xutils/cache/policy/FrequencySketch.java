@@ -0,0 +1,76 @@
+package org.xutils.cache.policy;
+
+/**
+ * 4行的Count-Min Sketch, 用于估算key的访问频率.
+ * 每个计数器最大为15, 累计的访问次数达到阈值后所有计数器减半, 使旧的访问频率逐渐衰减.
+ */
+/*package*/ final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xa3b195b3, 0x6f8d4b9f, 0x3a9c5e21};
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedSize 预计需要统计的key数量
+     */
+    public FrequencySketch(int expectedSize) {
+        int width = 16;
+        while (width < expectedSize && width < (1 << 20)) {
+            width <<= 1;
+        }
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    public synchronized void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    public synchronized int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int result = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            result = Math.min(result, table[i][indexOf(hash, i)]);
+        }
+        return result;
+    }
+
+    private void reset() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        int h = (hash ^ SEEDS[i]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
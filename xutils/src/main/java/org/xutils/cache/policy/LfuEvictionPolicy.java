@@ -0,0 +1,15 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+/**
+ * 最不经常使用: 先淘汰hits少的实体, 相同时先淘汰lastAccess最早的.
+ */
+public class LfuEvictionPolicy extends SortedEvictionPolicy {
+
+    @Override
+    public int compare(DiskCacheEntity lhs, DiskCacheEntity rhs) {
+        int result = compareLong(lhs.getHits(), rhs.getHits());
+        return result == 0 ? compareLong(lhs.getLastAccess(), rhs.getLastAccess()) : result;
+    }
+}
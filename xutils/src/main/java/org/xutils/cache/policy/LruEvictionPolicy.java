@@ -0,0 +1,15 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+/**
+ * 最近最少使用: 先淘汰lastAccess最早的实体, 相同时先淘汰hits少的.
+ */
+public class LruEvictionPolicy extends SortedEvictionPolicy {
+
+    @Override
+    public int compare(DiskCacheEntity lhs, DiskCacheEntity rhs) {
+        int result = compareLong(lhs.getLastAccess(), rhs.getLastAccess());
+        return result == 0 ? compareLong(lhs.getHits(), rhs.getHits()) : result;
+    }
+}
@@ -0,0 +1,32 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+import java.util.List;
+
+/**
+ * 按大小加权: 先淘汰又大又冷的文件.
+ * 淘汰分数 = diskSize(文件和blob记录的大小) * 闲置时间 / (hits + 1), 分数高的先被淘汰.
+ */
+public class SizeWeightedEvictionPolicy extends SortedEvictionPolicy {
+
+    private long now = System.currentTimeMillis();
+
+    @Override
+    public synchronized List<DiskCacheEntity> selectVictims(List<DiskCacheEntity> candidates, int minCount, long minSize) {
+        now = System.currentTimeMillis();
+        return super.selectVictims(candidates, minCount, minSize);
+    }
+
+    @Override
+    public int compare(DiskCacheEntity lhs, DiskCacheEntity rhs) {
+        return Double.compare(score(rhs), score(lhs));
+    }
+
+    private double score(DiskCacheEntity entity) {
+        long idleTime = Math.max(now - entity.getLastAccess(), 1L);
+        // 大小为0时按1byte计算, 仍按闲置时间淘汰.
+        long size = Math.max(entity.getDiskSize(), 1L);
+        return (double) size * idleTime / (entity.getHits() + 1);
+    }
+}
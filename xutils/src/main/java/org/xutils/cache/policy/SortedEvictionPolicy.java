@@ -0,0 +1,43 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按固定顺序淘汰的策略基类, 排序靠前的实体先被淘汰.
+ */
+public abstract class SortedEvictionPolicy implements EvictionPolicy, Comparator<DiskCacheEntity> {
+
+    @Override
+    public void recordAccess(String key) {
+    }
+
+    @Override
+    public List<DiskCacheEntity> selectVictims(List<DiskCacheEntity> candidates, int minCount, long minSize) {
+        List<DiskCacheEntity> sorted = new ArrayList<DiskCacheEntity>(candidates);
+        Collections.sort(sorted, this);
+        return takeVictims(sorted, minCount, minSize);
+    }
+
+    /**
+     * 从已排序的实体中依次取出, 直到数量和大小都满足要求.
+     */
+    /*package*/ static List<DiskCacheEntity> takeVictims(List<DiskCacheEntity> sorted, int minCount, long minSize) {
+        List<DiskCacheEntity> result = new ArrayList<DiskCacheEntity>();
+        long size = 0;
+        for (DiskCacheEntity entity : sorted) {
+            if (result.size() >= minCount && size >= minSize) break;
+            result.add(entity);
+            size += entity.getDiskSize();
+        }
+        return result;
+    }
+
+    /*package*/ static int compareLong(long lhs, long rhs) {
+        return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+}
@@ -0,0 +1,109 @@
+package org.xutils.cache.policy;
+
+import org.xutils.cache.DiskCacheEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * W-TinyLFU准入过滤.
+ * 最近访问的一小部分实体作为窗口区, 不参与淘汰竞争;
+ * 窗口外从未命中过的新实体作为准入候选, 与主区(由delegate排序)的淘汰对象比较访问频率,
+ * 频率低的一方被淘汰. 这样只访问过一次的大量新文件不会把热点缓存挤出去.
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 5000;
+    private static final int DEFAULT_WINDOW_PERCENT = 1;
+
+    private final SortedEvictionPolicy delegate;
+    private final FrequencySketch sketch;
+    private final int windowPercent;
+
+    public TinyLfuEvictionPolicy() {
+        this(new LruEvictionPolicy(), DEFAULT_EXPECTED_SIZE, DEFAULT_WINDOW_PERCENT);
+    }
+
+    /**
+     * @param delegate      主区的淘汰顺序
+     * @param expectedSize  预计缓存的key数量, 决定频率统计的精度
+     * @param windowPercent 窗口区占候选实体数量的百分比
+     */
+    public TinyLfuEvictionPolicy(SortedEvictionPolicy delegate, int expectedSize, int windowPercent) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate may not be null");
+        }
+        this.delegate = delegate;
+        this.sketch = new FrequencySketch(expectedSize);
+        this.windowPercent = Math.max(0, Math.min(windowPercent, 100));
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        if (key != null) {
+            sketch.increment(key);
+        }
+    }
+
+    @Override
+    public List<DiskCacheEntity> selectVictims(List<DiskCacheEntity> candidates, int minCount, long minSize) {
+        int size = candidates.size();
+        int windowCount = Math.max(1, size * windowPercent / 100);
+        int windowStart = Math.max(0, size - windowCount);
+
+        // 窗口外从未命中的实体作为准入候选(从旧到新), 其余进入主区.
+        List<DiskCacheEntity> admissionList = new ArrayList<DiskCacheEntity>();
+        List<DiskCacheEntity> mainList = new ArrayList<DiskCacheEntity>();
+        for (int i = 0; i < windowStart; i++) {
+            DiskCacheEntity entity = candidates.get(i);
+            if (entity.getHits() <= 0) {
+                admissionList.add(entity);
+            } else {
+                mainList.add(entity);
+            }
+        }
+        Collections.sort(mainList, delegate);
+
+        List<DiskCacheEntity> result = new ArrayList<DiskCacheEntity>();
+        HashSet<DiskCacheEntity> admitted = new HashSet<DiskCacheEntity>();
+        long freedSize = 0;
+        int mainIndex = 0, admissionIndex = 0;
+        while (result.size() < minCount || freedSize < minSize) {
+            DiskCacheEntity victim = mainIndex < mainList.size() ? mainList.get(mainIndex) : null;
+            DiskCacheEntity candidate = admissionIndex < admissionList.size() ? admissionList.get(admissionIndex) : null;
+            DiskCacheEntity evicted;
+            if (victim == null && candidate == null) {
+                break;
+            } else if (candidate == null) {
+                evicted = victim;
+                mainIndex++;
+            } else if (victim == null) {
+                evicted = candidate;
+                admissionIndex++;
+            } else if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                // 候选者被准入, 主区的淘汰对象被淘汰
+                admitted.add(candidate);
+                evicted = victim;
+                mainIndex++;
+                admissionIndex++;
+            } else {
+                evicted = candidate;
+                admissionIndex++;
+            }
+            result.add(evicted);
+            freedSize += evicted.getDiskSize();
+        }
+
+        // 仍不满足要求时, 依次淘汰被准入的实体和窗口区的实体.
+        if (result.size() < minCount || freedSize < minSize) {
+            List<DiskCacheEntity> remains = new ArrayList<DiskCacheEntity>(admitted);
+            remains.addAll(candidates.subList(windowStart, size));
+            Collections.sort(remains, delegate);
+            result.addAll(SortedEvictionPolicy.takeVictims(
+                    remains, minCount - result.size(), minSize - freedSize));
+        }
+        return result;
+    }
+}
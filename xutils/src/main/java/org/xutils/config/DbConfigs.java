@@ -11,13 +11,9 @@ import org.xutils.ex.DbException;
 public enum DbConfigs {
     HTTP(new DbManager.DaoConfig()
             .setDbName("xUtils_http_cache.db")
-            .setDbVersion(2)
-            .setDbOpenListener(new DbManager.DbOpenListener() {
-                @Override
-                public void onDbOpened(DbManager db) {
-                    db.getDatabase().enableWriteAheadLogging();
-                }
-            })
+            .setDbVersion(6)
+            .setWalEnabled(true)
+            .setSynchronousMode("NORMAL")
             .setDbUpgradeListener(new DbManager.DbUpgradeListener() {
                 @Override
                 public void onUpgrade(DbManager db, int oldVersion, int newVersion) {
@@ -32,12 +28,8 @@ public enum DbConfigs {
     COOKIE(new DbManager.DaoConfig()
             .setDbName("xUtils_http_cookie.db")
             .setDbVersion(1)
-            .setDbOpenListener(new DbManager.DbOpenListener() {
-                @Override
-                public void onDbOpened(DbManager db) {
-                    db.getDatabase().enableWriteAheadLogging();
-                }
-            })
+            .setWalEnabled(true)
+            .setSynchronousMode("NORMAL")
             .setDbUpgradeListener(new DbManager.DbUpgradeListener() {
                 @Override
                 public void onUpgrade(DbManager db, int oldVersion, int newVersion) {
@@ -19,6 +19,7 @@ import android.database.Cursor;
 
 import org.xutils.db.table.ColumnEntity;
 import org.xutils.db.table.DbModel;
+import org.xutils.db.table.EntityAdapter;
 import org.xutils.db.table.TableEntity;
 
 import java.util.HashMap;
@@ -26,17 +27,7 @@ import java.util.HashMap;
 /*package*/ final class CursorUtils {
 
     public static <T> T getEntity(TableEntity<T> table, final Cursor cursor) throws Throwable {
-        T entity = table.createEntity();
-        HashMap<String, ColumnEntity> columnMap = table.getColumnMap();
-        int columnCount = cursor.getColumnCount();
-        for (int i = 0; i < columnCount; i++) {
-            String columnName = cursor.getColumnName(i);
-            ColumnEntity column = columnMap.get(columnName);
-            if (column != null) {
-                column.setValueFromCursor(entity, cursor, i);
-            }
-        }
-        return entity;
+        return new EntityReader<T>(table, cursor).read(cursor);
     }
 
     public static DbModel getDbModel(final Cursor cursor) {
@@ -47,4 +38,46 @@ import java.util.HashMap;
         }
         return result;
     }
+
+    /**
+     * 读取同一个cursor的多行时使用, cursor的列和实体列的对应关系只在创建时计算一次.
+     * 注册了EntityAdapter的列不使用反射.
+     */
+    /*package*/ static final class EntityReader<T> {
+
+        private final TableEntity<T> table;
+        private final EntityAdapter<T> adapter;
+        /**
+         * 按cursor的列顺序, 没有对应时为null/-1
+         */
+        private final ColumnEntity[] columns;
+        private final int[] adapterColumns;
+
+        /*package*/ EntityReader(TableEntity<T> table, Cursor cursor) {
+            this.table = table;
+            this.adapter = table.getEntityAdapter();
+            HashMap<String, ColumnEntity> columnMap = table.getColumnMap();
+            int columnCount = cursor.getColumnCount();
+            this.columns = new ColumnEntity[columnCount];
+            this.adapterColumns = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                String columnName = cursor.getColumnName(i);
+                columns[i] = columnMap.get(columnName);
+                adapterColumns[i] = columns[i] == null ? -1 : table.getAdapterColumn(columnName);
+            }
+        }
+
+        /*package*/ T read(Cursor cursor) throws Throwable {
+            T entity = table.createEntity();
+            for (int i = 0; i < columns.length; i++) {
+                int adapterColumn = adapterColumns[i];
+                if (adapterColumn >= 0) {
+                    adapter.readColumn(entity, cursor, i, adapterColumn);
+                } else if (columns[i] != null) {
+                    columns[i].setValueFromCursor(entity, cursor, i);
+                }
+            }
+            return entity;
+        }
+    }
 }
@@ -16,9 +16,13 @@
 package org.xutils.db;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
 import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
+import android.text.TextUtils;
 
 import org.xutils.DbManager;
 import org.xutils.common.util.IOUtil;
@@ -37,6 +41,7 @@ import org.xutils.x;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -53,6 +58,12 @@ public final class DbManagerImpl extends DbBase {
     private DaoConfig daoConfig;
     private boolean allowTransaction;
 
+    /**
+     * 写入时复用的预编译语句, key: sql.
+     * 使用期间从缓存中取出, 避免多个线程同时绑定同一个语句的参数.
+     */
+    private final HashMap<String, SQLiteStatement> statementCache = new HashMap<String, SQLiteStatement>();
+
     private DbManagerImpl(DaoConfig config) throws DbException {
         if (config == null) {
             throw new IllegalArgumentException("daoConfig may not be null");
@@ -130,8 +141,12 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 table.createTableIfNotExists();
-                for (Object item : entities) {
-                    saveOrUpdateWithoutTransaction(table, item);
+                if (table.getId().isAutoId()) {
+                    for (Object item : entities) {
+                        saveOrUpdateWithoutTransaction(table, item);
+                    }
+                } else {
+                    insertWithoutTransaction(table, entities, true, false);
                 }
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
@@ -155,13 +170,11 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 table.createTableIfNotExists();
-                for (Object item : entities) {
-                    execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(table, item));
-                }
+                insertWithoutTransaction(table, entities, true, false);
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
                 table.createTableIfNotExists();
-                execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(table, entity));
+                insertWithoutTransaction(table, Collections.singletonList(entity), true, false);
             }
 
             setTransactionSuccessful();
@@ -180,13 +193,11 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 table.createTableIfNotExists();
-                for (Object item : entities) {
-                    execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, item));
-                }
+                insertWithoutTransaction(table, entities, false, false);
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
                 table.createTableIfNotExists();
-                execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
+                insertWithoutTransaction(table, Collections.singletonList(entity), false, false);
             }
 
             setTransactionSuccessful();
@@ -206,10 +217,8 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return false;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 table.createTableIfNotExists();
-                for (Object item : entities) {
-                    if (!saveBindingIdWithoutTransaction(table, item)) {
-                        throw new DbException("saveBindingId error, transaction will not commit!");
-                    }
+                if (!insertWithoutTransaction(table, entities, false, true)) {
+                    throw new DbException("saveBindingId error, transaction will not commit!");
                 }
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
@@ -336,8 +345,7 @@ public final class DbManagerImpl extends DbBase {
         if (!table.tableIsExists()) return null;
 
         Selector<T> selector = Selector.from(table).where(table.getId().getName(), "=", idValue);
-        String sql = selector.limit(1).toString();
-        Cursor cursor = execQuery(sql);
+        Cursor cursor = execQuery(selector.limit(1).toSqlInfo());
         if (cursor != null) {
             try {
                 if (cursor.moveToNext()) {
@@ -415,9 +423,57 @@ public final class DbManagerImpl extends DbBase {
         } else {
             result = x.app().openOrCreateDatabase(config.getDbName(), 0, null);
         }
+
+        // 先开启WAL, 开启时连接池会重新配置主连接的synchronous.
+        if (config.isWalEnabled()) {
+            result.enableWriteAheadLogging();
+        }
+        // pragma只作用于执行它的连接. WAL模式下事务外的rawQuery会使用只读连接,
+        // 所以synchronous通过execSQL(使用主连接)设置, 它不能在事务中修改;
+        // 其余返回结果行的pragma在事务中执行, 事务期间当前线程持有主连接.
+        if (!TextUtils.isEmpty(config.getSynchronousMode())) {
+            try {
+                result.execSQL("PRAGMA synchronous=" + config.getSynchronousMode());
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+        result.beginTransaction();
+        try {
+            if (config.getCacheSize() != 0) {
+                execPragma(result, "cache_size=" + config.getCacheSize());
+            }
+            if (config.getMmapSize() >= 0) {
+                execPragma(result, "mmap_size=" + config.getMmapSize());
+            }
+            if (config.getWalAutoCheckpoint() >= 0) {
+                execPragma(result, "wal_autocheckpoint=" + config.getWalAutoCheckpoint());
+            }
+            result.setTransactionSuccessful();
+        } finally {
+            result.endTransaction();
+        }
+        // 查询使用参数绑定后sql结构固定, 加大已编译语句的缓存
+        result.setMaxSqlCacheSize(SQLiteDatabase.MAX_SQL_CACHE_SIZE);
         return result;
     }
 
+    /**
+     * 部分pragma会返回结果行, execSQL不能执行, 使用rawQuery.
+     * 需要在事务中调用, 保证在主连接上执行.
+     */
+    private static void execPragma(SQLiteDatabase database, String pragma) {
+        Cursor cursor = null;
+        try {
+            cursor = database.rawQuery("PRAGMA " + pragma, null);
+            cursor.moveToNext();
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+        } finally {
+            IOUtil.closeQuietly(cursor);
+        }
+    }
+
     //***************************** private operations with out transaction *****************************
     private void saveOrUpdateWithoutTransaction(TableEntity<?> table, Object entity) throws DbException {
         ColumnEntity id = table.getId();
@@ -428,45 +484,94 @@ public final class DbManagerImpl extends DbBase {
                 saveBindingIdWithoutTransaction(table, entity);
             }
         } else {
-            execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(table, entity));
+            insertWithoutTransaction(table, Collections.singletonList(entity), true, false);
         }
     }
 
     private boolean saveBindingIdWithoutTransaction(TableEntity<?> table, Object entity) throws DbException {
+        return insertWithoutTransaction(table, Collections.singletonList(entity), false, true);
+    }
+
+    /**
+     * 使用缓存的预编译语句逐条写入, 参数由TableEntity.bindInsertArgs直接绑定.
+     *
+     * @param replace   使用REPLACE INTO
+     * @param bindingId 自增id时把插入的rowid设置回entity
+     * @return bindingId时有插入失败返回false
+     */
+    private boolean insertWithoutTransaction(TableEntity<?> table, List<?> entities,
+                                             boolean replace, boolean bindingId) throws DbException {
+        String sql = replace ? SqlInfoBuilder.buildReplaceSql(table) : SqlInfoBuilder.buildInsertSql(table);
         ColumnEntity id = table.getId();
-        if (id.isAutoId()) {
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
-            long idValue = getLastAutoIncrementId(table.getName());
-            if (idValue == -1) {
-                return false;
+        bindingId = bindingId && id.isAutoId();
+
+        SQLiteStatement statement = null;
+        try {
+            statement = obtainStatement(sql);
+            for (Object entity : entities) {
+                statement.clearBindings();
+                table.bindInsertArgs(statement, entity);
+                if (bindingId) {
+                    // INTEGER PRIMARY KEY AUTOINCREMENT的列就是rowid
+                    long idValue = statement.executeInsert();
+                    if (idValue == -1) {
+                        return false;
+                    }
+                    id.setAutoIdValue(entity, idValue);
+                } else {
+                    statement.execute();
+                }
             }
-            id.setAutoIdValue(entity, idValue);
-            return true;
-        } else {
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
             return true;
+        } catch (Throwable e) {
+            throw new DbException(e);
+        } finally {
+            if (statement != null) {
+                recycleStatement(sql, statement);
+            }
         }
     }
 
-    //************************************************ tools ***********************************
+    private SQLiteStatement obtainStatement(String sql) {
+        synchronized (statementCache) {
+            SQLiteStatement statement = statementCache.remove(sql);
+            if (statement != null) {
+                return statement;
+            }
+        }
+        return database.compileStatement(sql);
+    }
 
-    private long getLastAutoIncrementId(String tableName) throws DbException {
-        long id = -1;
-        Cursor cursor = execQuery("SELECT seq FROM sqlite_sequence WHERE name='" + tableName + "' LIMIT 1");
-        if (cursor != null) {
-            try {
-                if (cursor.moveToNext()) {
-                    id = cursor.getLong(0);
+    private void recycleStatement(String sql, SQLiteStatement statement) {
+        try {
+            statement.clearBindings();
+            synchronized (statementCache) {
+                if (database.isOpen() && !statementCache.containsKey(sql)) {
+                    statementCache.put(sql, statement);
+                    return;
                 }
-            } catch (Throwable e) {
-                throw new DbException(e);
-            } finally {
-                IOUtil.closeQuietly(cursor);
             }
+            statement.releaseReference();
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
         }
-        return id;
     }
 
+    private void clearStatementCache() {
+        synchronized (statementCache) {
+            for (SQLiteStatement statement : statementCache.values()) {
+                try {
+                    statement.releaseReference();
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+            statementCache.clear();
+        }
+    }
+
+    //************************************************ tools ***********************************
+
     /**
      * 关闭数据库.
      * 同一个库的是单实例的, 尽量不要调用这个方法, 会自动释放.
@@ -475,10 +580,27 @@ public final class DbManagerImpl extends DbBase {
     public void close() throws IOException {
         if (DAO_MAP.containsKey(daoConfig)) {
             DAO_MAP.remove(daoConfig);
+            clearStatementCache();
             this.database.close();
         }
     }
 
+    @Override
+    public void checkpoint() throws DbException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && !database.isWriteAheadLoggingEnabled()) return;
+        String sql = Build.VERSION.SDK_INT >= 23 ? "PRAGMA wal_checkpoint(TRUNCATE)" : "PRAGMA wal_checkpoint";
+        Cursor cursor = execQuery(sql);
+        if (cursor != null) {
+            try {
+                cursor.moveToNext();
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtil.closeQuietly(cursor);
+            }
+        }
+    }
+
     ///////////////////////////////////// exec sql /////////////////////////////////////////////////////
 
     private void beginTransaction() {
@@ -570,10 +692,20 @@ public final class DbManagerImpl extends DbBase {
         }
     }
 
+    /**
+     * 参数按类型绑定(rawQuery只能绑定字符串参数)
+     */
     @Override
-    public Cursor execQuery(SqlInfo sqlInfo) throws DbException {
+    public Cursor execQuery(final SqlInfo sqlInfo) throws DbException {
         try {
-            return database.rawQuery(sqlInfo.getSql(), sqlInfo.getBindArgsAsStrArray());
+            return database.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+                @Override
+                public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                                        String editTable, SQLiteQuery query) {
+                    sqlInfo.bindArgs(query);
+                    return new SQLiteCursor(masterQuery, editTable, query);
+                }
+            }, sqlInfo.getSql(), null, null);
         } catch (Throwable e) {
             throw new DbException(e);
         }
@@ -19,6 +19,7 @@ import android.database.Cursor;
 import android.text.TextUtils;
 
 import org.xutils.common.util.IOUtil;
+import org.xutils.db.sqlite.SqlInfo;
 import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.DbModel;
 import org.xutils.db.table.TableEntity;
@@ -144,7 +145,7 @@ public final class DbModelSelector {
         if (!table.tableIsExists()) return null;
 
         this.limit(1);
-        Cursor cursor = table.getDb().execQuery(this.toString());
+        Cursor cursor = table.getDb().execQuery(this.toSqlInfo());
         if (cursor != null) {
             try {
                 if (cursor.moveToNext()) {
@@ -165,7 +166,7 @@ public final class DbModelSelector {
 
         List<DbModel> result = null;
 
-        Cursor cursor = table.getDb().execQuery(this.toString());
+        Cursor cursor = table.getDb().execQuery(this.toSqlInfo());
         if (cursor != null) {
             try {
                 result = new ArrayList<DbModel>();
@@ -182,24 +183,35 @@ public final class DbModelSelector {
         return result;
     }
 
+    /**
+     * 使用?占位符的查询语句, 见{@link Selector#toSqlInfo()}
+     */
+    public SqlInfo toSqlInfo() {
+        SqlInfo result = new SqlInfo();
+        StringBuilder sql = new StringBuilder();
+        appendSelectFrom(sql);
+        WhereBuilder whereBuilder = selector.getWhereBuilder();
+        if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
+            sql.append(" WHERE ").append(whereBuilder.toSql());
+            result.addBindArgs(whereBuilder.getBindArgs());
+        }
+        if (!TextUtils.isEmpty(groupByColumnName)) {
+            sql.append(" GROUP BY ").append("\"").append(groupByColumnName).append("\"");
+            if (having != null && having.getWhereItemSize() > 0) {
+                sql.append(" HAVING ").append(having.toSql());
+                result.addBindArgs(having.getBindArgs());
+            }
+        }
+        Selector.appendOrderBy(sql, selector.getOrderByList());
+        Selector.appendLimit(sql, result, selector.getLimit(), selector.getOffset());
+        result.setSql(sql.toString());
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
-        result.append("SELECT ");
-        if (columnExpressions != null && columnExpressions.length > 0) {
-            for (String columnExpression : columnExpressions) {
-                result.append(columnExpression);
-                result.append(",");
-            }
-            result.deleteCharAt(result.length() - 1);
-        } else {
-            if (!TextUtils.isEmpty(groupByColumnName)) {
-                result.append(groupByColumnName);
-            } else {
-                result.append("*");
-            }
-        }
-        result.append(" FROM ").append("\"").append(selector.getTable().getName()).append("\"");
+        appendSelectFrom(result);
         WhereBuilder whereBuilder = selector.getWhereBuilder();
         if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
             result.append(" WHERE ").append(whereBuilder.toString());
@@ -210,18 +222,29 @@ public final class DbModelSelector {
                 result.append(" HAVING ").append(having.toString());
             }
         }
-        List<Selector.OrderBy> orderByList = selector.getOrderByList();
-        if (orderByList != null && orderByList.size() > 0) {
-            result.append(" ORDER BY ");
-            for (Selector.OrderBy orderBy : orderByList) {
-                result.append(orderBy.toString()).append(',');
-            }
-            result.deleteCharAt(result.length() - 1);
-        }
+        Selector.appendOrderBy(result, selector.getOrderByList());
         if (selector.getLimit() > 0) {
             result.append(" LIMIT ").append(selector.getLimit());
             result.append(" OFFSET ").append(selector.getOffset());
         }
         return result.toString();
     }
+
+    private void appendSelectFrom(StringBuilder sql) {
+        sql.append("SELECT ");
+        if (columnExpressions != null && columnExpressions.length > 0) {
+            for (String columnExpression : columnExpressions) {
+                sql.append(columnExpression);
+                sql.append(",");
+            }
+            sql.deleteCharAt(sql.length() - 1);
+        } else {
+            if (!TextUtils.isEmpty(groupByColumnName)) {
+                sql.append(groupByColumnName);
+            } else {
+                sql.append("*");
+            }
+        }
+        sql.append(" FROM ").append("\"").append(selector.getTable().getName()).append("\"");
+    }
 }
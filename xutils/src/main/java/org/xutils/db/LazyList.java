@@ -0,0 +1,78 @@
+package org.xutils.db;
+
+import android.database.Cursor;
+
+import org.xutils.cache.LruCache;
+import org.xutils.common.util.IOUtil;
+import org.xutils.db.table.TableEntity;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * 由Cursor支持的只读列表, 访问时才把对应的行转换为实体,
+ * 最近访问的windowSize个实体缓存在LRU窗口中.
+ * 第一项可以在查询返回后立即显示, 不需要先转换所有的行.
+ * <p>
+ * 持有打开的Cursor, 使用完需要调用{@link #close()}.
+ * 修改表的数据后列表内容不会更新.
+ */
+public final class LazyList<T> extends AbstractList<T> implements RandomAccess, Closeable {
+
+    /*package*/ static final int DEFAULT_WINDOW_SIZE = 100;
+
+    private final Cursor cursor;
+    private final CursorUtils.EntityReader<T> reader;
+    private final LruCache<Integer, T> window;
+    private final int size;
+
+    /*package*/ LazyList(TableEntity<T> table, Cursor cursor, int windowSize) {
+        this.cursor = cursor;
+        this.reader = new CursorUtils.EntityReader<T>(table, cursor);
+        this.window = new LruCache<Integer, T>(windowSize > 0 ? windowSize : DEFAULT_WINDOW_SIZE);
+        this.size = cursor.getCount();
+    }
+
+    @Override
+    public T get(int location) {
+        if (location < 0 || location >= size) {
+            throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + size);
+        }
+        T entity = window.get(location);
+        if (entity == null) {
+            synchronized (cursor) {
+                if (cursor.isClosed()) {
+                    throw new IllegalStateException("LazyList is closed");
+                }
+                if (!cursor.moveToPosition(location)) {
+                    throw new IllegalStateException("can not move to " + location);
+                }
+                try {
+                    entity = reader.read(cursor);
+                } catch (Throwable ex) {
+                    throw new IllegalStateException(ex.getMessage(), ex);
+                }
+            }
+            window.put(location, entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isClosed() {
+        return cursor.isClosed();
+    }
+
+    @Override
+    public void close() {
+        synchronized (cursor) {
+            IOUtil.closeQuietly(cursor);
+        }
+        window.evictAll();
+    }
+}
@@ -18,6 +18,8 @@ package org.xutils.db;
 import android.database.Cursor;
 
 import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.KeyValue;
+import org.xutils.db.sqlite.SqlInfo;
 import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.DbModel;
 import org.xutils.db.table.TableEntity;
@@ -151,7 +153,7 @@ public final class Selector<T> {
         if (!table.tableIsExists()) return null;
 
         this.limit(1);
-        Cursor cursor = table.getDb().execQuery(this.toString());
+        Cursor cursor = table.getDb().execQuery(this.toSqlInfo());
         if (cursor != null) {
             try {
                 if (cursor.moveToNext()) {
@@ -170,12 +172,13 @@ public final class Selector<T> {
         if (!table.tableIsExists()) return null;
 
         List<T> result = null;
-        Cursor cursor = table.getDb().execQuery(this.toString());
+        Cursor cursor = table.getDb().execQuery(this.toSqlInfo());
         if (cursor != null) {
             try {
                 result = new ArrayList<T>();
+                CursorUtils.EntityReader<T> reader = new CursorUtils.EntityReader<T>(table, cursor);
                 while (cursor.moveToNext()) {
-                    T entity = CursorUtils.getEntity(table, cursor);
+                    T entity = reader.read(cursor);
                     result.add(entity);
                 }
             } catch (Throwable e) {
@@ -187,6 +190,53 @@ public final class Selector<T> {
         return result;
     }
 
+    /**
+     * 返回由Cursor支持的列表, 访问时才转换实体, 使用完需要调用close().
+     */
+    public LazyList<T> findLazy() throws DbException {
+        return findLazy(LazyList.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize 缓存最近访问的实体个数
+     */
+    public LazyList<T> findLazy(int windowSize) throws DbException {
+        if (!table.tableIsExists()) return null;
+
+        Cursor cursor = table.getDb().execQuery(this.toSqlInfo());
+        if (cursor != null) {
+            try {
+                return new LazyList<T>(table, cursor, windowSize);
+            } catch (Throwable e) {
+                IOUtil.closeQuietly(cursor);
+                throw new DbException(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * keyset分页: 按columnName排序, 返回值在lastValue之后的pageSize条记录,
+     * 使用"WHERE column > lastValue"定位, 不像offset那样需要扫描前面所有的行.
+     * <p>
+     * columnName的值需要唯一且有索引(如id); 下一页传入本页最后一条记录的值, lastValue为null时返回第一页.
+     * 保留已有的where条件, 忽略已有的orderBy, limit和offset, 不修改当前Selector.
+     */
+    public List<T> findPageAfter(String columnName, Object lastValue, int pageSize, boolean desc) throws DbException {
+        WhereBuilder where = WhereBuilder.b();
+        if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
+            where.and(whereBuilder);
+        }
+        if (lastValue != null) {
+            where.and(columnName, desc ? "<" : ">", lastValue);
+        }
+        return Selector.from(table)
+                .where(where)
+                .orderBy(columnName, desc)
+                .limit(pageSize)
+                .findAll();
+    }
+
     public long count() throws DbException {
         if (!table.tableIsExists()) return 0;
 
@@ -198,6 +248,26 @@ public final class Selector<T> {
         return 0;
     }
 
+    /**
+     * 使用?占位符的查询语句, 条件的值和limit, offset作为参数绑定.
+     * 查询结构相同时sql相同, 可以命中SQLite已编译语句的缓存.
+     */
+    public SqlInfo toSqlInfo() {
+        SqlInfo result = new SqlInfo();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT ");
+        sql.append("*");
+        sql.append(" FROM ").append("\"").append(table.getName()).append("\"");
+        if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
+            sql.append(" WHERE ").append(whereBuilder.toSql());
+            result.addBindArgs(whereBuilder.getBindArgs());
+        }
+        appendOrderBy(sql, orderByList);
+        appendLimit(sql, result, limit, offset);
+        result.setSql(sql.toString());
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -207,18 +277,32 @@ public final class Selector<T> {
         if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
             result.append(" WHERE ").append(whereBuilder.toString());
         }
+        appendOrderBy(result, orderByList);
+        if (limit > 0) {
+            result.append(" LIMIT ").append(limit);
+            result.append(" OFFSET ").append(offset);
+        }
+        return result.toString();
+    }
+
+    /*package*/
+    static void appendOrderBy(StringBuilder sql, List<OrderBy> orderByList) {
         if (orderByList != null && orderByList.size() > 0) {
-            result.append(" ORDER BY ");
+            sql.append(" ORDER BY ");
             for (OrderBy orderBy : orderByList) {
-                result.append(orderBy.toString()).append(',');
+                sql.append(orderBy.toString()).append(',');
             }
-            result.deleteCharAt(result.length() - 1);
+            sql.deleteCharAt(sql.length() - 1);
         }
+    }
+
+    /*package*/
+    static void appendLimit(StringBuilder sql, SqlInfo sqlInfo, int limit, int offset) {
         if (limit > 0) {
-            result.append(" LIMIT ").append(limit);
-            result.append(" OFFSET ").append(offset);
+            sql.append(" LIMIT ? OFFSET ?");
+            sqlInfo.addBindArg(new KeyValue("limit", limit));
+            sqlInfo.addBindArg(new KeyValue("offset", offset));
         }
-        return result.toString();
     }
 
     public static class OrderBy {
@@ -16,6 +16,7 @@
 package org.xutils.db.sqlite;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
 import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.common.util.KeyValue;
@@ -61,14 +62,22 @@ public final class SqlInfo {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public SQLiteStatement buildStatement(SQLiteDatabase database) {
         SQLiteStatement result = database.compileStatement(sql);
+        bindArgs(result);
+        return result;
+    }
+
+    /**
+     * 按参数值的类型绑定到program(SQLiteStatement或查询用的SQLiteQuery).
+     */
+    @SuppressWarnings("unchecked")
+    public void bindArgs(SQLiteProgram program) {
         if (bindArgs != null) {
             for (int i = 1; i < bindArgs.size() + 1; i++) {
                 KeyValue kv = bindArgs.get(i - 1);
                 if (kv.value == null) {
-                    result.bindNull(i);
+                    program.bindNull(i);
                     continue;
                 }
                 ColumnConverter converter = ColumnConverterFactory.getColumnConverter(kv.value.getClass());
@@ -76,24 +85,23 @@ public final class SqlInfo {
                 ColumnDbType type = converter.getColumnDbType();
                 switch (type) {
                     case INTEGER:
-                        result.bindLong(i, ((Number) value).longValue());
+                        program.bindLong(i, ((Number) value).longValue());
                         break;
                     case REAL:
-                        result.bindDouble(i, ((Number) value).doubleValue());
+                        program.bindDouble(i, ((Number) value).doubleValue());
                         break;
                     case TEXT:
-                        result.bindString(i, value.toString());
+                        program.bindString(i, value.toString());
                         break;
                     case BLOB:
-                        result.bindBlob(i, (byte[]) value);
+                        program.bindBlob(i, (byte[]) value);
                         break;
                     default:
-                        result.bindNull(i);
+                        program.bindNull(i);
                         break;
                 } // end switch
             }
         }
-        return result;
     }
 
     public Object[] getBindArgs() {
@@ -45,36 +45,21 @@ public final class SqlInfoBuilder {
         List<KeyValue> keyValueList = entity2KeyValueList(table, entity);
         if (keyValueList.size() == 0) return null;
 
-        SqlInfo result = new SqlInfo();
+        SqlInfo result = new SqlInfo(buildInsertSql(table));
+        result.addBindArgs(keyValueList);
+        return result;
+    }
+
+    /**
+     * 插入所有非自增列的sql, 参数顺序与table.getColumnMap()一致.
+     */
+    public static String buildInsertSql(TableEntity<?> table) throws DbException {
         String sql = INSERT_SQL_CACHE.get(table);
         if (sql == null) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("INSERT INTO ");
-            builder.append("\"").append(table.getName()).append("\"");
-            builder.append(" (");
-            for (KeyValue kv : keyValueList) {
-                builder.append("\"").append(kv.key).append("\"").append(',');
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(") VALUES (");
-
-            int length = keyValueList.size();
-            for (int i = 0; i < length; i++) {
-                builder.append("?,");
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(")");
-
-            sql = builder.toString();
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
+            sql = buildInsertSql("INSERT INTO ", table);
             INSERT_SQL_CACHE.put(table, sql);
-        } else {
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
         }
-
-        return result;
+        return sql;
     }
 
     //*********************************************** replace sql ***********************************************
@@ -84,36 +69,45 @@ public final class SqlInfoBuilder {
         List<KeyValue> keyValueList = entity2KeyValueList(table, entity);
         if (keyValueList.size() == 0) return null;
 
-        SqlInfo result = new SqlInfo();
+        SqlInfo result = new SqlInfo(buildReplaceSql(table));
+        result.addBindArgs(keyValueList);
+        return result;
+    }
+
+    /**
+     * 替换所有非自增列的sql, 参数顺序与table.getColumnMap()一致.
+     */
+    public static String buildReplaceSql(TableEntity<?> table) throws DbException {
         String sql = REPLACE_SQL_CACHE.get(table);
         if (sql == null) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("REPLACE INTO ");
-            builder.append("\"").append(table.getName()).append("\"");
-            builder.append(" (");
-            for (KeyValue kv : keyValueList) {
-                builder.append("\"").append(kv.key).append("\"").append(',');
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(") VALUES (");
-
-            int length = keyValueList.size();
-            for (int i = 0; i < length; i++) {
-                builder.append("?,");
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(")");
-
-            sql = builder.toString();
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
+            sql = buildInsertSql("REPLACE INTO ", table);
             REPLACE_SQL_CACHE.put(table, sql);
-        } else {
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
         }
+        return sql;
+    }
 
-        return result;
+    private static String buildInsertSql(String prefix, TableEntity<?> table) throws DbException {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix);
+        builder.append("\"").append(table.getName()).append("\"");
+        builder.append(" (");
+        int length = 0;
+        for (ColumnEntity column : table.getColumnMap().values()) {
+            if (column.isAutoId()) continue;
+            builder.append("\"").append(column.getName()).append("\"").append(',');
+            length++;
+        }
+        if (length == 0) {
+            throw new DbException("no column to insert in table: " + table.getName());
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(") VALUES (");
+        for (int i = 0; i < length; i++) {
+            builder.append("?,");
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(")");
+        return builder.toString();
     }
 
     //*********************************************** delete sql ***********************************************
@@ -129,9 +123,11 @@ public final class SqlInfoBuilder {
         }
         StringBuilder builder = new StringBuilder("DELETE FROM ");
         builder.append("\"").append(table.getName()).append("\"");
-        builder.append(" WHERE ").append(WhereBuilder.b(id.getName(), "=", idValue));
+        WhereBuilder where = WhereBuilder.b(id.getName(), "=", idValue);
+        builder.append(" WHERE ").append(where.toSql());
 
         result.setSql(builder.toString());
+        result.addBindArgs(where.getBindArgs());
 
         return result;
     }
@@ -146,9 +142,11 @@ public final class SqlInfoBuilder {
         }
         StringBuilder builder = new StringBuilder("DELETE FROM ");
         builder.append("\"").append(table.getName()).append("\"");
-        builder.append(" WHERE ").append(WhereBuilder.b(id.getName(), "=", idValue));
+        WhereBuilder where = WhereBuilder.b(id.getName(), "=", idValue);
+        builder.append(" WHERE ").append(where.toSql());
 
         result.setSql(builder.toString());
+        result.addBindArgs(where.getBindArgs());
 
         return result;
     }
@@ -157,11 +155,14 @@ public final class SqlInfoBuilder {
         StringBuilder builder = new StringBuilder("DELETE FROM ");
         builder.append("\"").append(table.getName()).append("\"");
 
+        SqlInfo result = new SqlInfo();
         if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
-            builder.append(" WHERE ").append(whereBuilder.toString());
+            builder.append(" WHERE ").append(whereBuilder.toSql());
+            result.addBindArgs(whereBuilder.getBindArgs());
         }
 
-        return new SqlInfo(builder.toString());
+        result.setSql(builder.toString());
+        return result;
     }
 
     //*********************************************** update sql ***********************************************
@@ -195,9 +196,11 @@ public final class SqlInfoBuilder {
             }
         }
         builder.deleteCharAt(builder.length() - 1);
-        builder.append(" WHERE ").append(WhereBuilder.b(id.getName(), "=", idValue));
+        WhereBuilder where = WhereBuilder.b(id.getName(), "=", idValue);
+        builder.append(" WHERE ").append(where.toSql());
 
         result.setSql(builder.toString());
+        result.addBindArgs(where.getBindArgs());
         return result;
     }
 
@@ -215,7 +218,8 @@ public final class SqlInfoBuilder {
         }
         builder.deleteCharAt(builder.length() - 1);
         if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
-            builder.append(" WHERE ").append(whereBuilder.toString());
+            builder.append(" WHERE ").append(whereBuilder.toSql());
+            result.addBindArgs(whereBuilder.getBindArgs());
         }
 
         result.setSql(builder.toString());
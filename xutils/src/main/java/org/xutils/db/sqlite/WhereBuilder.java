@@ -15,8 +15,7 @@
 
 package org.xutils.db.sqlite;
 
-import android.text.TextUtils;
-
+import org.xutils.common.util.KeyValue;
 import org.xutils.db.table.ColumnUtils;
 
 import java.lang.reflect.Array;
@@ -28,13 +27,27 @@ import java.util.List;
  * Author: wyouflf
  * Date: 13-7-29
  * Time: 上午9:35
+ * <p>
+ * toString()返回值直接写在sql中的条件语句;
+ * toSql()返回使用?占位符的条件语句, 参数见getBindArgs(),
+ * 条件结构相同时sql相同, 可以复用SQLite已编译的语句.
+ * IN列表中的数值和超过500个的文本值直接写在sql中, 不使用占位符.
  */
 public class WhereBuilder {
 
+    /**
+     * IN列表中最多绑定的参数个数
+     */
+    private static final int MAX_IN_BIND_ARGS = 500;
+
     private final List<String> whereItems;
+    private final List<String> sqlItems;
+    private final List<KeyValue> bindArgs;
 
     private WhereBuilder() {
         this.whereItems = new ArrayList<String>();
+        this.sqlItems = new ArrayList<String>();
+        this.bindArgs = new ArrayList<KeyValue>();
     }
 
     /**
@@ -72,7 +85,7 @@ public class WhereBuilder {
      */
     public WhereBuilder and(WhereBuilder where) {
         String condition = whereItems.size() == 0 ? " " : "AND ";
-        return expr(condition + "(" + where.toString() + ")");
+        return appendWhere(condition, where);
     }
 
     /**
@@ -92,11 +105,12 @@ public class WhereBuilder {
      */
     public WhereBuilder or(WhereBuilder where) {
         String condition = whereItems.size() == 0 ? " " : "OR ";
-        return expr(condition + "(" + where.toString() + ")");
+        return appendWhere(condition, where);
     }
 
     public WhereBuilder expr(String expr) {
         whereItems.add(" " + expr);
+        sqlItems.add(" " + expr);
         return this;
     }
 
@@ -104,18 +118,43 @@ public class WhereBuilder {
         return whereItems.size();
     }
 
+    /**
+     * 使用?占位符的条件语句
+     */
+    public String toSql() {
+        return join(sqlItems);
+    }
+
+    /**
+     * toSql()中占位符对应的参数, key为列名.
+     */
+    public List<KeyValue> getBindArgs() {
+        return new ArrayList<KeyValue>(bindArgs);
+    }
+
     @Override
     public String toString() {
-        if (whereItems.size() == 0) {
+        return join(whereItems);
+    }
+
+    private static String join(List<String> items) {
+        if (items.size() == 0) {
             return "";
         }
         StringBuilder sb = new StringBuilder();
-        for (String item : whereItems) {
+        for (String item : items) {
             sb.append(item);
         }
         return sb.toString();
     }
 
+    private WhereBuilder appendWhere(String condition, WhereBuilder where) {
+        whereItems.add(" " + condition + "(" + where.toString() + ")");
+        sqlItems.add(" " + condition + "(" + where.toSql() + ")");
+        bindArgs.addAll(where.bindArgs);
+        return this;
+    }
+
     private void appendCondition(String conj, String columnName, String op, Object value) {
         StringBuilder builder = new StringBuilder();
 
@@ -124,7 +163,7 @@ public class WhereBuilder {
         }
 
         // append conj
-        if (!TextUtils.isEmpty(conj)) {
+        if (conj != null) {
             builder.append(conj).append(" ");
         }
 
@@ -147,89 +186,115 @@ public class WhereBuilder {
             } else {
                 builder.append(" ").append(op).append(" NULL");
             }
-        } else {
-            builder.append(" ").append(op).append(" ");
-
-            if ("IN".equalsIgnoreCase(op)) {
-                Iterable<?> items = null;
-                if (value instanceof Iterable) {
-                    items = (Iterable<?>) value;
-                } else if (value.getClass().isArray()) {
-                    int len = Array.getLength(value);
-                    List<Object> arrayList = new ArrayList<Object>(len);
-                    for (int i = 0; i < len; i++) {
-                        arrayList.add(Array.get(value, i));
-                    }
-                    items = arrayList;
-                }
-                if (items != null) {
-                    StringBuilder inSb = new StringBuilder("(");
-                    for (Object item : items) {
-                        Object itemColValue = ColumnUtils.convert2DbValueIfNeeded(item);
-                        if (ColumnUtils.isTextColumnDbType(itemColValue)) {
-                            String valueStr = ColumnUtils.convert2SafeExpr(itemColValue);
-                            inSb.append("'").append(valueStr).append("'");
-                        } else {
-                            inSb.append(itemColValue);
-                        }
-                        inSb.append(",");
-                    }
-                    if (inSb.length() > 1) {
-                        inSb.deleteCharAt(inSb.length() - 1);
-                    }
-                    inSb.append(")");
-                    builder.append(inSb.toString());
-                } else {
-                    throw new IllegalArgumentException("value must be an Array or an Iterable.");
-                }
-            } else if ("BETWEEN".equalsIgnoreCase(op)) {
-                Iterable<?> items = null;
-                if (value instanceof Iterable) {
-                    items = (Iterable<?>) value;
-                } else if (value.getClass().isArray()) {
-                    int len = Array.getLength(value);
-                    List<Object> arrayList = new ArrayList<Object>(len);
-                    for (int i = 0; i < len; i++) {
-                        arrayList.add(Array.get(value, i));
-                    }
-                    items = arrayList;
-                }
-                if (items != null) {
-                    Iterator<?> iterator = items.iterator();
-                    if (!iterator.hasNext())
-                        throw new IllegalArgumentException("value must contains tow items.");
-                    Object start = iterator.next();
-                    if (!iterator.hasNext())
-                        throw new IllegalArgumentException("value must contains tow items.");
-                    Object end = iterator.next();
-
-                    Object startColValue = ColumnUtils.convert2DbValueIfNeeded(start);
-                    Object endColValue = ColumnUtils.convert2DbValueIfNeeded(end);
-
-                    if (ColumnUtils.isTextColumnDbType(startColValue)) {
-                        String startStr = ColumnUtils.convert2SafeExpr(startColValue);
-                        String endStr = ColumnUtils.convert2SafeExpr(endColValue);
-                        builder.append("'").append(startStr).append("'");
-                        builder.append(" AND ");
-                        builder.append("'").append(endStr).append("'");
-                    } else {
-                        builder.append(startColValue);
-                        builder.append(" AND ");
-                        builder.append(endColValue);
+            whereItems.add(builder.toString());
+            sqlItems.add(builder.toString());
+            return;
+        }
+
+        builder.append(" ").append(op).append(" ");
+        StringBuilder sqlBuilder = new StringBuilder(builder);
+
+        if ("IN".equalsIgnoreCase(op)) {
+            Iterable<?> items = toIterable(value);
+            if (items != null) {
+                builder.append("(");
+                sqlBuilder.append("(");
+                boolean bindText = countTextItems(items) <= MAX_IN_BIND_ARGS;
+                boolean first = true;
+                for (Object item : items) {
+                    if (!first) {
+                        builder.append(",");
+                        sqlBuilder.append(",");
                     }
-                } else {
-                    throw new IllegalArgumentException("value must be an Array or an Iterable.");
+                    first = false;
+                    appendInValue(builder, sqlBuilder, columnName, item, bindText);
                 }
+                builder.append(")");
+                sqlBuilder.append(")");
             } else {
-                value = ColumnUtils.convert2DbValueIfNeeded(value);
-                if (ColumnUtils.isTextColumnDbType(value)) {
-                    String valueStr = ColumnUtils.convert2SafeExpr(value);
-                    builder.append("'").append(valueStr).append("'");
-                } else {
-                    builder.append(value);
-                }
+                throw new IllegalArgumentException("value must be an Array or an Iterable.");
             }
+        } else if ("BETWEEN".equalsIgnoreCase(op)) {
+            Iterable<?> items = toIterable(value);
+            if (items != null) {
+                Iterator<?> iterator = items.iterator();
+                if (!iterator.hasNext())
+                    throw new IllegalArgumentException("value must contains tow items.");
+                Object start = iterator.next();
+                if (!iterator.hasNext())
+                    throw new IllegalArgumentException("value must contains tow items.");
+                Object end = iterator.next();
+
+                appendValue(builder, sqlBuilder, columnName, start);
+                builder.append(" AND ");
+                sqlBuilder.append(" AND ");
+                appendValue(builder, sqlBuilder, columnName, end);
+            } else {
+                throw new IllegalArgumentException("value must be an Array or an Iterable.");
+            }
+        } else {
+            appendValue(builder, sqlBuilder, columnName, value);
         }
         whereItems.add(builder.toString());
+        sqlItems.add(sqlBuilder.toString());
+    }
+
+    private void appendValue(StringBuilder builder, StringBuilder sqlBuilder, String columnName, Object value) {
+        Object colValue = ColumnUtils.convert2DbValueIfNeeded(value);
+        if (ColumnUtils.isTextColumnDbType(colValue)) {
+            String valueStr = ColumnUtils.convert2SafeExpr(colValue);
+            builder.append("'").append(valueStr).append("'");
+        } else {
+            builder.append(colValue);
+        }
+        if (colValue == null) {
+            sqlBuilder.append("NULL");
+        } else {
+            sqlBuilder.append("?");
+            bindArgs.add(new KeyValue(columnName, colValue));
+        }
+    }
+
+    /**
+     * IN列表中的数值直接写入sql, 只绑定文本等其他类型的值;
+     * 文本值超过MAX_IN_BIND_ARGS个时也全部写入sql, 避免超出SQLite的参数个数限制(旧版本为999).
+     */
+    private void appendInValue(StringBuilder builder, StringBuilder sqlBuilder,
+                               String columnName, Object value, boolean bindText) {
+        Object colValue = ColumnUtils.convert2DbValueIfNeeded(value);
+        if (colValue instanceof Number) {
+            builder.append(colValue);
+            sqlBuilder.append(colValue);
+        } else if (!bindText && ColumnUtils.isTextColumnDbType(colValue)) {
+            String valueStr = ColumnUtils.convert2SafeExpr(colValue);
+            builder.append("'").append(valueStr).append("'");
+            sqlBuilder.append("'").append(valueStr).append("'");
+        } else {
+            appendValue(builder, sqlBuilder, columnName, value);
+        }
+    }
+
+    private static int countTextItems(Iterable<?> items) {
+        int count = 0;
+        for (Object item : items) {
+            if (!(ColumnUtils.convert2DbValueIfNeeded(item) instanceof Number)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Iterable<?> toIterable(Object value) {
+        if (value instanceof Iterable) {
+            return (Iterable<?>) value;
+        } else if (value.getClass().isArray()) {
+            int len = Array.getLength(value);
+            List<Object> arrayList = new ArrayList<Object>(len);
+            for (int i = 0; i < len; i++) {
+                arrayList.add(Array.get(value, i));
+            }
+            return arrayList;
+        }
+        return null;
     }
 }
@@ -16,6 +16,7 @@
 package org.xutils.db.table;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.common.util.LogUtil;
 import org.xutils.db.annotation.Column;
@@ -131,6 +132,37 @@ public final class ColumnEntity {
         return fieldValue;
     }
 
+    /**
+     * 把entity中该列的值直接绑定到statement的index位置(从1开始),
+     * 批量写入时不再为每一行构造KeyValue列表和SqlInfo.
+     */
+    @SuppressWarnings("unchecked")
+    public void bindColumnValue(SQLiteStatement statement, int index, Object entity) {
+        Object fieldValue = getFieldValue(entity);
+        Object value = fieldValue == null ? null : columnConverter.fieldValue2DbValue(fieldValue);
+        if (value == null) {
+            statement.bindNull(index);
+            return;
+        }
+        switch (columnConverter.getColumnDbType()) {
+            case INTEGER:
+                statement.bindLong(index, ((Number) value).longValue());
+                break;
+            case REAL:
+                statement.bindDouble(index, ((Number) value).doubleValue());
+                break;
+            case TEXT:
+                statement.bindString(index, value.toString());
+                break;
+            case BLOB:
+                statement.bindBlob(index, (byte[]) value);
+                break;
+            default:
+                statement.bindNull(index);
+                break;
+        }
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,33 @@
+package org.xutils.db.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 实体和数据库列之间不使用反射的读写实现, 可以手写或由注解处理器生成,
+ * 在第一次使用实体之前通过{@link EntityAdapterFactory#registerEntityAdapter}注册.
+ * 没有注册的实体使用反射读写.
+ * <p>
+ * 参数column是列在{@link #getColumnNames()}中的位置;
+ * 没有包含的列仍然使用反射读写.
+ */
+public interface EntityAdapter<T> {
+
+    /**
+     * 支持的列名(@Column的name)
+     */
+    String[] getColumnNames();
+
+    T newInstance();
+
+    /**
+     * 读取cursor中index位置的值, 设置到entity第column列对应的属性.
+     * 值为null时应保持属性的默认值.
+     */
+    void readColumn(T entity, Cursor cursor, int index, int column);
+
+    /**
+     * 把entity第column列的值绑定到statement的index位置(从1开始).
+     */
+    void bindColumn(SQLiteStatement statement, int index, int column, T entity);
+}
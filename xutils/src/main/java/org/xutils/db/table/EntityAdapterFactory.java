@@ -0,0 +1,27 @@
+package org.xutils.db.table;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EntityAdapter注册表, key: 实体类型
+ */
+public final class EntityAdapterFactory {
+
+    private static final ConcurrentHashMap<Class<?>, EntityAdapter<?>> ADAPTER_MAP =
+            new ConcurrentHashMap<Class<?>, EntityAdapter<?>>();
+
+    private EntityAdapterFactory() {
+    }
+
+    /**
+     * 需要在实体第一次使用之前注册, 已经创建的TableEntity不会更新.
+     */
+    public static <T> void registerEntityAdapter(Class<T> entityType, EntityAdapter<T> adapter) {
+        ADAPTER_MAP.put(entityType, adapter);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityAdapter<T> getEntityAdapter(Class<T> entityType) {
+        return (EntityAdapter<T>) ADAPTER_MAP.get(entityType);
+    }
+}
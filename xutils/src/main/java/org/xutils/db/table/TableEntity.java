@@ -16,6 +16,7 @@
 package org.xutils.db.table;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 
 import org.xutils.DbManager;
@@ -27,6 +28,8 @@ import org.xutils.db.sqlite.SqlInfoBuilder;
 import org.xutils.ex.DbException;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 
 
@@ -45,6 +48,17 @@ public final class TableEntity<T> {
      */
     private final LinkedHashMap<String, ColumnEntity> columnMap;
 
+    private final EntityAdapter<T> adapter;
+    /**
+     * key: columnName, value: 列在adapter.getColumnNames()中的位置
+     */
+    private final HashMap<String, Integer> adapterColumnMap;
+    /**
+     * insert/replace语句的参数列, 顺序与SqlInfoBuilder.buildInsertSql一致
+     */
+    private final ColumnEntity[] insertColumns;
+    private final int[] insertAdapterColumns;
+
     /*package*/ TableEntity(DbManager db, Class<T> entityType) throws Throwable {
         this.db = db;
         this.entityType = entityType;
@@ -70,10 +84,62 @@ public final class TableEntity<T> {
                 break;
             }
         }
+
+        this.adapter = EntityAdapterFactory.getEntityAdapter(entityType);
+        if (adapter != null) {
+            String[] names = adapter.getColumnNames();
+            this.adapterColumnMap = new HashMap<String, Integer>(names.length);
+            for (int i = 0; i < names.length; i++) {
+                adapterColumnMap.put(names[i], i);
+            }
+        } else {
+            this.adapterColumnMap = null;
+        }
+
+        ArrayList<ColumnEntity> columns = new ArrayList<ColumnEntity>(columnMap.size());
+        for (ColumnEntity column : columnMap.values()) {
+            if (!column.isAutoId()) {
+                columns.add(column);
+            }
+        }
+        this.insertColumns = columns.toArray(new ColumnEntity[columns.size()]);
+        this.insertAdapterColumns = new int[insertColumns.length];
+        for (int i = 0; i < insertColumns.length; i++) {
+            insertAdapterColumns[i] = getAdapterColumn(insertColumns[i].getName());
+        }
     }
 
     public T createEntity() throws Throwable {
-        return this.constructor.newInstance();
+        return adapter != null ? adapter.newInstance() : this.constructor.newInstance();
+    }
+
+    /**
+     * 按顺序绑定insert/replace语句的参数(见SqlInfoBuilder.buildInsertSql),
+     * 注册了EntityAdapter的列不使用反射.
+     */
+    @SuppressWarnings("unchecked")
+    public void bindInsertArgs(SQLiteStatement statement, Object entity) {
+        for (int i = 0; i < insertColumns.length; i++) {
+            int adapterColumn = insertAdapterColumns[i];
+            if (adapterColumn >= 0) {
+                adapter.bindColumn(statement, i + 1, adapterColumn, (T) entity);
+            } else {
+                insertColumns[i].bindColumnValue(statement, i + 1, entity);
+            }
+        }
+    }
+
+    public EntityAdapter<T> getEntityAdapter() {
+        return adapter;
+    }
+
+    /**
+     * @return 列在EntityAdapter.getColumnNames()中的位置, 没有时返回-1
+     */
+    public int getAdapterColumn(String columnName) {
+        if (adapterColumnMap == null) return -1;
+        Integer index = adapterColumnMap.get(columnName);
+        return index == null ? -1 : index;
     }
 
     public boolean tableIsExists() throws DbException {
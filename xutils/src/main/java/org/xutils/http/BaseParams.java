@@ -45,6 +45,23 @@ public abstract class BaseParams {
     private final List<KeyValue> queryStringParams = new ArrayList<KeyValue>();
     private final List<KeyValue> bodyParams = new ArrayList<KeyValue>();
 
+    /**
+     * 复制source的参数, 见RequestParams.copy()
+     */
+    /*package*/ void copyBaseParams(BaseParams source) {
+        this.charset = source.charset;
+        this.method = source.method;
+        this.bodyContent = source.bodyContent;
+        this.bodyContentType = source.bodyContentType;
+        this.multipart = source.multipart;
+        this.asJsonContent = source.asJsonContent;
+        this.asJsonArrayContent = source.asJsonArrayContent;
+        this.requestBody = source.requestBody;
+        this.headers.addAll(source.headers);
+        this.queryStringParams.addAll(source.queryStringParams);
+        this.bodyParams.addAll(source.bodyParams);
+    }
+
     public void setCharset(String charset) {
         if (!TextUtils.isEmpty(charset)) {
             this.charset = charset;
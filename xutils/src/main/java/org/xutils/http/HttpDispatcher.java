@@ -0,0 +1,463 @@
+package org.xutils.http;
+
+import org.xutils.common.Callback;
+import org.xutils.common.task.Priority;
+import org.xutils.common.util.LogUtil;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 按host限制并发的http请求调度.
+ * <p>
+ * 请求按类型分为API, IMAGE, DOWNLOAD三个通道, 每个通道分别限制总并发数和单个host的并发数,
+ * 一个响应缓慢的host只会占满它自己的额度, 不会阻塞其他host和其他通道的请求.
+ * 等待的请求按优先级排队, 许可释放时直接唤醒下一个可执行的请求.
+ * <p>
+ * 请求可以在工作线程中阻塞等待许可({@link #acquire}), 也可以在提交到线程池之前排队({@link #execute}),
+ * 后者在等待期间不占用线程池的线程.
+ * <p>
+ * 单个host的并发数需要小于执行请求的线程池大小, 否则一个响应缓慢的host仍然可以占满所有线程.
+ */
+public final class HttpDispatcher {
+
+    /**
+     * 请求通道
+     */
+    public enum Lane {
+        API(5, 4), // HttpTask默认线程池: 5
+        IMAGE(10, 6), // ImageLoader线程池: 10
+        DOWNLOAD(RequestParams.MAX_FILE_LOAD_WORKER, 4);
+
+        private final int defaultMaxRequests;
+        private final int defaultMaxRequestsPerHost;
+
+        Lane(int defaultMaxRequests, int defaultMaxRequestsPerHost) {
+            this.defaultMaxRequests = defaultMaxRequests;
+            this.defaultMaxRequestsPerHost = defaultMaxRequestsPerHost;
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final EnumMap<Lane, LaneState> LANE_MAP = new EnumMap<Lane, LaneState>(Lane.class);
+
+    static {
+        for (Lane lane : Lane.values()) {
+            LANE_MAP.put(lane, new LaneState(lane.defaultMaxRequests, lane.defaultMaxRequestsPerHost));
+        }
+    }
+
+    private HttpDispatcher() {
+    }
+
+    /**
+     * 设置通道的最大并发请求数
+     */
+    public static void setMaxRequests(Lane lane, int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests < 1");
+        }
+        List<Waiter> granted;
+        synchronized (lock) {
+            LANE_MAP.get(lane).maxRequests = maxRequests;
+            granted = promoteWaiters(lane);
+        }
+        wakeAll(granted);
+    }
+
+    public static int getMaxRequests(Lane lane) {
+        synchronized (lock) {
+            return LANE_MAP.get(lane).maxRequests;
+        }
+    }
+
+    /**
+     * 设置通道中单个host的最大并发请求数
+     */
+    public static void setMaxRequestsPerHost(Lane lane, int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxRequestsPerHost < 1");
+        }
+        List<Waiter> granted;
+        synchronized (lock) {
+            LaneState state = LANE_MAP.get(lane);
+            state.maxRequestsPerHost = maxRequestsPerHost;
+            state.checkedPoolSize = 0; // 重新检查线程池大小
+            granted = promoteWaiters(lane);
+        }
+        wakeAll(granted);
+    }
+
+    public static int getMaxRequestsPerHost(Lane lane) {
+        synchronized (lock) {
+            return LANE_MAP.get(lane).maxRequestsPerHost;
+        }
+    }
+
+    /**
+     * 检查通道的单host并发数是否小于线程池大小, 否则打印警告(每个线程池大小只提示一次).
+     */
+    /*package*/
+    static void checkPoolSize(Lane lane, int poolSize) {
+        int maxRequestsPerHost;
+        synchronized (lock) {
+            LaneState state = LANE_MAP.get(lane);
+            if (state.checkedPoolSize == poolSize) return;
+            state.checkedPoolSize = poolSize;
+            maxRequestsPerHost = state.maxRequestsPerHost;
+        }
+        if (maxRequestsPerHost >= poolSize) {
+            LogUtil.w("HttpDispatcher: maxRequestsPerHost(" + maxRequestsPerHost + ") of " + lane
+                    + " should be less than the executor pool size(" + poolSize + ")");
+        }
+    }
+
+    /**
+     * 所有通道中等待该host的请求数
+     */
+    public static int getQueueDepth(String host) {
+        host = normalizeHost(host);
+        int result = 0;
+        synchronized (lock) {
+            for (LaneState state : LANE_MAP.values()) {
+                for (Waiter waiter : state.waiters) {
+                    if (waiter.host.equals(host)) {
+                        result++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 各host正在等待的请求数, key: host
+     */
+    public static Map<String, Integer> getQueueDepthSnapshot() {
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+        synchronized (lock) {
+            for (LaneState state : LANE_MAP.values()) {
+                for (Waiter waiter : state.waiters) {
+                    Integer count = result.get(waiter.host);
+                    result.put(waiter.host, count == null ? 1 : count + 1);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通道中正在执行的请求数
+     */
+    public static int getRunningCount(Lane lane) {
+        synchronized (lock) {
+            return LANE_MAP.get(lane).running;
+        }
+    }
+
+    /**
+     * 通道中正在执行的该host的请求数
+     */
+    public static int getRunningCount(Lane lane, String host) {
+        synchronized (lock) {
+            return LANE_MAP.get(lane).getHostRunning(normalizeHost(host));
+        }
+    }
+
+    /**
+     * 获取执行请求的许可, 没有空闲额度时阻塞等待.
+     *
+     * @throws Callback.CancelledException 等待期间被取消或中断
+     */
+    /*package*/
+    static Permit acquire(Lane lane, String host, Priority priority, Callback.Cancelable cancelable) {
+        if (cancelable != null && cancelable.isCancelled()) {
+            throw new Callback.CancelledException("cancelled before request");
+        }
+
+        host = normalizeHost(host);
+        Waiter waiter;
+        List<Waiter> granted;
+        synchronized (lock) {
+            LaneState state = LANE_MAP.get(lane);
+            if (state.waiters.isEmpty() && state.hasCapacity(host)) {
+                state.onStart(host);
+                return new Permit(lane, host);
+            }
+            waiter = new Waiter(lane, host, priority == null ? Priority.DEFAULT : priority, cancelable);
+            state.enqueue(waiter);
+            granted = promoteWaiters(lane); // 排在它前面的请求可能被其他host阻塞
+        }
+        wakeAll(granted);
+
+        boolean interrupted = false;
+        synchronized (waiter) {
+            while (!waiter.granted && !waiter.removed) {
+                try {
+                    waiter.wait();
+                } catch (InterruptedException iex) {
+                    interrupted = true;
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            // 是否已分配许可由出队时的dropped确定(持有lock), 不依赖锁外的wake.
+            boolean permitted;
+            synchronized (lock) {
+                permitted = !LANE_MAP.get(lane).waiters.remove(waiter) && !waiter.dropped;
+            }
+            if (permitted) {
+                release(new Permit(lane, host));
+            }
+            throw new Callback.CancelledException("cancelled before request(interrupted)");
+        }
+
+        if (!waiter.isGranted()) {
+            throw new Callback.CancelledException("cancelled before request");
+        }
+        return new Permit(lane, host);
+    }
+
+    /**
+     * 获得许可后再将runnable提交到executor, 排队期间不占用executor的线程.
+     * 排队中被取消时runnable仍会被提交(不持有许可), 由它自己处理取消的回调.
+     *
+     * @param listener 获得许可时回调, 在runnable被提交之前执行, 许可需要由调用者释放.
+     */
+    /*package*/
+    static void execute(Lane lane, String host, Priority priority, Callback.Cancelable cancelable,
+                        Executor executor, Runnable runnable, PermitListener listener) {
+        host = normalizeHost(host);
+        Waiter waiter = new AsyncWaiter(lane, host, priority == null ? Priority.DEFAULT : priority,
+                cancelable, executor, runnable, listener);
+        List<Waiter> granted;
+        synchronized (lock) {
+            LANE_MAP.get(lane).enqueue(waiter);
+            granted = promoteWaiters(lane);
+        }
+        wakeAll(granted);
+    }
+
+    /**
+     * 请求结束后释放许可, 多次调用只释放一次.
+     */
+    /*package*/
+    static void release(Permit permit) {
+        if (permit == null) return;
+        List<Waiter> granted;
+        synchronized (lock) {
+            if (permit.released) return;
+            permit.released = true;
+            LANE_MAP.get(permit.lane).onFinish(permit.host);
+            granted = promoteWaiters(permit.lane);
+        }
+        wakeAll(granted);
+    }
+
+    /**
+     * 取消正在等待的请求
+     */
+    /*package*/
+    static void cancel(Callback.Cancelable cancelable) {
+        if (cancelable == null) return;
+        List<Waiter> removed = null;
+        synchronized (lock) {
+            for (LaneState state : LANE_MAP.values()) {
+                Iterator<Waiter> itr = state.waiters.iterator();
+                while (itr.hasNext()) {
+                    Waiter waiter = itr.next();
+                    if (waiter.cancelable == cancelable) {
+                        itr.remove();
+                        waiter.dropped = true;
+                        if (removed == null) {
+                            removed = new ArrayList<Waiter>(1);
+                        }
+                        removed.add(waiter);
+                    }
+                }
+            }
+        }
+        wakeAll(removed);
+    }
+
+    /**
+     * 按优先级依次为有空闲额度的请求分配许可, 被取消的请求出队.
+     * 调用者持有lock, 返回的等待者(获得许可的和被取消的)需要在锁外唤醒.
+     */
+    private static List<Waiter> promoteWaiters(Lane lane) {
+        List<Waiter> result = null;
+        LaneState state = LANE_MAP.get(lane);
+        Iterator<Waiter> itr = state.waiters.iterator();
+        while (itr.hasNext() && state.running < state.maxRequests) {
+            Waiter waiter = itr.next();
+            boolean cancelled = waiter.cancelable != null && waiter.cancelable.isCancelled();
+            if (cancelled || state.hasCapacity(waiter.host)) {
+                itr.remove();
+                if (cancelled) {
+                    waiter.dropped = true;
+                } else {
+                    state.onStart(waiter.host);
+                }
+                if (result == null) {
+                    result = new ArrayList<Waiter>(2);
+                }
+                result.add(waiter);
+            }
+        }
+        return result;
+    }
+
+    private static void wakeAll(List<Waiter> waiters) {
+        if (waiters != null) {
+            for (Waiter waiter : waiters) {
+                waiter.wake(!waiter.dropped);
+            }
+        }
+    }
+
+    private static String normalizeHost(String host) {
+        return host == null ? "" : host.toLowerCase();
+    }
+
+    /*package*/ interface PermitListener {
+        void onPermitted(Permit permit);
+    }
+
+    /*package*/ static final class Permit {
+        private final Lane lane;
+        private final String host;
+        private boolean released = false; // guarded by lock
+
+        private Permit(Lane lane, String host) {
+            this.lane = lane;
+            this.host = host;
+        }
+    }
+
+    private static final class LaneState {
+        int maxRequests;
+        int maxRequestsPerHost;
+        int running = 0;
+        int checkedPoolSize = 0;
+        final HashMap<String, Integer> hostRunningMap = new HashMap<String, Integer>();
+        final LinkedList<Waiter> waiters = new LinkedList<Waiter>();
+
+        LaneState(int maxRequests, int maxRequestsPerHost) {
+            this.maxRequests = maxRequests;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+
+        boolean hasCapacity(String host) {
+            return running < maxRequests && getHostRunning(host) < maxRequestsPerHost;
+        }
+
+        int getHostRunning(String host) {
+            Integer count = hostRunningMap.get(host);
+            return count == null ? 0 : count;
+        }
+
+        void onStart(String host) {
+            running++;
+            hostRunningMap.put(host, getHostRunning(host) + 1);
+        }
+
+        void onFinish(String host) {
+            if (running > 0) {
+                running--;
+            }
+            int count = getHostRunning(host) - 1;
+            if (count > 0) {
+                hostRunningMap.put(host, count);
+            } else {
+                hostRunningMap.remove(host);
+            }
+        }
+
+        /**
+         * 优先级高的在前, 相同优先级先到的在前.
+         */
+        void enqueue(Waiter waiter) {
+            ListIterator<Waiter> itr = waiters.listIterator();
+            while (itr.hasNext()) {
+                if (itr.next().priority.ordinal() > waiter.priority.ordinal()) {
+                    itr.previous();
+                    break;
+                }
+            }
+            itr.add(waiter);
+        }
+    }
+
+    private static class Waiter {
+        final Lane lane;
+        final String host;
+        final Priority priority;
+        final Callback.Cancelable cancelable;
+        boolean dropped = false; // guarded by lock, 出队时确定
+        boolean granted = false;
+        boolean removed = false;
+
+        Waiter(Lane lane, String host, Priority priority, Callback.Cancelable cancelable) {
+            this.lane = lane;
+            this.host = host;
+            this.priority = priority;
+            this.cancelable = cancelable;
+        }
+
+        synchronized boolean isGranted() {
+            return granted;
+        }
+
+        synchronized void wake(boolean granted) {
+            if (granted) {
+                this.granted = true;
+            } else {
+                this.removed = true;
+            }
+            this.notify();
+        }
+    }
+
+    /**
+     * 不阻塞线程的等待者, 获得许可或被取消时将runnable提交到executor.
+     */
+    private static final class AsyncWaiter extends Waiter {
+        final Executor executor;
+        final Runnable runnable;
+        final PermitListener listener;
+
+        AsyncWaiter(Lane lane, String host, Priority priority, Callback.Cancelable cancelable,
+                    Executor executor, Runnable runnable, PermitListener listener) {
+            super(lane, host, priority, cancelable);
+            this.executor = executor;
+            this.runnable = runnable;
+            this.listener = listener;
+        }
+
+        @Override
+        void wake(boolean granted) {
+            super.wake(granted);
+            if (granted) {
+                Permit permit = new Permit(lane, host);
+                try {
+                    listener.onPermitted(permit);
+                    executor.execute(runnable);
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                    release(permit);
+                }
+            } else {
+                executor.execute(runnable);
+            }
+        }
+    }
+}
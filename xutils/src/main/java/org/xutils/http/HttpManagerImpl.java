@@ -2,9 +2,15 @@ package org.xutils.http;
 
 import org.xutils.HttpManager;
 import org.xutils.common.Callback;
+import org.xutils.common.util.LogUtil;
+import org.xutils.http.request.DnsCache;
+import org.xutils.http.request.HttpTransport;
+import org.xutils.http.request.PooledHttpTransport;
+import org.xutils.http.request.UriRequestFactory;
 import org.xutils.x;
 
 import java.lang.reflect.Type;
+import java.net.URL;
 
 /**
  * Created by wyouflf on 15/7/23.
@@ -73,6 +79,44 @@ public final class HttpManagerImpl implements HttpManager {
         return x.task().startSync(task);
     }
 
+    @Override
+    public void prefetchDns(final long ttlMillis, final String... hosts) {
+        if (hosts == null || hosts.length == 0) return;
+        x.task().run(new Runnable() {
+            @Override
+            public void run() {
+                for (String host : hosts) {
+                    try {
+                        DnsCache.resolve(host, ttlMillis);
+                    } catch (Throwable ex) {
+                        LogUtil.w("prefetch dns error: " + host, ex);
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void preconnect(final RequestParams entity) {
+        x.task().run(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    entity.init();
+                    URL url = new URL(entity.getUri());
+                    HttpTransport transport = UriRequestFactory.getHttpTransport();
+                    if (transport instanceof PooledHttpTransport) {
+                        ((PooledHttpTransport) transport).preconnect(url, entity);
+                    } else if (entity.getProxy() == null) {
+                        DnsCache.lookup(url.getHost());
+                    }
+                } catch (Throwable ex) {
+                    LogUtil.w("preconnect error: " + entity.getUri(), ex);
+                }
+            }
+        });
+    }
+
     private class DefaultSyncCallback<T> implements Callback.TypedCallback<T> {
 
         private final Class<T> resultType;
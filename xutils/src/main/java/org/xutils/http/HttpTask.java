@@ -2,6 +2,8 @@ package org.xutils.http;
 
 import android.text.TextUtils;
 
+import org.xutils.cache.DiskCacheEntity;
+import org.xutils.cache.LruDiskCache;
 import org.xutils.common.Callback;
 import org.xutils.common.task.AbsTask;
 import org.xutils.common.task.Priority;
@@ -15,19 +17,24 @@ import org.xutils.http.app.HttpRetryHandler;
 import org.xutils.http.app.RedirectHandler;
 import org.xutils.http.app.RequestInterceptListener;
 import org.xutils.http.app.RequestTracker;
+import org.xutils.http.request.HttpCacheStatus;
+import org.xutils.http.request.HttpRequest;
 import org.xutils.http.request.UriRequest;
 import org.xutils.http.request.UriRequestFactory;
 import org.xutils.x;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
+import java.net.URI;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by wyouflf on 15/7/23.
@@ -56,16 +63,25 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     // 日志追踪
     private RequestTracker tracker;
 
+    // 相同请求合并
+    private volatile SingleFlight.Flight waitingFlight;
+    private SingleFlight.Flight sharedFlight;
+
     // 文件下载任务
-    private final static AtomicInteger sCurrFileLoadCount = new AtomicInteger(0);
     private static final HashMap<String, WeakReference<HttpTask<?>>>
             DOWNLOAD_TASK = new HashMap<String, WeakReference<HttpTask<?>>>(1);
 
+    // 提交到线程池之前获取的许可
+    private volatile HttpDispatcher.Permit taskPermit;
+
     // 线程池
     private final Executor executor;
     private static final PriorityExecutor HTTP_EXECUTOR = new PriorityExecutor(5, true);
     private static final PriorityExecutor CACHE_EXECUTOR = new PriorityExecutor(5, true);
 
+    // 正在后台验证的缓存(stale-while-revalidate)
+    private static final Set<String> REVALIDATING_KEYS = new HashSet<String>();
+
 
     public HttpTask(RequestParams params, Callback.Cancelable cancelHandler,
                     Callback.CommonCallback<ResultType> callback) {
@@ -106,15 +122,22 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         }
 
         // init executor
+        Executor taskExecutor;
         if (params.getExecutor() != null) {
-            this.executor = params.getExecutor();
+            taskExecutor = params.getExecutor();
         } else {
             if (cacheCallback != null) {
-                this.executor = CACHE_EXECUTOR;
+                taskExecutor = CACHE_EXECUTOR;
             } else {
-                this.executor = HTTP_EXECUTOR;
+                taskExecutor = HTTP_EXECUTOR;
             }
         }
+        resolveLoadType();
+        if (taskExecutor instanceof PriorityExecutor) {
+            HttpDispatcher.checkPoolSize(getLane(), ((PriorityExecutor) taskExecutor).getPoolSize());
+        }
+        // 请求在获得许可后才进入线程池, 排队时不占用线程.
+        this.executor = new AdmissionExecutor(taskExecutor);
     }
 
     // 解析loadType
@@ -163,7 +186,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     DOWNLOAD_TASK.put(downloadTaskKey, new WeakReference<HttpTask<?>>(this));
                 } // end if (!TextUtils.isEmpty(downloadTaskKey))
 
-                if (DOWNLOAD_TASK.size() > RequestParams.MAX_FILE_LOAD_WORKER) {
+                if (DOWNLOAD_TASK.size() > RequestParams.getMaxFileLoadWorker()) {
                     Iterator<Map.Entry<String, WeakReference<HttpTask<?>>>>
                             entryItr = DOWNLOAD_TASK.entrySet().iterator();
                     while (entryItr.hasNext()) {
@@ -179,8 +202,16 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected ResultType doBackground() throws Throwable {
+        try {
+            return doRequest();
+        } finally {
+            releaseTaskPermit();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultType doRequest() throws Throwable {
 
         if (this.isCancelled()) {
             throw new Callback.CancelledException("cancelled before request");
@@ -207,12 +238,15 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
         // 检查缓存
         Object cacheResult = null;
-        if (cacheCallback != null && HttpMethod.permitsCache(params.getMethod())) {
-            // 尝试从缓存获取结果, 并为请求头加入缓存控制参数.
+        HttpCacheStatus httpCacheStatus = null;
+        boolean httpCacheMode = isHttpCacheMode();
+        if (httpCacheMode) {
+            // HTTP缓存模式: 由缓存的新鲜度决定是否访问网络, 不需要CacheCallback确认.
             try {
                 clearRawResult();
-                LogUtil.d("load cache: " + this.request.getRequestUri());
+                LogUtil.d("load http cache: " + this.request.getRequestUri());
                 rawResult = this.request.loadResultFromCache();
+                httpCacheStatus = this.request.getHttpCacheStatus();
             } catch (Throwable ex) {
                 LogUtil.w("load disk cache error", ex);
             }
@@ -223,18 +257,33 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
             }
 
             if (rawResult != null) {
-                if (prepareCallback != null) {
-                    try {
-                        cacheResult = prepareCallback.prepare(rawResult);
-                    } catch (Throwable ex) {
-                        cacheResult = null;
-                        LogUtil.w("prepare disk cache error", ex);
-                    } finally {
-                        clearRawResult();
+                cacheResult = prepareCacheResult();
+                if (cacheResult != null && httpCacheStatus != null) {
+                    if (httpCacheStatus.isFresh()) {
+                        return (ResultType) cacheResult;
+                    } else if (httpCacheStatus.isStaleWhileRevalidate()) {
+                        revalidateInBackground();
+                        return (ResultType) cacheResult;
                     }
-                } else {
-                    cacheResult = rawResult;
                 }
+            }
+        } else if (cacheCallback != null && HttpMethod.permitsCache(params.getMethod())) {
+            // 尝试从缓存获取结果, 并为请求头加入缓存控制参数.
+            try {
+                clearRawResult();
+                LogUtil.d("load cache: " + this.request.getRequestUri());
+                rawResult = this.request.loadResultFromCache();
+            } catch (Throwable ex) {
+                LogUtil.w("load disk cache error", ex);
+            }
+
+            if (this.isCancelled()) {
+                clearRawResult();
+                throw new Callback.CancelledException("cancelled before request");
+            }
+
+            if (rawResult != null) {
+                cacheResult = prepareCacheResult();
 
                 if (this.isCancelled()) {
                     throw new Callback.CancelledException("cancelled before request");
@@ -294,12 +343,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     clearRawResult();
                     // 开始请求工作
                     LogUtil.d("load: " + this.request.getRequestUri());
-                    RequestWorker requestWorker = new RequestWorker();
-                    requestWorker.request();
-                    if (requestWorker.ex != null) {
-                        throw requestWorker.ex;
-                    }
-                    rawResult = requestWorker.result;
+                    rawResult = loadRawResult(cacheResult != null);
                 } catch (Throwable ex) {
                     clearRawResult();
                     if (this.isCancelled()) {
@@ -324,8 +368,9 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     result = (ResultType) rawResult;
                 }
 
-                // 保存缓存
-                if (cacheCallback != null && HttpMethod.permitsCache(params.getMethod())) {
+                // 保存缓存(共用其他请求的结果时, 由那个请求保存)
+                if ((httpCacheMode || cacheCallback != null)
+                        && HttpMethod.permitsCache(params.getMethod()) && sharedFlight == null) {
                     try {
                         this.request.save2Cache();
                     } catch (Throwable ex) {
@@ -340,11 +385,18 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                 retry = true;
                 LogUtil.w("Http Redirect:" + params.getUri());
             } catch (Throwable ex) {
-                switch (this.request.getResponseCode()) {
+                switch (getResponseCode()) {
                     case 204: // empty content
                     case 205: // empty content
-                    case 304: // disk cache is valid.
+                    case 304: { // disk cache is valid.
+                        if (httpCacheMode && cacheResult != null) {
+                            if (sharedFlight == null) {
+                                this.request.updateCacheOnNotModified();
+                            }
+                            return (ResultType) cacheResult;
+                        }
                         return null;
+                    }
                     default: {
                         exception = ex;
                         if (this.isCancelled() && !(exception instanceof Callback.CancelledException)) {
@@ -357,6 +409,13 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
         }
 
+        if (exception != null && result == null && cacheResult != null
+                && httpCacheStatus != null && httpCacheStatus.isStaleIfError()
+                && isStaleIfErrorException(exception)) {
+            LogUtil.w("use stale cache on error: " + this.request.getRequestUri());
+            return (ResultType) cacheResult;
+        }
+
         if (exception != null && result == null && !trustCache) {
             hasException = true;
             throw exception;
@@ -365,6 +424,247 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         return result;
     }
 
+    /**
+     * 由rawResult(缓存)得到回调的结果类型
+     */
+    private Object prepareCacheResult() {
+        Object cacheResult;
+        if (prepareCallback != null) {
+            try {
+                cacheResult = prepareCallback.prepare(rawResult);
+            } catch (Throwable ex) {
+                cacheResult = null;
+                LogUtil.w("prepare disk cache error", ex);
+            } finally {
+                clearRawResult();
+            }
+        } else {
+            cacheResult = rawResult;
+        }
+        return cacheResult;
+    }
+
+    /**
+     * HTTP缓存模式只用于GET请求, 文件下载仍使用原来的缓存方式.
+     */
+    private boolean isHttpCacheMode() {
+        return params.isHttpCacheEnabled()
+                && HttpMethod.permitsCache(params.getMethod())
+                && File.class != loadType;
+    }
+
+    /**
+     * stale-if-error: 网络错误和5xx时可以使用过期的缓存.
+     */
+    private static boolean isStaleIfErrorException(Throwable ex) {
+        if (ex instanceof Callback.CancelledException) {
+            return false;
+        } else if (ex instanceof HttpException) {
+            return ((HttpException) ex).getCode() >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * stale-while-revalidate: 已返回过期的缓存, 在后台发送条件请求更新缓存.
+     * 请求头中已由loadResultFromCache加入缓存控制参数.
+     */
+    private void revalidateInBackground() {
+        final String cacheKey = this.request.getCacheKey();
+        synchronized (REVALIDATING_KEYS) {
+            if (!REVALIDATING_KEYS.add(cacheKey)) return;
+        }
+        // 使用参数的副本, 之后调用者对params的修改不会影响后台请求.
+        RevalidateTask task = new RevalidateTask(cacheKey, params.copy(), loadType, buildFlightKey(true));
+        HttpDispatcher.execute(getLane(), getHost(task.params.getUri()), Priority.BG_LOW,
+                null, CACHE_EXECUTOR, task, task);
+    }
+
+    /**
+     * stale-while-revalidate的后台验证请求.
+     * 与前台请求一样通过HttpDispatcher排队, 并与正在进行的相同请求合并.
+     */
+    private static final class RevalidateTask implements Runnable, HttpDispatcher.PermitListener {
+        private final String cacheKey;
+        private final RequestParams params;
+        private final Type loadType;
+        private final String flightKey;
+        private volatile HttpDispatcher.Permit permit;
+
+        private RevalidateTask(String cacheKey, RequestParams params, Type loadType, String flightKey) {
+            this.cacheKey = cacheKey;
+            this.params = params;
+            this.loadType = loadType;
+            this.flightKey = flightKey;
+        }
+
+        @Override
+        public void onPermitted(HttpDispatcher.Permit permit) {
+            this.permit = permit;
+        }
+
+        @Override
+        public void run() {
+            SingleFlight.Flight flight = null;
+            UriRequest revalidateRequest = null;
+            Object snapshot = null;
+            Throwable error = null;
+            try {
+                if (flightKey != null) {
+                    flight = SingleFlight.join(flightKey);
+                    if (!flight.isLeader()) {
+                        // 相同的请求正在进行, 由它更新缓存.
+                        flight = null;
+                        return;
+                    }
+                }
+                revalidateRequest = UriRequestFactory.getUriRequest(params, loadType);
+                LogUtil.d("revalidate: " + revalidateRequest.getRequestUri());
+                revalidateRequest.loadResult();
+                if (flight != null) {
+                    // 只生成一次缓存实体, 同步保存后交给follower.
+                    DiskCacheEntity entity = revalidateRequest.createCacheSnapshot();
+                    if (entity != null) {
+                        LruDiskCache.getDiskCache(params.getCacheDirName()).put(entity);
+                    }
+                    snapshot = entity;
+                } else {
+                    revalidateRequest.save2Cache();
+                }
+            } catch (Throwable ex) {
+                error = ex;
+                if (revalidateRequest != null
+                        && ex instanceof HttpException && ((HttpException) ex).getCode() == 304) {
+                    revalidateRequest.updateCacheOnNotModified();
+                } else {
+                    LogUtil.w("revalidate cache error", ex);
+                }
+            } finally {
+                if (flight != null) {
+                    int responseCode = 0;
+                    try {
+                        responseCode = revalidateRequest == null ? 0 : revalidateRequest.getResponseCode();
+                    } catch (Throwable ignored) {
+                    }
+                    flight.complete(snapshot, error, responseCode, error != null || snapshot != null);
+                }
+                IOUtil.closeQuietly(revalidateRequest);
+                HttpDispatcher.release(permit);
+                synchronized (REVALIDATING_KEYS) {
+                    REVALIDATING_KEYS.remove(cacheKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * 发起请求, 拿到loader的结果.
+     * 与正在进行的相同请求合并时, 只有leader访问网络,
+     * 其他请求等待并由leader结果的缓存实体生成各自的结果对象.
+     */
+    private Object loadRawResult(boolean conditional) throws Throwable {
+        sharedFlight = null;
+        String flightKey = buildFlightKey(conditional);
+        while (flightKey != null) {
+            SingleFlight.Flight flight = SingleFlight.join(flightKey);
+            if (flight.isLeader()) {
+                RequestWorker requestWorker = new RequestWorker();
+                Object snapshot = null;
+                try {
+                    requestWorker.request();
+                    if (requestWorker.ex == null) {
+                        snapshot = this.request.createCacheSnapshot();
+                    }
+                } finally {
+                    Throwable ex = requestWorker.ex;
+                    if (ex != null && this.isCancelled()) {
+                        // 被取消导致的错误不能共用, follower会重新请求.
+                        ex = new Callback.CancelledException("leader cancelled");
+                    }
+                    // 结果不能复制时follower自己请求
+                    boolean shareable = ex != null || snapshot != null;
+                    flight.complete(snapshot, ex, getLeaderResponseCode(), shareable);
+                }
+                if (requestWorker.ex != null) {
+                    throw requestWorker.ex;
+                }
+                return requestWorker.result;
+            }
+
+            // 等待期间不占用host的额度, 需要自己请求时由RequestWorker重新获取许可.
+            releaseTaskPermit();
+            boolean completed;
+            waitingFlight = flight;
+            try {
+                completed = flight.await(this);
+            } finally {
+                waitingFlight = null;
+            }
+            if (!completed) {
+                throw new Callback.CancelledException("cancelled during request");
+            }
+            if (flight.isShareable()) {
+                LogUtil.d("coalesced: " + this.request.getRequestUri());
+                sharedFlight = flight;
+                if (flight.getException() != null) {
+                    throw flight.getException();
+                }
+                Object result = this.request.loadResultFromEntity((DiskCacheEntity) flight.getResult());
+                if (result instanceof byte[]) {
+                    result = ((byte[]) result).clone(); // 未压缩时与其他follower共用同一个数组
+                }
+                return result;
+            }
+            // leader被取消或重定向, 重新加入或成为新的leader.
+        }
+
+        RequestWorker requestWorker = new RequestWorker();
+        requestWorker.request();
+        if (requestWorker.ex != null) {
+            throw requestWorker.ex;
+        }
+        return requestWorker.result;
+    }
+
+    /**
+     * @return null: 不能与其他请求合并
+     */
+    private String buildFlightKey(boolean conditional) {
+        if (!params.isCoalesce() || params.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+        // 只合并可以缓存的请求
+        if (!isHttpCacheMode() && cacheCallback == null) {
+            return null;
+        }
+        // 文件和流不能被多个回调共用
+        if (File.class == loadType || (loadType instanceof Class
+                && Closeable.class.isAssignableFrom((Class<?>) loadType))) {
+            return null;
+        }
+        String cacheKey = request.getCacheKey();
+        if (TextUtils.isEmpty(cacheKey)) {
+            return null;
+        }
+        return cacheKey + "|" + loadType + "|" + (cacheCallback != null) + "|" + conditional
+                + "|" + request.getRequestHeadersKey();
+    }
+
+    private int getLeaderResponseCode() {
+        try {
+            return this.request.getResponseCode();
+        } catch (Throwable ex) {
+            return 0;
+        }
+    }
+
+    private int getResponseCode() throws IOException {
+        if (sharedFlight != null) {
+            return sharedFlight.getResponseCode();
+        }
+        return this.request.getResponseCode();
+    }
+
     private static final int FLAG_REQUEST_CREATED = 1;
     private static final int FLAG_CACHE = 2;
     private static final int FLAG_PROGRESS = 3;
@@ -463,6 +763,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
     @Override
     protected void onFinished() {
+        releaseTaskPermit(); // 排队或等待执行时被取消
         if (tracker != null) {
             tracker.onFinished(request);
         }
@@ -475,6 +776,14 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         callback.onFinished();
     }
 
+    private void releaseTaskPermit() {
+        HttpDispatcher.Permit permit = taskPermit;
+        if (permit != null) {
+            taskPermit = null;
+            HttpDispatcher.release(permit);
+        }
+    }
+
     private void clearRawResult() {
         if (rawResult instanceof Closeable) {
             IOUtil.closeQuietly((Closeable) rawResult);
@@ -484,6 +793,11 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
     @Override
     protected void cancelWorks() {
+        SingleFlight.Flight flight = waitingFlight;
+        if (flight != null) {
+            flight.wakeUp();
+        }
+        HttpDispatcher.cancel(this);
         x.task().run(new Runnable() {
             @Override
             public void run() {
@@ -498,11 +812,6 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     }
 
     private void closeRequestSync() {
-        if (File.class == loadType) {
-            synchronized (sCurrFileLoadCount) {
-                sCurrFileLoadCount.notifyAll();
-            }
-        }
         clearRawResult();
         IOUtil.closeQuietly(request);
     }
@@ -560,11 +869,67 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     }
 
 
+    /**
+     * 请求所在的并发控制通道
+     */
+    private HttpDispatcher.Lane getLane() {
+        HttpDispatcher.Lane lane = params.getLane();
+        if (lane == null) {
+            lane = File.class == loadType ? HttpDispatcher.Lane.DOWNLOAD : HttpDispatcher.Lane.API;
+        }
+        return lane;
+    }
+
+    private static String getHost(String uri) {
+        try {
+            return new URI(uri).getHost();
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 通过HttpDispatcher排队, 获得许可后再将任务提交到线程池.
+     */
+    private final class AdmissionExecutor implements Executor {
+        private final Executor executor;
+
+        private AdmissionExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            String uri = params.getUri();
+            if (TextUtils.isEmpty(uri)) {
+                try { // 由@HttpRequest生成uri
+                    params.init();
+                    uri = params.getUri();
+                } catch (Throwable ignored) {
+                    // 在请求时抛出
+                }
+            }
+            if (uri == null || !uri.startsWith("http")) {
+                // 非http请求和无法确定uri的请求直接执行, http请求在RequestWorker中获取许可.
+                executor.execute(runnable);
+                return;
+            }
+            HttpDispatcher.execute(getLane(), getHost(uri),
+                    params.getPriority(), HttpTask.this, executor, runnable,
+                    new HttpDispatcher.PermitListener() {
+                        @Override
+                        public void onPermitted(HttpDispatcher.Permit permit) {
+                            taskPermit = permit;
+                        }
+                    });
+        }
+    }
+
     /**
      * 请求发送和加载数据线程.
      * 该线程被join到HttpTask的工作线程去执行.
      * 它的主要作用是为了能强行中断请求的链接过程;
-     * 并辅助限制同时下载文件的线程数.
+     * 并通过HttpDispatcher限制每个host和每个通道的并发请求数.
      */
     private final class RequestWorker {
         /*private*/ Object result;
@@ -574,26 +939,16 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         }
 
         public void request() {
+            HttpDispatcher.Permit permit = null;
             try {
-                boolean interrupted = false;
-                if (File.class == loadType) {
-                    synchronized (sCurrFileLoadCount) {
-                        while (sCurrFileLoadCount.get() >= RequestParams.MAX_FILE_LOAD_WORKER
-                                && !HttpTask.this.isCancelled()) {
-                            try {
-                                sCurrFileLoadCount.wait(10);
-                            } catch (InterruptedException iex) {
-                                interrupted = true;
-                                break;
-                            } catch (Throwable ignored) {
-                            }
-                        }
-                    }
-                    sCurrFileLoadCount.incrementAndGet();
+                if (request instanceof HttpRequest && taskPermit == null) {
+                    permit = HttpDispatcher.acquire(
+                            getLane(), getHost(request.getRequestUri()),
+                            params.getPriority(), HttpTask.this);
                 }
 
-                if (interrupted || HttpTask.this.isCancelled()) {
-                    throw new Callback.CancelledException("cancelled before request" + (interrupted ? "(interrupted)" : ""));
+                if (HttpTask.this.isCancelled()) {
+                    throw new Callback.CancelledException("cancelled before request");
                 }
 
                 try {
@@ -632,12 +987,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     }
                 }
             } finally {
-                if (File.class == loadType) {
-                    synchronized (sCurrFileLoadCount) {
-                        sCurrFileLoadCount.decrementAndGet();
-                        sCurrFileLoadCount.notifyAll();
-                    }
-                }
+                HttpDispatcher.release(permit);
             }
         }
     }
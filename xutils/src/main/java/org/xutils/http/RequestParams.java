@@ -25,6 +25,12 @@ import javax.net.ssl.SSLSocketFactory;
  */
 public class RequestParams extends BaseParams {
 
+    /**
+     * 默认的最大同时下载数
+     *
+     * @deprecated 运行时调整请使用 {@link #setMaxFileLoadWorker(int)}
+     */
+    @Deprecated
     public final static int MAX_FILE_LOAD_WORKER = 10;
     private final static DefaultRedirectHandler DEFAULT_REDIRECT_HANDLER = new DefaultRedirectHandler();
 
@@ -48,6 +54,7 @@ public class RequestParams extends BaseParams {
     private long cacheMaxAge; // 默认缓存存活时间, 单位:毫秒.(如果服务没有返回有效的max-age或Expires)
     private Executor executor; // 自定义线程池
     private Priority priority = Priority.DEFAULT; // 请求优先级
+    private HttpDispatcher.Lane lane; // 请求通道, 为空时根据返回类型选择.
     private int connectTimeout = 1000 * 15; // 连接超时时间
     private int readTimeout = 1000 * 15; // 读取超时时间
     private boolean autoResume = true; // 是否在下载是自动断点续传
@@ -55,6 +62,10 @@ public class RequestParams extends BaseParams {
     private int maxRetryCount = 2; // 最大请求错误重试次数
     private String saveFilePath; // 下载文件时文件保存的路径和文件名
     private boolean cancelFast = false; // 是否可以被立即停止, true: 为请求创建新的线程, 取消时请求线程被立即中断.
+    private boolean coalesce = false; // 是否与正在进行的相同GET请求共用一次网络请求
+    private boolean acceptCompressed = true; // 是否请求压缩的响应(Accept-Encoding)并自动解压
+    private int downloadSegmentCount = 1; // 分段并行下载的连接数, 大于1时启用
+    private boolean httpCacheEnabled = false; // 是否按HTTP缓存规则(RFC 7234)使用缓存
     private int loadingUpdateMaxTimeSpan = 300; // 进度刷新最大间隔时间(ms)
     private HttpRetryHandler httpRetryHandler; // 自定义HttpRetryHandler
     private RequestTracker requestTracker; // 自定义日志记录接口.
@@ -91,6 +102,17 @@ public class RequestParams extends BaseParams {
         this.context = x.app();
     }
 
+    /**
+     * 设置最大同时下载数, 运行时生效, 超出的下载任务排队等待且不占用线程.
+     */
+    public static void setMaxFileLoadWorker(int maxFileLoadWorker) {
+        HttpDispatcher.setMaxRequests(HttpDispatcher.Lane.DOWNLOAD, maxFileLoadWorker);
+    }
+
+    public static int getMaxFileLoadWorker() {
+        return HttpDispatcher.getMaxRequests(HttpDispatcher.Lane.DOWNLOAD);
+    }
+
     // invoke via HttpTask#createNewRequest
     /*package*/ void init() throws Throwable {
         if (!TextUtils.isEmpty(buildUri)) return;
@@ -122,6 +144,46 @@ public class RequestParams extends BaseParams {
         }
     }
 
+    /**
+     * 复制已初始化的参数(不会重新构建uri和签名), 用于在后台发起独立的请求,
+     * 之后对原参数的修改不会影响副本.
+     */
+    /*package*/ RequestParams copy() {
+        RequestParams result = new RequestParams(uri, builder, signs, cacheKeys);
+        result.copyBaseParams(this);
+        result.httpRequest = getHttpRequest();
+        result.invokedGetHttpRequest = true;
+        result.buildUri = buildUri;
+        result.buildCacheKey = getCacheKey();
+        result.sslSocketFactory = sslSocketFactory;
+        result.context = context;
+        result.proxy = proxy;
+        result.hostnameVerifier = hostnameVerifier;
+        result.useCookie = useCookie;
+        result.cacheDirName = cacheDirName;
+        result.cacheSize = cacheSize;
+        result.cacheMaxAge = cacheMaxAge;
+        result.executor = executor;
+        result.priority = priority;
+        result.lane = lane;
+        result.connectTimeout = connectTimeout;
+        result.readTimeout = readTimeout;
+        result.autoResume = autoResume;
+        result.autoRename = autoRename;
+        result.maxRetryCount = maxRetryCount;
+        result.saveFilePath = saveFilePath;
+        result.cancelFast = cancelFast;
+        result.coalesce = coalesce;
+        result.acceptCompressed = acceptCompressed;
+        result.downloadSegmentCount = downloadSegmentCount;
+        result.httpCacheEnabled = httpCacheEnabled;
+        result.loadingUpdateMaxTimeSpan = loadingUpdateMaxTimeSpan;
+        result.httpRetryHandler = httpRetryHandler;
+        result.requestTracker = requestTracker;
+        result.redirectHandler = redirectHandler;
+        return result;
+    }
+
     public String getUri() {
         return TextUtils.isEmpty(buildUri) ? uri : buildUri;
     }
@@ -200,6 +262,18 @@ public class RequestParams extends BaseParams {
         this.priority = priority;
     }
 
+    public HttpDispatcher.Lane getLane() {
+        return lane;
+    }
+
+    /**
+     * 请求所在的并发控制通道(见{@link HttpDispatcher}),
+     * 默认下载文件使用DOWNLOAD通道, 其他请求使用API通道.
+     */
+    public void setLane(HttpDispatcher.Lane lane) {
+        this.lane = lane;
+    }
+
     public int getConnectTimeout() {
         return connectTimeout;
     }
@@ -335,6 +409,63 @@ public class RequestParams extends BaseParams {
         this.cancelFast = cancelFast;
     }
 
+    /**
+     * 是否与正在进行的相同GET请求(相同的cacheKey, 请求头和返回类型)共用一次网络请求.
+     */
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    /**
+     * 是否与正在进行的相同GET请求(相同的cacheKey, 请求头(包括cookie)和返回类型)共用一次网络请求, 默认false.
+     * 只对可以缓存的请求(CacheCallback或HTTP缓存模式)生效,
+     * 每个请求得到由共用的响应生成的独立结果对象.
+     */
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public boolean isAcceptCompressed() {
+        return acceptCompressed;
+    }
+
+    /**
+     * 是否请求压缩的响应并自动解压, 默认true.
+     * 已自定义Accept-Encoding或Range请求头时不处理.
+     */
+    public void setAcceptCompressed(boolean acceptCompressed) {
+        this.acceptCompressed = acceptCompressed;
+    }
+
+    public boolean isHttpCacheEnabled() {
+        return httpCacheEnabled;
+    }
+
+    /**
+     * 是否按HTTP缓存规则(RFC 7234)使用缓存, 默认false. 只对GET请求生效, 不包括文件下载.
+     * 开启后由响应的Cache-Control, Expires, Age, Vary等决定缓存的使用, 不需要CacheCallback:
+     * 新鲜的缓存直接作为结果返回, 不访问网络;
+     * stale-while-revalidate期间先返回过期的缓存, 同时在后台验证并更新;
+     * 过期的缓存发送条件请求, 304时返回缓存的结果;
+     * stale-if-error期间网络出错或5xx时返回过期的缓存.
+     */
+    public void setHttpCacheEnabled(boolean httpCacheEnabled) {
+        this.httpCacheEnabled = httpCacheEnabled;
+    }
+
+    public int getDownloadSegmentCount() {
+        return downloadSegmentCount;
+    }
+
+    /**
+     * 分段并行下载的连接数, 默认1(不分段).
+     * 大于1时, 若服务器支持Range且文件足够大, 文件被分成多段同时下载, 每段的进度都可以断点续传.
+     * 只对设置了saveFilePath的GET下载生效.
+     */
+    public void setDownloadSegmentCount(int downloadSegmentCount) {
+        this.downloadSegmentCount = downloadSegmentCount;
+    }
+
     public int getLoadingUpdateMaxTimeSpan() {
         return loadingUpdateMaxTimeSpan;
     }
@@ -0,0 +1,147 @@
+package org.xutils.http;
+
+import org.xutils.common.Callback;
+import org.xutils.ex.HttpRedirectException;
+
+import java.util.HashMap;
+
+/**
+ * 相同请求的合并: 同一时间相同key的请求只有一个(leader)真正访问网络,
+ * 其他请求(follower)等待并由它的结果(缓存实体)生成各自的结果.
+ */
+/*package*/ final class SingleFlight {
+
+    private static final HashMap<String, Flight> FLIGHT_MAP = new HashMap<String, Flight>();
+
+    private SingleFlight() {
+    }
+
+    /**
+     * 加入key对应的请求, 没有正在进行的请求时创建一个新的, 调用者成为它的leader.
+     */
+    public static Flight join(String key) {
+        synchronized (FLIGHT_MAP) {
+            Flight flight = FLIGHT_MAP.get(key);
+            if (flight == null) {
+                flight = new Flight(key, true);
+                FLIGHT_MAP.put(key, flight);
+                return flight;
+            } else {
+                return new Flight(flight);
+            }
+        }
+    }
+
+    /**
+     * 一次共享的网络请求, leader和每个follower各持有一个Flight对象, 共用同一个Outcome.
+     */
+    public static final class Flight {
+        private final String key;
+        private final boolean leader;
+        private final Outcome outcome;
+
+        private Flight(String key, boolean leader) {
+            this.key = key;
+            this.leader = leader;
+            this.outcome = new Outcome();
+        }
+
+        private Flight(Flight leaderFlight) {
+            this.key = leaderFlight.key;
+            this.leader = false;
+            this.outcome = leaderFlight.outcome;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * leader完成请求后调用(无论成功与否), 唤醒所有follower.
+         */
+        public void complete(Object result, Throwable ex, int responseCode, boolean shareable) {
+            if (!leader) return;
+            synchronized (FLIGHT_MAP) {
+                Flight flight = FLIGHT_MAP.get(key);
+                if (flight != null && flight.outcome == outcome) {
+                    FLIGHT_MAP.remove(key);
+                }
+            }
+            synchronized (outcome) {
+                outcome.result = result;
+                outcome.ex = ex;
+                outcome.responseCode = responseCode;
+                outcome.shareable = shareable;
+                outcome.done = true;
+                outcome.notifyAll();
+            }
+        }
+
+        /**
+         * follower等待leader的结果
+         *
+         * @return false: 等待期间被取消
+         */
+        public boolean await(Callback.Cancelable cancelable) {
+            synchronized (outcome) {
+                while (!outcome.done) {
+                    if (cancelable.isCancelled()) {
+                        return false;
+                    }
+                    try {
+                        outcome.wait();
+                    } catch (InterruptedException iex) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        /**
+         * follower被取消时调用, 唤醒等待的线程.
+         */
+        public void wakeUp() {
+            synchronized (outcome) {
+                outcome.notifyAll();
+            }
+        }
+
+        /**
+         * leader被取消, 重定向或结果不能复制时, follower需要自己重新请求.
+         */
+        public boolean isShareable() {
+            synchronized (outcome) {
+                return outcome.done && outcome.shareable
+                        && !(outcome.ex instanceof Callback.CancelledException)
+                        && !(outcome.ex instanceof HttpRedirectException);
+            }
+        }
+
+        public Object getResult() {
+            synchronized (outcome) {
+                return outcome.result;
+            }
+        }
+
+        public Throwable getException() {
+            synchronized (outcome) {
+                return outcome.ex;
+            }
+        }
+
+        public int getResponseCode() {
+            synchronized (outcome) {
+                return outcome.responseCode;
+            }
+        }
+    }
+
+    private static final class Outcome {
+        boolean done = false;
+        Object result;
+        Throwable ex;
+        int responseCode;
+        boolean shareable;
+    }
+}
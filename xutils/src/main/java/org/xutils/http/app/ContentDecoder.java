@@ -0,0 +1,16 @@
+package org.xutils.http.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 响应体解压接口, 按Content-Encoding注册到UriRequestFactory.
+ * 内置gzip和deflate, 其他编码(如br)可以注册第三方实现.
+ */
+public interface ContentDecoder {
+
+    /**
+     * 包装压缩的数据流, 返回解压后的数据流.
+     */
+    InputStream decode(InputStream in) throws IOException;
+}
@@ -0,0 +1,61 @@
+package org.xutils.http.app;
+
+import android.util.JsonReader;
+
+import org.xutils.common.util.ParameterizedTypeUtil;
+import org.xutils.http.request.UriRequest;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式json解析模板: JsonReader直接读取响应流, 边接收边转换,
+ * 不生成完整的字符串和JSONObject/JSONArray.
+ * <p>
+ * 返回值为List时逐个调用{@link #parseItem}, 否则对整个响应调用一次.
+ * 列表被包装在对象中(如: {"data":[...]})时可以重写{@link #parse}, 定位到数组后调用{@link #parseList}.
+ */
+public abstract class JsonStreamParser implements ResponseParser<JsonReader> {
+
+    @Override
+    public void beforeRequest(UriRequest request) throws Throwable {
+    }
+
+    @Override
+    public void afterRequest(UriRequest request) throws Throwable {
+    }
+
+    @Override
+    public Object parse(Type resultType, Class<?> resultClass, JsonReader reader) throws Throwable {
+        if (reader == null) return null;
+        if (List.class.equals(resultClass)) {
+            return parseList(resultType, reader);
+        } else {
+            return parseItem(resultType, resultClass, reader);
+        }
+    }
+
+    /**
+     * 读取reader当前位置的数组, 逐个转换为List的元素.
+     */
+    protected List<Object> parseList(Type listType, JsonReader reader) throws Throwable {
+        Type itemType = ParameterizedTypeUtil.getParameterizedType(listType, List.class, 0);
+        Class<?> itemClass = itemType instanceof ParameterizedType ?
+                (Class<?>) ((ParameterizedType) itemType).getRawType() : (Class<?>) itemType;
+
+        List<Object> result = new ArrayList<Object>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            result.add(parseItem(itemType, itemClass, reader));
+        }
+        reader.endArray();
+        return result;
+    }
+
+    /**
+     * 从reader当前位置读取一个值, 转换为itemType类型的对象.
+     */
+    public abstract Object parseItem(Type itemType, Class<?> itemClass, JsonReader reader) throws Throwable;
+}
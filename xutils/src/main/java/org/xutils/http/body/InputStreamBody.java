@@ -20,6 +20,9 @@ import java.io.OutputStream;
  */
 public class InputStreamBody implements ProgressBody {
 
+    // 上传时每次写入的最大长度, 也是进度回调的间隔.
+    /*package*/ static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
     private InputStream content;
     private String contentType;
 
@@ -64,11 +67,10 @@ public class InputStreamBody implements ProgressBody {
             throw new Callback.CancelledException("upload stopped!");
         }
 
-        byte[] buffer = new byte[4096];
+        byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
         try {
-            int len = 0;
-            while ((len = content.read(buffer)) != -1) {
-                out.write(buffer, 0, len);
+            long len = 0;
+            while ((len = writeChunk(content, out, buffer)) != -1) {
                 current += len;
                 if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
                     throw new Callback.CancelledException("upload stopped!");
@@ -84,6 +86,17 @@ public class InputStreamBody implements ProgressBody {
         }
     }
 
+    /**
+     * 从in向out写入一块数据, 返回写入的长度, 数据已读完时返回-1.
+     */
+    /*package*/ static long writeChunk(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int len = in.read(buffer);
+        if (len > 0) {
+            out.write(buffer, 0, len);
+        }
+        return len;
+    }
+
     public static long getInputStreamLength(InputStream inputStream) {
         try {
             if (inputStream instanceof FileInputStream ||
@@ -9,18 +9,20 @@ import org.xutils.common.util.KeyValue;
 import org.xutils.http.BaseParams.BodyItemWrapper;
 import org.xutils.http.ProgressHandler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Author: wyouflf
  * Time: 2014/05/30
+ * 每一项的boundary, Content-Disposition和Content-Type在创建时序列化一次, 写入时直接输出.
  */
 public class MultipartBody implements ProgressBody {
 
@@ -31,7 +33,8 @@ public class MultipartBody implements ProgressBody {
     private String contentType; // multipart/subtype; boundary=xxx...
     private String charset = "UTF-8";
 
-    private List<KeyValue> multipartParams;
+    private List<Part> parts;
+    private byte[] closingBytes; // 结束的boundary行
     private long total = 0;
     private long current = 0;
 
@@ -39,16 +42,29 @@ public class MultipartBody implements ProgressBody {
         if (!TextUtils.isEmpty(charset)) {
             this.charset = charset;
         }
-        this.multipartParams = multipartParams;
         generateContentType();
 
-        // calc total
-        CounterOutputStream counter = new CounterOutputStream();
+        // build parts & calc total
         try {
-            this.writeTo(counter);
-            this.total = counter.total.get();
+            this.parts = new ArrayList<Part>(multipartParams.size());
+            for (KeyValue entry : multipartParams) {
+                Part part = buildPart(entry);
+                if (part != null) {
+                    this.parts.add(part);
+                    if (this.total != -1) {
+                        long length = part.getContentLength();
+                        this.total = length < 0 ? -1 : this.total + part.head.length + length + END_BYTES.length;
+                    }
+                }
+            }
+            ByteArrayOutputStream closing = new ByteArrayOutputStream();
+            writeLine(closing, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes, TWO_DASHES_BYTES);
+            this.closingBytes = closing.toByteArray();
+            if (this.total != -1) {
+                this.total += closingBytes.length;
+            }
         } catch (IOException e) {
-            this.total = -1;
+            throw new IllegalArgumentException(e.getMessage(), e);
         }
     }
 
@@ -95,10 +111,30 @@ public class MultipartBody implements ProgressBody {
             throw new Callback.CancelledException("upload stopped!");
         }
 
-        for (KeyValue entry : multipartParams) {
-            writeEntry(out, entry);
+        byte[] buffer = null;
+        for (Part part : parts) {
+            out.write(part.head);
+            Object content = part.content;
+            if (content instanceof byte[]) {
+                byte[] bytes = (byte[]) content;
+                out.write(bytes);
+                current += bytes.length;
+                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
+                    throw new Callback.CancelledException("upload stopped!");
+                }
+            } else {
+                if (buffer == null) {
+                    buffer = new byte[InputStreamBody.UPLOAD_BUFFER_SIZE];
+                }
+                if (content instanceof File) {
+                    writeStreamAndCloseIn(out, new FileInputStream((File) content), buffer);
+                } else {
+                    writeStreamAndCloseIn(out, (InputStream) content, buffer);
+                }
+            }
+            out.write(END_BYTES);
         }
-        writeLine(out, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes, TWO_DASHES_BYTES);
+        out.write(closingBytes);
         out.flush();
 
         if (callBackHandler != null) {
@@ -107,14 +143,15 @@ public class MultipartBody implements ProgressBody {
     }
 
     /**
-     * 写入multipart中的一项
+     * 序列化multipart中一项的头部
      */
-    private void writeEntry(OutputStream out, KeyValue entry) throws IOException {
+    private Part buildPart(KeyValue entry) throws IOException {
         String name = entry.key;
         Object value = entry.value;
-        if (TextUtils.isEmpty(name) || value == null) return;
+        if (TextUtils.isEmpty(name) || value == null) return null;
 
-        writeLine(out, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes);
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        writeLine(head, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes);
 
         String fileName = "";
         String contentType = null;
@@ -124,6 +161,7 @@ public class MultipartBody implements ProgressBody {
             contentType = wrapper.contentType;
         }
 
+        Object content;
         if (value instanceof File) {
             File file = (File) value;
             if (TextUtils.isEmpty(fileName)) {
@@ -132,35 +170,19 @@ public class MultipartBody implements ProgressBody {
             if (TextUtils.isEmpty(contentType)) {
                 contentType = FileBody.getFileContentType(file);
             }
-            writeLine(out, buildContentDisposition(name, fileName, charset));
-            writeLine(out, buildContentType(value, contentType, charset));
-            writeLine(out); // 内容前空一行
-            writeFile(out, file);
-            writeLine(out);
+            content = file;
+        } else if (value instanceof InputStream || value instanceof byte[]) {
+            content = value;
         } else {
-            writeLine(out, buildContentDisposition(name, fileName, charset));
-            writeLine(out, buildContentType(value, contentType, charset));
-            writeLine(out); // 内容前空一行
-            if (value instanceof InputStream) {
-                writeStreamAndCloseIn(out, (InputStream) value);
-                writeLine(out);
-            } else {
-                byte[] content;
-                if (value instanceof byte[]) {
-                    content = (byte[]) value;
-                } else {
-                    content = entry.getValueStrOrEmpty().getBytes(charset);
-                }
-                writeLine(out, content);
-                current += content.length;
-                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
-                    throw new Callback.CancelledException("upload stopped!");
-                }
-            }
+            content = entry.getValueStrOrEmpty().getBytes(charset);
         }
+        writeLine(head, buildContentDisposition(name, fileName, charset));
+        writeLine(head, buildContentType(value, contentType, charset));
+        writeLine(head); // 内容前空一行
+        return new Part(head.toByteArray(), content);
     }
 
-    private void writeLine(OutputStream out, byte[]... bs) throws IOException {
+    private static void writeLine(OutputStream out, byte[]... bs) throws IOException {
         if (bs != null) {
             for (byte[] b : bs) {
                 out.write(b);
@@ -169,31 +191,17 @@ public class MultipartBody implements ProgressBody {
         out.write(END_BYTES);
     }
 
-    private void writeFile(OutputStream out, File file) throws IOException {
-        if (out instanceof CounterOutputStream) {
-            ((CounterOutputStream) out).addFile(file);
-        } else {
-            writeStreamAndCloseIn(out, new FileInputStream(file));
-        }
-    }
-
-    private void writeStreamAndCloseIn(OutputStream out, InputStream in) throws IOException {
-        if (out instanceof CounterOutputStream) {
-            ((CounterOutputStream) out).addStream(in);
-        } else {
-            try {
-                int len;
-                byte[] buf = new byte[4096];
-                while ((len = in.read(buf)) >= 0) {
-                    out.write(buf, 0, len);
-                    current += len;
-                    if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
-                        throw new Callback.CancelledException("upload stopped!");
-                    }
+    private void writeStreamAndCloseIn(OutputStream out, InputStream in, byte[] buffer) throws IOException {
+        try {
+            long len;
+            while ((len = InputStreamBody.writeChunk(in, out, buffer)) >= 0) {
+                current += len;
+                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
+                    throw new Callback.CancelledException("upload stopped!");
                 }
-            } finally {
-                IOUtil.closeQuietly(in);
             }
+        } finally {
+            IOUtil.closeQuietly(in);
         }
     }
 
@@ -221,44 +229,24 @@ public class MultipartBody implements ProgressBody {
         return result.toString().getBytes(charset);
     }
 
-    private class CounterOutputStream extends OutputStream {
+    private static final class Part {
+        private final byte[] head; // boundary行, Content-Disposition, Content-Type和空行
+        private final Object content; // File, InputStream 或 byte[]
 
-        final AtomicLong total = new AtomicLong(0L);
-
-        public CounterOutputStream() {
-        }
-
-        public void addFile(File file) {
-            if (total.get() == -1L) return;
-            total.addAndGet(file.length());
+        private Part(byte[] head, Object content) {
+            this.head = head;
+            this.content = content;
         }
 
-        public void addStream(InputStream inputStream) {
-            if (total.get() == -1L) return;
-            long length = InputStreamBody.getInputStreamLength(inputStream);
-            if (length > 0) {
-                total.addAndGet(length);
+        private long getContentLength() {
+            if (content instanceof File) {
+                return ((File) content).length();
+            } else if (content instanceof byte[]) {
+                return ((byte[]) content).length;
             } else {
-                total.set(-1L);
+                long length = InputStreamBody.getInputStreamLength((InputStream) content);
+                return length > 0 ? length : -1;
             }
         }
-
-        @Override
-        public void write(int oneByte) throws IOException {
-            if (total.get() == -1L) return;
-            total.incrementAndGet();
-        }
-
-        @Override
-        public void write(byte[] buffer) throws IOException {
-            if (total.get() == -1L) return;
-            total.addAndGet(buffer.length);
-        }
-
-        @Override
-        public void write(byte[] buffer, int offset, int count) throws IOException {
-            if (total.get() == -1L) return;
-            total.addAndGet(count);
-        }
     }
 }
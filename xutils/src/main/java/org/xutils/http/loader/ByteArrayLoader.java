@@ -19,6 +19,7 @@ import org.xutils.http.request.UriRequest;
 
     @Override
     public byte[] load(final UriRequest request) throws Throwable {
+        request.setKeepCompressedBody(true);
         request.sendRequest();
         resultData = IOUtil.readBytes(request.getInputStream());
         return resultData;
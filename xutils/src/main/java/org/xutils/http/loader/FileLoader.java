@@ -11,7 +11,9 @@ import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.ProcessLock;
 import org.xutils.ex.FileLockedException;
 import org.xutils.ex.HttpException;
+import org.xutils.http.HttpMethod;
 import org.xutils.http.RequestParams;
+import org.xutils.http.request.HttpRequest;
 import org.xutils.http.request.UriRequest;
 
 import java.io.BufferedInputStream;
@@ -37,6 +39,9 @@ import java.util.Date;
  * 1. 要下载的目标文件不存在或小于 CHECK_SIZE 时删除目标文件, 重新下载.
  * 2. 若文件存在且大于 CHECK_SIZE, range = fileLen - CHECK_SIZE , 校验check_buffer, 相同: 继续下载;
  * 不相同: 删掉目标文件, 并抛出RuntimeException(HttpRetryHandler会使下载重新开始).
+ * 分段下载策略:
+ * 1. RequestParams#downloadSegmentCount大于1, 且服务器支持Range时, 由SegmentDownloader分段并行下载.
+ * 2. 单连接下载的临时文件未完成时继续单连接下载.
  */
 public class FileLoader extends Loader<File> {
 
@@ -51,6 +56,7 @@ public class FileLoader extends Loader<File> {
     private String responseFileName;
 
     private DiskCacheFile diskCacheFile;
+    private SegmentDownloader segmentDownloader;
 
     @Override
     public Loader<File> newInstance() {
@@ -194,20 +200,36 @@ public class FileLoader extends Loader<File> {
             }
 
             params = request.getParams();
+            segmentDownloader = null;
+            if (diskCacheFile == null && params.getDownloadSegmentCount() > 1
+                    && request instanceof HttpRequest && params.getMethod() == HttpMethod.GET) {
+                segmentDownloader = new SegmentDownloader(
+                        saveFilePath, params.getDownloadSegmentCount(), isAutoResume);
+            }
             {// 处理[断点逻辑1](见文件头doc)
-                long range = 0;
-                if (isAutoResume) {
-                    File tempFile = new File(tempSaveFilePath);
-                    long fileLen = tempFile.length();
-                    if (fileLen <= CHECK_SIZE) {
-                        IOUtil.deleteFileOrDir(tempFile);
-                        range = 0;
-                    } else {
-                        range = fileLen - CHECK_SIZE;
+                String rangeHeader = null;
+                if (segmentDownloader != null) {
+                    rangeHeader = segmentDownloader.getResumeRange();
+                }
+                if (rangeHeader == null) {
+                    long range = 0;
+                    if (isAutoResume) {
+                        File tempFile = new File(tempSaveFilePath);
+                        long fileLen = tempFile.length();
+                        if (fileLen <= CHECK_SIZE) {
+                            IOUtil.deleteFileOrDir(tempFile);
+                            range = 0;
+                        } else {
+                            range = fileLen - CHECK_SIZE;
+                        }
                     }
+                    if (range > 0) { // 继续未完成的单连接下载
+                        segmentDownloader = null;
+                    }
+                    rangeHeader = "bytes=" + range + "-";
                 }
                 // retry 时需要覆盖Range参数
-                params.setHeader("Range", "bytes=" + range + "-");
+                params.setHeader("Range", rangeHeader);
             }
 
             if (progressHandler != null && !progressHandler.updateProgress(0, 0, false)) {
@@ -239,9 +261,18 @@ public class FileLoader extends Loader<File> {
                     LogUtil.e(ex.getMessage(), ex);
                 }
             }
-            result = this.load(request.getInputStream());
+            if (segmentDownloader != null && segmentDownloader.accept(request, contentLength)) {
+                result = autoRename(segmentDownloader.download((HttpRequest) request, progressHandler));
+            } else {
+                result = this.load(request.getInputStream());
+            }
         } catch (HttpException httpException) {
             if (httpException.getCode() == 416) {
+                if (segmentDownloader != null && segmentDownloader.getResumeRange() != null) {
+                    // 分段下载的文件已变化
+                    segmentDownloader.discard();
+                    throw new RuntimeException("need retry");
+                }
                 if (diskCacheFile != null) {
                     result = diskCacheFile.commit();
                 } else {
@@ -34,6 +34,7 @@ import org.xutils.http.request.UriRequest;
 
     @Override
     public JSONArray load(final UriRequest request) throws Throwable {
+        request.setKeepCompressedBody(true);
         request.sendRequest();
         resultStr = IOUtil.readStr(request.getInputStream(), charset);
         return new JSONArray(resultStr);
@@ -0,0 +1,64 @@
+package org.xutils.http.loader;
+
+import android.text.TextUtils;
+import android.util.JsonReader;
+
+import org.xutils.cache.DiskCacheEntity;
+import org.xutils.http.RequestParams;
+import org.xutils.http.request.UriRequest;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+
+/**
+ * 返回直接读取响应流的JsonReader, 配合{@link org.xutils.http.app.JsonStreamParser}边接收边解析,
+ * 不需要先把整个响应读成字符串.
+ * <p>
+ * 数据没有被完整保留, 所以不保存缓存; 读取缓存时使用其他loader保存的文本.
+ */
+/*package*/ class JsonReaderLoader extends Loader<JsonReader> {
+
+    private String charset = "UTF-8";
+
+    @Override
+    public Loader<JsonReader> newInstance() {
+        return new JsonReaderLoader();
+    }
+
+    @Override
+    public void setParams(final RequestParams params) {
+        if (params != null) {
+            String charset = params.getCharset();
+            if (!TextUtils.isEmpty(charset)) {
+                this.charset = charset;
+            }
+        }
+    }
+
+    @Override
+    public JsonReader load(final UriRequest request) throws Throwable {
+        request.sendRequest();
+        JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(request.getInputStream(), charset), 8192));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    @Override
+    public JsonReader loadFromCache(final DiskCacheEntity cacheEntity) throws Throwable {
+        if (cacheEntity != null) {
+            String text = cacheEntity.getTextContent();
+            if (!TextUtils.isEmpty(text)) {
+                JsonReader reader = new JsonReader(new StringReader(text));
+                reader.setLenient(true);
+                return reader;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void save2Cache(final UriRequest request) {
+    }
+}
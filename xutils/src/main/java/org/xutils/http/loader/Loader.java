@@ -19,6 +19,12 @@ public abstract class Loader<T> {
 
     protected ProgressHandler progressHandler;
 
+    /**
+     * createCacheSnapshot()调用期间当前线程生成的缓存实体.
+     * 使用ThreadLocal, 其他线程中同时执行的save2Cache()不受影响.
+     */
+    private static final ThreadLocal<DiskCacheEntity[]> SNAPSHOT_HOLDER = new ThreadLocal<DiskCacheEntity[]>();
+
     public void setParams(final RequestParams params) {
     }
 
@@ -42,6 +48,22 @@ public abstract class Loader<T> {
 
     public abstract void save2Cache(final UriRequest request);
 
+    /**
+     * 由本次load()的结果生成缓存实体但不保存, 用于把结果复制给合并的相同请求.
+     * 在当前线程中同步执行save2Cache(request); 不支持缓存的loader返回null.
+     */
+    public DiskCacheEntity createCacheSnapshot(final UriRequest request) {
+        DiskCacheEntity[] holder = new DiskCacheEntity[1];
+        DiskCacheEntity[] outer = SNAPSHOT_HOLDER.get();
+        SNAPSHOT_HOLDER.set(holder);
+        try {
+            save2Cache(request);
+            return holder[0];
+        } finally {
+            SNAPSHOT_HOLDER.set(outer);
+        }
+    }
+
     private void saveCacheInternal(UriRequest request, String resultStr, byte[] resultData) {
         if (!TextUtils.isEmpty(resultStr) || (resultData != null && resultData.length > 0)) {
             DiskCacheEntity entity = new DiskCacheEntity();
@@ -50,8 +72,24 @@ public abstract class Loader<T> {
             entity.setEtag(request.getETag());
             entity.setExpires(request.getExpiration());
             entity.setLastModify(new Date(request.getLastModified()));
-            entity.setTextContent(resultStr);
-            entity.setBytesContent(resultData);
+            request.prepareCacheEntity(entity);
+            byte[] compressedBody = request.getCompressedBody();
+            if (compressedBody != null && compressedBody.length > 0) {
+                // 保存压缩的原始数据, 读取缓存时由HttpRequest解压.
+                entity.setBytesContent(compressedBody);
+                entity.setContentEncoding(request.getContentEncoding());
+                if (resultStr != null) {
+                    entity.setContentCharset(request.getParams().getCharset());
+                }
+            } else {
+                entity.setTextContent(resultStr);
+                entity.setBytesContent(resultData);
+            }
+            DiskCacheEntity[] holder = SNAPSHOT_HOLDER.get();
+            if (holder != null) {
+                holder[0] = entity;
+                return;
+            }
             LruDiskCache.getDiskCache(request.getParams().getCacheDirName()).put(entity);
         }
     }
@@ -1,6 +1,8 @@
 package org.xutils.http.loader;
 
 
+import android.util.JsonReader;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -30,6 +32,7 @@ public final class LoaderFactory {
         converterHashMap.put(File.class, new FileLoader());
         converterHashMap.put(byte[].class, new ByteArrayLoader());
         converterHashMap.put(InputStream.class, new InputStreamLoader());
+        converterHashMap.put(JsonReader.class, new JsonReaderLoader());
 
         BooleanLoader booleanLoader = new BooleanLoader();
         converterHashMap.put(boolean.class, booleanLoader);
@@ -1,6 +1,9 @@
 package org.xutils.http.loader;
 
+import android.util.JsonReader;
+
 import org.xutils.cache.DiskCacheEntity;
+import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.ParameterizedTypeUtil;
 import org.xutils.http.RequestParams;
 import org.xutils.http.annotation.HttpResponse;
@@ -88,18 +91,35 @@ import java.util.List;
     public Object load(final UriRequest request) throws Throwable {
         request.setResponseParser(parser);
         Object innerLoaderResult = innerLoader.load(request);
-        return parser.parse(objectType, objectClass, innerLoaderResult);
+        try {
+            return parser.parse(objectType, objectClass, innerLoaderResult);
+        } finally {
+            if (innerLoaderResult instanceof JsonReader) {
+                IOUtil.closeQuietly((JsonReader) innerLoaderResult);
+            }
+        }
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public Object loadFromCache(final DiskCacheEntity cacheEntity) throws Throwable {
         Object innerLoaderResult = innerLoader.loadFromCache(cacheEntity);
-        return parser.parse(objectType, objectClass, innerLoaderResult);
+        try {
+            return parser.parse(objectType, objectClass, innerLoaderResult);
+        } finally {
+            if (innerLoaderResult instanceof JsonReader) {
+                IOUtil.closeQuietly((JsonReader) innerLoaderResult);
+            }
+        }
     }
 
     @Override
     public void save2Cache(UriRequest request) {
         innerLoader.save2Cache(request);
     }
+
+    @Override
+    public DiskCacheEntity createCacheSnapshot(UriRequest request) {
+        return innerLoader.createCacheSnapshot(request);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,527 @@
+package org.xutils.http.loader;
+
+import android.text.TextUtils;
+
+import org.xutils.common.Callback;
+import org.xutils.common.task.PriorityExecutor;
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+import org.xutils.ex.HttpException;
+import org.xutils.http.ProgressHandler;
+import org.xutils.http.request.HttpConnection;
+import org.xutils.http.request.HttpRequest;
+import org.xutils.http.request.UriRequest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分段并行下载: 文件被分成多段, 通过多个Range连接同时写入预分配的临时文件.
+ * 每段的下载位置保存在状态文件中, 断点续传时每段从各自的位置继续.
+ * <p>
+ * 临时文件: saveFilePath + ".seg.tmp", 状态文件: saveFilePath + ".seg.cfg".
+ * 预分配的文件长度不代表已下载的长度, 所以不和单连接下载的临时文件(.tmp)混用.
+ */
+/*package*/ final class SegmentDownloader {
+
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int MAX_SEGMENT_RETRY = 2;
+    private static final long SAVE_STATE_INTERVAL = 1000;
+    private static final long PROGRESS_INTERVAL = 300;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String STATE_VERSION = "1";
+
+    // 下载其他段的线程, 第一段和领取不到线程的段由下载任务所在的线程完成.
+    private static final PriorityExecutor EXECUTOR = new PriorityExecutor(10, true);
+
+    private final File dataFile;
+    private final File stateFile;
+    private final int segmentCount;
+
+    private long totalLength;
+    private String validator;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private Segment firstSegment; // 由主请求的响应下载的段
+
+    private final Object lock = new Object();
+    private final List<HttpConnection> openConnections = new ArrayList<HttpConnection>();
+    private HttpRequest request;
+    private FileChannel channel;
+    private ProgressHandler progressHandler;
+    private int runningWorkers;
+    private volatile boolean stopped;
+    private boolean cancelled;
+    private boolean resourceChanged;
+    private Throwable error;
+    private long lastSaveTime;
+
+    /*package*/ SegmentDownloader(String saveFilePath, int segmentCount, boolean isAutoResume) {
+        this.dataFile = new File(saveFilePath + ".seg.tmp");
+        this.stateFile = new File(saveFilePath + ".seg.cfg");
+        this.segmentCount = segmentCount;
+        if (!isAutoResume || !loadState()) {
+            discard();
+        }
+    }
+
+    /**
+     * 继续上次的分段下载时, 主请求的Range(第一个未完成的段); 否则返回null.
+     */
+    /*package*/ String getResumeRange() {
+        if (firstSegment == null) return null;
+        return "bytes=" + firstSegment.position + "-" + firstSegment.end;
+    }
+
+    /**
+     * 根据主请求的响应决定是否分段下载.
+     *
+     * @return false: 服务器不支持或文件太小, 按单连接下载.
+     * @throws RuntimeException 继续下载时文件已变化, 删除已下载的段并重试(由HttpRetryHandler处理).
+     */
+    /*package*/ boolean accept(UriRequest request, long contentLength) {
+        long[] range = parseContentRange(request.getResponseHeader("Content-Range"));
+        String validator = getValidator(request);
+        if (firstSegment != null) {
+            if (range == null || range[0] != firstSegment.position || range[2] != totalLength
+                    || (this.validator != null && !this.validator.equals(validator))) {
+                discard();
+                throw new RuntimeException("need retry");
+            }
+            return true;
+        }
+
+        // 响应被透明解压时Content-Length与文件长度不一致
+        if (segmentCount < 2 || range == null || range[0] != 0
+                || range[2] != contentLength || contentLength < MIN_SEGMENT_SIZE * 2) {
+            return false;
+        }
+
+        this.totalLength = contentLength;
+        this.validator = validator;
+        int count = (int) Math.min(segmentCount, contentLength / MIN_SEGMENT_SIZE);
+        long segmentSize = contentLength / count;
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long end = i == count - 1 ? contentLength - 1 : start + segmentSize - 1;
+            segments.add(new Segment(start, end, start));
+        }
+        firstSegment = segments.get(0);
+        return true;
+    }
+
+    /**
+     * 下载所有未完成的段, 主请求的响应用于下载第一段.
+     *
+     * @return 下载完成的临时文件
+     */
+    /*package*/ File download(HttpRequest request, ProgressHandler progressHandler) throws Throwable {
+        this.request = request;
+        this.progressHandler = progressHandler;
+        RandomAccessFile randomAccessFile = null;
+        try {
+            File dir = dataFile.getParentFile();
+            if ((!dir.exists() && !dir.mkdirs()) || !dir.isDirectory()) {
+                throw new IOException("could not create the dir: " + dir.getAbsolutePath());
+            }
+            randomAccessFile = new RandomAccessFile(dataFile, "rw");
+            if (randomAccessFile.length() != totalLength) {
+                randomAccessFile.setLength(totalLength);
+            }
+            channel = randomAccessFile.getChannel();
+            saveState();
+
+            if (!updateProgress(true)) {
+                throw new Callback.CancelledException("download stopped!");
+            }
+
+            firstSegment.taken = true;
+            int workers = Math.min(segmentCount, getUnfinishedCount()) - 1;
+            synchronized (lock) {
+                runningWorkers = workers;
+            }
+            for (int i = 0; i < workers; i++) {
+                EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWorker();
+                    }
+                });
+            }
+
+            InputStream in = null;
+            try {
+                in = request.getInputStream();
+                readSegment(firstSegment, in, true);
+                releaseSegment(firstSegment);
+            } catch (Throwable ex) {
+                onSegmentError(firstSegment, ex);
+            } finally {
+                IOUtil.closeQuietly(in);
+            }
+            Segment segment;
+            while ((segment = takeSegment()) != null) {
+                downloadSegment(segment, true);
+            }
+
+            // 等待其他线程完成
+            while (true) {
+                synchronized (lock) {
+                    if (runningWorkers <= 0) break;
+                    try {
+                        lock.wait(PROGRESS_INTERVAL);
+                    } catch (InterruptedException ex) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+                if (!updateProgress(false)) {
+                    cancel();
+                }
+                saveStateIfNeeded();
+            }
+
+            boolean isCancelled;
+            Throwable ex;
+            synchronized (lock) {
+                isCancelled = cancelled;
+                ex = error;
+            }
+            if (isCancelled) {
+                stop();
+                throw new Callback.CancelledException("download stopped!");
+            }
+            if (ex != null) {
+                throw ex;
+            }
+            if (getUnfinishedCount() > 0) {
+                throw new IOException("segments not finished: " + dataFile.getAbsolutePath());
+            }
+
+            IOUtil.closeQuietly(randomAccessFile);
+            randomAccessFile = null;
+            IOUtil.deleteFileOrDir(stateFile);
+            updateProgress(true);
+            return dataFile;
+        } finally {
+            if (randomAccessFile != null) {
+                if (resourceChanged) {
+                    IOUtil.closeQuietly(randomAccessFile);
+                    discard();
+                } else {
+                    saveState();
+                    IOUtil.closeQuietly(randomAccessFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除已下载的段和状态文件, 从头开始.
+     */
+    /*package*/ void discard() {
+        segments.clear();
+        firstSegment = null;
+        validator = null;
+        totalLength = 0;
+        IOUtil.deleteFileOrDir(dataFile);
+        IOUtil.deleteFileOrDir(stateFile);
+    }
+
+    private void runWorker() {
+        try {
+            Segment segment;
+            while ((segment = takeSegment()) != null) {
+                downloadSegment(segment, false);
+            }
+        } finally {
+            synchronized (lock) {
+                runningWorkers--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void downloadSegment(Segment segment, boolean reporter) {
+        HttpConnection connection = null;
+        InputStream in = null;
+        try {
+            connection = request.openRangeConnection(segment.position, segment.end, validator);
+            synchronized (lock) {
+                openConnections.add(connection);
+            }
+            int code = connection.getResponseCode();
+            if (code == 200) { // 文件已变化或不再支持Range
+                synchronized (lock) {
+                    resourceChanged = true;
+                }
+                throw new RuntimeException("need retry");
+            } else if (code != 206) {
+                throw new HttpException(code, connection.getResponseMessage());
+            }
+            long[] range = parseContentRange(connection.getHeaderField("Content-Range"));
+            if (range == null || range[0] != segment.position) {
+                throw new IOException("unexpected Content-Range: " + connection.getHeaderField("Content-Range"));
+            }
+            in = connection.getInputStream();
+            readSegment(segment, in, reporter);
+            releaseSegment(segment);
+        } catch (Throwable ex) {
+            onSegmentError(segment, ex);
+        } finally {
+            IOUtil.closeQuietly(in);
+            if (connection != null) {
+                synchronized (lock) {
+                    openConnections.remove(connection);
+                }
+                connection.disconnect();
+            }
+        }
+    }
+
+    private void readSegment(Segment segment, InputStream in, boolean reporter) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        while (!stopped && segment.position <= segment.end) {
+            int len = in.read(buffer, 0, (int) Math.min(buffer.length, segment.end - segment.position + 1));
+            if (len == -1) {
+                throw new IOException("unexpected end of segment: " + segment.position + "/" + segment.end);
+            }
+            byteBuffer.clear();
+            byteBuffer.limit(len);
+            long position = segment.position;
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+            segment.position = position;
+
+            // 只在下载任务所在的线程回调进度和保存状态
+            if (reporter) {
+                if (!updateProgress(false)) {
+                    cancel();
+                    break;
+                }
+                saveStateIfNeeded();
+            }
+        }
+    }
+
+    private Segment takeSegment() {
+        synchronized (lock) {
+            if (stopped) return null;
+            for (Segment segment : segments) {
+                if (!segment.taken && segment.position <= segment.end) {
+                    segment.taken = true;
+                    return segment;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void releaseSegment(Segment segment) {
+        synchronized (lock) {
+            segment.taken = false;
+        }
+    }
+
+    private void onSegmentError(Segment segment, Throwable ex) {
+        synchronized (lock) {
+            segment.taken = false;
+            if (stopped) return;
+            if (!resourceChanged && ++segment.failures <= MAX_SEGMENT_RETRY) {
+                LogUtil.w("retry segment: " + segment.position + "-" + segment.end, ex);
+                return;
+            }
+            error = ex;
+        }
+        stop();
+    }
+
+    private void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+        }
+        stop();
+    }
+
+    /**
+     * 停止所有段的下载, 断开正在读取的连接.
+     */
+    private void stop() {
+        List<HttpConnection> connections;
+        synchronized (lock) {
+            stopped = true;
+            connections = new ArrayList<HttpConnection>(openConnections);
+            lock.notifyAll();
+        }
+        for (HttpConnection connection : connections) {
+            try {
+                connection.disconnect();
+            } catch (Throwable ignored) {
+            }
+        }
+    }
+
+    private boolean updateProgress(boolean forceUpdateUI) {
+        return progressHandler == null
+                || progressHandler.updateProgress(totalLength, getDownloadedLength(), forceUpdateUI);
+    }
+
+    private long getDownloadedLength() {
+        long result = 0;
+        for (Segment segment : segments) {
+            result += segment.position - segment.start;
+        }
+        return result;
+    }
+
+    private int getUnfinishedCount() {
+        int result = 0;
+        for (Segment segment : segments) {
+            if (segment.position <= segment.end) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private void saveStateIfNeeded() {
+        if (System.currentTimeMillis() - lastSaveTime >= SAVE_STATE_INTERVAL) {
+            saveState();
+        }
+    }
+
+    /**
+     * 先记录各段的位置再把数据写到磁盘, 保存的位置不会超过已写入的数据.
+     */
+    private void saveState() {
+        lastSaveTime = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder();
+        builder.append(STATE_VERSION).append('\n')
+                .append(totalLength).append('\n')
+                .append(validator == null ? "" : validator).append('\n');
+        for (Segment segment : segments) {
+            builder.append(segment.start).append(' ')
+                    .append(segment.end).append(' ')
+                    .append(segment.position).append('\n');
+        }
+
+        File tempFile = new File(stateFile.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+            out = new FileOutputStream(tempFile);
+            IOUtil.writeStr(out, builder.toString(), "UTF-8");
+            out.flush();
+            IOUtil.closeQuietly(out);
+            out = null;
+            if (!tempFile.renameTo(stateFile)) {
+                throw new IOException("rename failed: " + stateFile.getAbsolutePath());
+            }
+        } catch (Throwable ex) {
+            LogUtil.w(ex.getMessage(), ex);
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    private boolean loadState() {
+        if (!stateFile.exists() || !dataFile.exists()) return false;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(stateFile);
+            String[] lines = IOUtil.readStr(in, "UTF-8").split("\n");
+            if (lines.length < 4 || !STATE_VERSION.equals(lines[0])) return false;
+            totalLength = Long.parseLong(lines[1]);
+            validator = TextUtils.isEmpty(lines[2]) ? null : lines[2];
+            if (totalLength <= 0 || dataFile.length() != totalLength) return false;
+
+            long expectedStart = 0;
+            for (int i = 3; i < lines.length; i++) {
+                String[] items = lines[i].split(" ");
+                long start = Long.parseLong(items[0]);
+                long end = Long.parseLong(items[1]);
+                long position = Long.parseLong(items[2]);
+                if (start != expectedStart || end < start || position < start || position > end + 1) {
+                    return false;
+                }
+                segments.add(new Segment(start, end, position));
+                expectedStart = end + 1;
+            }
+            if (expectedStart != totalLength) return false;
+
+            for (Segment segment : segments) {
+                if (segment.position <= segment.end) {
+                    firstSegment = segment;
+                    break;
+                }
+            }
+            return firstSegment != null;
+        } catch (Throwable ex) {
+            LogUtil.w(ex.getMessage(), ex);
+            return false;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * If-Range只能使用强校验的ETag, 否则使用Last-Modified.
+     */
+    private static String getValidator(UriRequest request) {
+        String etag = request.getETag();
+        if (!TextUtils.isEmpty(etag) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        String lastModified = request.getResponseHeader("Last-Modified");
+        return TextUtils.isEmpty(lastModified) ? null : lastModified;
+    }
+
+    /**
+     * bytes start-end/total
+     *
+     * @return {start, end, total}, total未知时为-1; 格式不正确时返回null.
+     */
+    /*package*/ static long[] parseContentRange(String contentRange) {
+        if (contentRange == null) return null;
+        String value = contentRange.trim();
+        if (!value.startsWith("bytes")) return null;
+        value = value.substring(5).trim();
+        int dashIndex = value.indexOf('-');
+        int slashIndex = value.indexOf('/');
+        if (dashIndex <= 0 || slashIndex < dashIndex) return null;
+        try {
+            long start = Long.parseLong(value.substring(0, dashIndex).trim());
+            long end = Long.parseLong(value.substring(dashIndex + 1, slashIndex).trim());
+            String totalStr = value.substring(slashIndex + 1).trim();
+            long total = "*".equals(totalStr) ? -1 : Long.parseLong(totalStr);
+            return new long[]{start, end, total};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        private final long start;
+        private final long end; // 包含
+        private volatile long position; // 下一个要写入的位置
+        private boolean taken;
+        private int failures;
+
+        private Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.xutils.http.request.UriRequest;
 
     @Override
     public String load(final UriRequest request) throws Throwable {
+        request.setKeepCompressedBody(true);
         request.sendRequest();
         resultStr = IOUtil.readStr(request.getInputStream(), charset);
         return resultStr;
@@ -0,0 +1,67 @@
+package org.xutils.http.request;
+
+import android.text.TextUtils;
+
+import java.util.StringTokenizer;
+
+/**
+ * Cache-Control头中与私有缓存相关的指令.
+ * 时间单位为秒, 没有该指令时为-1.
+ */
+/*package*/ final class CacheControl {
+
+    /*package*/ boolean noStore;
+    /*package*/ boolean noCache;
+    /*package*/ boolean mustRevalidate;
+    /*package*/ long maxAge = -1;
+    /*package*/ long staleWhileRevalidate = -1;
+    /*package*/ long staleIfError = -1;
+
+    private CacheControl() {
+    }
+
+    /*package*/ static CacheControl parse(String headerValue) {
+        CacheControl result = new CacheControl();
+        if (TextUtils.isEmpty(headerValue)) return result;
+
+        StringTokenizer tok = new StringTokenizer(headerValue, ",");
+        while (tok.hasMoreTokens()) {
+            String token = tok.nextToken().trim().toLowerCase();
+            String name = token;
+            String value = null;
+            int eqIdx = token.indexOf('=');
+            if (eqIdx > 0) {
+                name = token.substring(0, eqIdx).trim();
+                value = token.substring(eqIdx + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+            }
+
+            if ("no-store".equals(name)) {
+                result.noStore = true;
+            } else if ("no-cache".equals(name)) {
+                result.noCache = true;
+            } else if ("must-revalidate".equals(name) || "proxy-revalidate".equals(name)) {
+                result.mustRevalidate = true;
+            } else if ("max-age".equals(name)) {
+                result.maxAge = parseSeconds(value);
+            } else if ("stale-while-revalidate".equals(name)) {
+                result.staleWhileRevalidate = parseSeconds(value);
+            } else if ("stale-if-error".equals(name)) {
+                result.staleIfError = parseSeconds(value);
+            }
+        }
+        return result;
+    }
+
+    private static long parseSeconds(String value) {
+        if (TextUtils.isEmpty(value)) return -1;
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds < 0 ? -1 : seconds;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
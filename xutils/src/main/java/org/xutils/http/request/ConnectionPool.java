@@ -0,0 +1,165 @@
+package org.xutils.http.request;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * {@link PooledHttpTransport}的空闲连接池.
+ * 按目标地址(协议, host, 端口, 代理, SSL配置)分组, 每组最多保留maxIdlePerRoute个空闲连接,
+ * 空闲超过keepAliveMillis的连接在下次访问连接池时关闭.
+ */
+public final class ConnectionPool {
+
+    private final int maxIdlePerRoute;
+    private final long keepAliveMillis;
+    /**
+     * 每组中最近放回的连接在头部
+     */
+    private final HashMap<String, LinkedList<RealConnection>> idleMap =
+            new HashMap<String, LinkedList<RealConnection>>();
+    private int idleCount = 0;
+
+    private long reuseCount = 0;
+    private long connectCount = 0;
+
+    public ConnectionPool(int maxIdlePerRoute, long keepAliveMillis) {
+        if (maxIdlePerRoute < 0) {
+            throw new IllegalArgumentException("maxIdlePerRoute < 0");
+        }
+        if (keepAliveMillis <= 0) {
+            throw new IllegalArgumentException("keepAliveMillis <= 0");
+        }
+        this.maxIdlePerRoute = maxIdlePerRoute;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * 取出一个可用的空闲连接
+     *
+     * @return 没有可用连接时返回null
+     */
+    /*package*/ RealConnection get(String poolKey) {
+        while (true) {
+            RealConnection conn;
+            synchronized (this) {
+                evictExpired(System.currentTimeMillis());
+                LinkedList<RealConnection> list = idleMap.get(poolKey);
+                conn = list == null ? null : list.pollFirst();
+                if (conn == null) {
+                    connectCount++;
+                    return null;
+                }
+                idleCount--;
+                if (list.isEmpty()) {
+                    idleMap.remove(poolKey);
+                }
+            }
+
+            if (conn.isHealthy()) {
+                synchronized (this) {
+                    reuseCount++;
+                }
+                conn.useCount++;
+                return conn;
+            } else {
+                conn.close();
+            }
+        }
+    }
+
+    /**
+     * 放回请求完成且可以复用的连接
+     */
+    /*package*/ void put(RealConnection conn) {
+        if (maxIdlePerRoute == 0 || conn.socket.isClosed()) {
+            conn.close();
+            return;
+        }
+
+        RealConnection evicted = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            evictExpired(now);
+            conn.idleAtMillis = now;
+            LinkedList<RealConnection> list = idleMap.get(conn.poolKey);
+            if (list == null) {
+                list = new LinkedList<RealConnection>();
+                idleMap.put(conn.poolKey, list);
+            }
+            list.addFirst(conn);
+            idleCount++;
+            if (list.size() > maxIdlePerRoute) {
+                evicted = list.removeLast();
+                idleCount--;
+            }
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    /**
+     * 关闭所有空闲连接
+     */
+    public void evictAll() {
+        LinkedList<RealConnection> evicted = new LinkedList<RealConnection>();
+        synchronized (this) {
+            for (LinkedList<RealConnection> list : idleMap.values()) {
+                evicted.addAll(list);
+            }
+            idleMap.clear();
+            idleCount = 0;
+        }
+        for (RealConnection conn : evicted) {
+            conn.close();
+        }
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * 复用空闲连接的次数
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * 没有可用的空闲连接, 需要新建连接的次数
+     */
+    public synchronized long getConnectCount() {
+        return connectCount;
+    }
+
+    public int getMaxIdlePerRoute() {
+        return maxIdlePerRoute;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    // 调用者持有锁
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, LinkedList<RealConnection>>> itr = idleMap.entrySet().iterator();
+        while (itr.hasNext()) {
+            LinkedList<RealConnection> list = itr.next().getValue();
+            Iterator<RealConnection> connItr = list.iterator();
+            while (connItr.hasNext()) {
+                RealConnection conn = connItr.next();
+                if (now - conn.idleAtMillis >= keepAliveMillis) {
+                    connItr.remove();
+                    idleCount--;
+                    conn.close();
+                }
+            }
+            if (list.isEmpty()) {
+                itr.remove();
+            }
+        }
+    }
+}
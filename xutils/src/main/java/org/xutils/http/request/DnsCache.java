@@ -0,0 +1,94 @@
+package org.xutils.http.request;
+
+import android.text.TextUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+
+/**
+ * 域名解析缓存, 供{@link PooledHttpTransport}建立连接时使用.
+ * 系统接口拿不到DNS记录的TTL, 缓存时间由调用者指定(默认5分钟);
+ * 连接某个host的所有地址都失败时清除它的缓存.
+ */
+public final class DnsCache {
+
+    private static final HashMap<String, Entry> CACHE = new HashMap<String, Entry>();
+    private static volatile long defaultTtl = 1000L * 60 * 5;
+
+    private DnsCache() {
+    }
+
+    /**
+     * 设置lookup缓存解析结果的时间(ms)
+     */
+    public static void setDefaultTtl(long ttlMillis) {
+        if (ttlMillis >= 0) {
+            defaultTtl = ttlMillis;
+        }
+    }
+
+    public static long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    /**
+     * 获取host的地址, 优先使用未过期的缓存.
+     */
+    public static InetAddress[] lookup(String host) throws UnknownHostException {
+        String key = host.toLowerCase();
+        synchronized (CACHE) {
+            Entry entry = CACHE.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    return entry.addresses;
+                }
+                CACHE.remove(key);
+            }
+        }
+        return resolve(host, defaultTtl);
+    }
+
+    /**
+     * 立即解析host(不使用缓存), 结果缓存ttlMillis.
+     * 可以在启动时对即将访问的host调用, 提前完成解析.
+     */
+    public static InetAddress[] resolve(String host, long ttlMillis) throws UnknownHostException {
+        if (TextUtils.isEmpty(host)) {
+            throw new UnknownHostException("host is empty");
+        }
+        long start = System.currentTimeMillis();
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        long now = System.currentTimeMillis();
+        HostStats.obtain(host).getDns().record(now - start);
+        if (addresses != null && addresses.length > 0 && ttlMillis > 0) {
+            synchronized (CACHE) {
+                CACHE.put(host.toLowerCase(), new Entry(addresses, now + ttlMillis));
+            }
+        }
+        return addresses;
+    }
+
+    public static void evict(String host) {
+        if (TextUtils.isEmpty(host)) return;
+        synchronized (CACHE) {
+            CACHE.remove(host.toLowerCase());
+        }
+    }
+
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final InetAddress[] addresses;
+        private final long expiresAt;
+
+        private Entry(InetAddress[] addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
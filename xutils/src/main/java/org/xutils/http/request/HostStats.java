@@ -0,0 +1,114 @@
+package org.xutils.http.request;
+
+import android.text.TextUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个host的网络耗时统计: 域名解析, tcp连接, tls握手和首字节时间(TTFB, 请求发送完到收到响应行).
+ * 域名解析时间由{@link DnsCache}记录; 首字节时间由{@link PooledHttpTransport}和{@link UrlConnectionTransport}记录,
+ * tcp连接和tls握手时间只有使用PooledHttpTransport时才有记录.
+ */
+public final class HostStats {
+
+    private static final ConcurrentHashMap<String, HostStats> STATS_MAP =
+            new ConcurrentHashMap<String, HostStats>();
+
+    private final String host;
+    private final Timing dns = new Timing();
+    private final Timing connect = new Timing();
+    private final Timing tls = new Timing();
+    private final Timing ttfb = new Timing();
+
+    private HostStats(String host) {
+        this.host = host;
+    }
+
+    /**
+     * @return 没有记录时返回null
+     */
+    public static HostStats get(String host) {
+        if (TextUtils.isEmpty(host)) return null;
+        return STATS_MAP.get(host.toLowerCase());
+    }
+
+    public static Map<String, HostStats> getAll() {
+        return new HashMap<String, HostStats>(STATS_MAP);
+    }
+
+    public static void clear() {
+        STATS_MAP.clear();
+    }
+
+    /*package*/ static HostStats obtain(String host) {
+        String key = host.toLowerCase();
+        HostStats stats = STATS_MAP.get(key);
+        if (stats == null) {
+            stats = new HostStats(key);
+            HostStats old = STATS_MAP.putIfAbsent(key, stats);
+            if (old != null) {
+                stats = old;
+            }
+        }
+        return stats;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Timing getDns() {
+        return dns;
+    }
+
+    public Timing getConnect() {
+        return connect;
+    }
+
+    public Timing getTls() {
+        return tls;
+    }
+
+    public Timing getTtfb() {
+        return ttfb;
+    }
+
+    @Override
+    public String toString() {
+        return host + " {dns=" + dns + ", connect=" + connect + ", tls=" + tls + ", ttfb=" + ttfb + "}";
+    }
+
+    /**
+     * 一项耗时的次数, 最近一次和平均值(ms)
+     */
+    public static final class Timing {
+        private long count;
+        private long totalMillis;
+        private long lastMillis;
+
+        /*package*/ synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            lastMillis = millis;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getLastMillis() {
+            return lastMillis;
+        }
+
+        public synchronized long getAverageMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "last:" + lastMillis + "ms avg:" + getAverageMillis() + "ms n:" + count;
+        }
+    }
+}
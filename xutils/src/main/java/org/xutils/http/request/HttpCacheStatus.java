@@ -0,0 +1,62 @@
+package org.xutils.http.request;
+
+import org.xutils.cache.DiskCacheEntity;
+
+/**
+ * HTTP缓存模式下缓存的新鲜度(RFC 7234), 各时间点为毫秒时间戳.
+ */
+public final class HttpCacheStatus {
+
+    private final long freshUntil;
+    private final long staleWhileRevalidateUntil;
+    private final long staleIfErrorUntil;
+
+    public HttpCacheStatus(long freshUntil, long staleWhileRevalidateUntil, long staleIfErrorUntil) {
+        this.freshUntil = freshUntil;
+        this.staleWhileRevalidateUntil = staleWhileRevalidateUntil;
+        this.staleIfErrorUntil = staleIfErrorUntil;
+    }
+
+    /*package*/ HttpCacheStatus(DiskCacheEntity entity) {
+        this(entity.getFreshUntil(), entity.getStaleWhileRevalidateUntil(), entity.getStaleIfErrorUntil());
+    }
+
+    /*package*/ void applyTo(DiskCacheEntity entity) {
+        entity.setFreshUntil(freshUntil);
+        entity.setStaleWhileRevalidateUntil(staleWhileRevalidateUntil);
+        entity.setStaleIfErrorUntil(staleIfErrorUntil);
+    }
+
+    /**
+     * 缓存是新鲜的, 可以不访问网络直接使用.
+     */
+    public boolean isFresh() {
+        return System.currentTimeMillis() < freshUntil;
+    }
+
+    /**
+     * 缓存已过期, 但可以先使用, 同时在后台验证.
+     */
+    public boolean isStaleWhileRevalidate() {
+        return System.currentTimeMillis() < staleWhileRevalidateUntil;
+    }
+
+    /**
+     * 请求出错时可以使用过期的缓存.
+     */
+    public boolean isStaleIfError() {
+        return System.currentTimeMillis() < staleIfErrorUntil;
+    }
+
+    public long getFreshUntil() {
+        return freshUntil;
+    }
+
+    public long getStaleWhileRevalidateUntil() {
+        return staleWhileRevalidateUntil;
+    }
+
+    public long getStaleIfErrorUntil() {
+        return staleIfErrorUntil;
+    }
+}
@@ -0,0 +1,59 @@
+package org.xutils.http.request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由{@link HttpTransport}创建的一次http请求的连接,
+ * 方法的含义与HttpURLConnection的同名方法相同.
+ */
+public abstract class HttpConnection {
+
+    /**
+     * 重定向后为最终的地址
+     */
+    public abstract URL getURL();
+
+    public abstract void setRequestMethod(String method) throws IOException;
+
+    /**
+     * value为空时移除该请求头
+     */
+    public abstract void setRequestProperty(String name, String value);
+
+    public abstract void addRequestProperty(String name, String value);
+
+    public abstract void setFixedLengthStreamingMode(long contentLength);
+
+    public abstract void setChunkedStreamingMode(int chunkLength);
+
+    /**
+     * 发送请求头, 并返回写入请求体的流.
+     */
+    public abstract OutputStream getOutputStream() throws IOException;
+
+    public abstract int getResponseCode() throws IOException;
+
+    public abstract String getResponseMessage() throws IOException;
+
+    public abstract InputStream getInputStream() throws IOException;
+
+    public abstract InputStream getErrorStream();
+
+    public abstract String getHeaderField(String name);
+
+    public abstract Map<String, List<String>> getHeaderFields();
+
+    public abstract long getHeaderFieldDate(String name, long defaultValue);
+
+    public abstract long getExpiration();
+
+    /**
+     * 关闭连接, 可以复用的连接会被放回连接池.
+     */
+    public abstract void disconnect();
+}
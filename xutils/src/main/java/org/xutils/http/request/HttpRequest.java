@@ -1,6 +1,5 @@
 package org.xutils.http.request;
 
-import android.annotation.TargetApi;
 import android.os.Build;
 import android.text.TextUtils;
 import org.xutils.cache.DiskCacheEntity;
@@ -11,16 +10,18 @@ import org.xutils.common.util.LogUtil;
 import org.xutils.ex.HttpException;
 import org.xutils.http.HttpMethod;
 import org.xutils.http.RequestParams;
+import org.xutils.http.app.ContentDecoder;
 import org.xutils.http.body.ProgressBody;
 import org.xutils.http.body.RequestBody;
 import org.xutils.http.cookie.DbCookieStore;
+import org.xutils.http.loader.FileLoader;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLSocketFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.io.PushbackInputStream;
 import java.lang.reflect.Type;
 import java.net.*;
 import java.text.SimpleDateFormat;
@@ -35,9 +36,22 @@ public class HttpRequest extends UriRequest {
     private String cacheKey = null;
     private boolean isLoading = false;
     private InputStream inputStream = null;
-    private HttpURLConnection connection = null;
+    private HttpConnection connection = null;
     private int responseCode = 0;
 
+    // 响应压缩
+    private boolean acceptEncodingSent = false;
+    private boolean keepCompressedBody = false;
+    private String contentEncoding = null;
+    private RecordingInputStream compressedBody = null;
+
+    // HTTP缓存模式
+    private static final String VARY_KEY_PREFIX = "vary|";
+    private String varyNames = null; // 缓存记录的Vary请求头
+    private boolean varyNamesLoaded = false;
+    private HttpCacheStatus cacheStatus = null; // loadResultFromCache读取到的缓存状态
+    private HttpCacheStatus responseCacheStatus = null; // 由本次响应计算的缓存状态
+
     // cookie manager
     private static final CookieManager COOKIE_MANAGER =
             new CookieManager(DbCookieStore.INSTANCE, CookiePolicy.ACCEPT_ALL);
@@ -99,68 +113,26 @@ public class HttpRequest extends UriRequest {
      * invoke via Loader
      */
     @Override
-    @TargetApi(Build.VERSION_CODES.KITKAT)
     public void sendRequest() throws Throwable {
         isLoading = false;
         responseCode = 0;
+        acceptEncodingSent = false;
+        contentEncoding = null;
+        compressedBody = null;
+        responseCacheStatus = null;
 
         URL url = new URL(queryUrl);
-        { // init connection
-            Proxy proxy = params.getProxy();
-            if (proxy != null) {
-                connection = (HttpURLConnection) url.openConnection(proxy);
-            } else {
-                connection = (HttpURLConnection) url.openConnection();
-            }
-
-            // try to fix bug: accidental EOFException before API 19
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
-                connection.setRequestProperty("Connection", "close");
-            }
-
-            connection.setReadTimeout(params.getReadTimeout());
-            connection.setConnectTimeout(params.getConnectTimeout());
-            connection.setInstanceFollowRedirects(params.getRedirectHandler() == null);
-            if (connection instanceof HttpsURLConnection) {
-                SSLSocketFactory sslSocketFactory = params.getSslSocketFactory();
-                if (sslSocketFactory != null) {
-                    ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
-                }
+        // init connection
+        connection = UriRequestFactory.getHttpTransport().openConnection(url, params);
 
-                HostnameVerifier hostnameVerifier = params.getHostnameVerifier();
-                if (hostnameVerifier != null) {
-                    ((HttpsURLConnection) connection).setHostnameVerifier(hostnameVerifier);
-                }
-            }
-        }
-
-        if (params.isUseCookie()) {// add cookies
-            try {
-                Map<String, List<String>> singleMap =
-                        COOKIE_MANAGER.get(url.toURI(), new HashMap<String, List<String>>(0));
-                List<String> cookies = singleMap.get("Cookie");
-                if (cookies != null) {
-                    connection.setRequestProperty("Cookie", TextUtils.join(";", cookies));
-                }
-            } catch (Throwable ex) {
-                LogUtil.e(ex.getMessage(), ex);
-            }
-        }
+        addCookiesAndHeaders(connection, url);
 
-        {// add headers
-            List<RequestParams.Header> headers = params.getHeaders();
-            if (headers != null) {
-                for (RequestParams.Header header : headers) {
-                    String name = header.key;
-                    String value = header.getValueStrOrNull();
-                    if (!TextUtils.isEmpty(name)) {
-                        if (header.setHeader) {
-                            connection.setRequestProperty(name, value);
-                        } else {
-                            connection.addRequestProperty(name, value);
-                        }
-                    }
-                }
+        // 请求压缩的响应, 由getInputStream解压.
+        if (params.isAcceptCompressed() && !hasHeader("Accept-Encoding") && !hasHeader("Range")) {
+            String acceptEncoding = UriRequestFactory.getAcceptEncoding();
+            if (acceptEncoding != null) {
+                connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+                acceptEncodingSent = true;
             }
         }
 
@@ -174,17 +146,7 @@ public class HttpRequest extends UriRequest {
 
         { // write body
             HttpMethod method = params.getMethod();
-            try {
-                connection.setRequestMethod(method.toString());
-            } catch (ProtocolException ex) {
-                try { // fix: HttpURLConnection not support PATCH method.
-                    Field methodField = HttpURLConnection.class.getDeclaredField("method");
-                    methodField.setAccessible(true);
-                    methodField.set(connection, method.toString());
-                } catch (Throwable ignored) {
-                    throw ex;
-                }
-            }
+            connection.setRequestMethod(method.toString());
             if (HttpMethod.permitsRequestBody(method)) {
                 RequestBody body = params.getRequestBody();
                 if (body != null) {
@@ -201,9 +163,8 @@ public class HttpRequest extends UriRequest {
                         connection.setChunkedStreamingMode(256 * 1024);
                         isChunkedMode = true;
                     } else {
-                        if (contentLength < Integer.MAX_VALUE) {
-                            connection.setFixedLengthStreamingMode((int) contentLength);
-                        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                        if (contentLength < Integer.MAX_VALUE
+                                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
                             connection.setFixedLengthStreamingMode(contentLength);
                         } else {
                             connection.setChunkedStreamingMode(256 * 1024);
@@ -217,7 +178,6 @@ public class HttpRequest extends UriRequest {
                         connection.setRequestProperty("Content-Length", String.valueOf(contentLength));
                     }
 
-                    connection.setDoOutput(true);
                     body.writeTo(connection.getOutputStream());
                 }
             }
@@ -267,6 +227,22 @@ public class HttpRequest extends UriRequest {
 
     @Override
     public String getCacheKey() {
+        String cacheKey = getBaseCacheKey();
+        if (isHttpCacheMode()) {
+            // 响应有Vary时, 按Vary列出的请求头的值区分缓存.
+            String names = getVaryNames();
+            if (!TextUtils.isEmpty(names)) {
+                StringBuilder builder = new StringBuilder(cacheKey).append("|vary|");
+                for (String name : names.split(",")) {
+                    builder.append(name).append('=').append(getRequestHeader(name)).append(';');
+                }
+                return builder.toString();
+            }
+        }
+        return cacheKey;
+    }
+
+    private String getBaseCacheKey() {
         if (cacheKey == null) {
 
             cacheKey = params.getCacheKey();
@@ -290,10 +266,19 @@ public class HttpRequest extends UriRequest {
     @Override
     public Object loadResultFromCache() throws Throwable {
         isLoading = true;
+        cacheStatus = null;
+        boolean httpCacheMode = isHttpCacheMode();
+        if (httpCacheMode && CacheControl.parse(getRequestHeader("cache-control")).noStore) {
+            return null;
+        }
         DiskCacheEntity cacheEntity = LruDiskCache.getDiskCache(params.getCacheDirName())
                 .setMaxSize(params.getCacheSize())
                 .get(this.getCacheKey());
 
+        if (cacheEntity != null) {
+            cacheEntity = decodeCacheEntity(cacheEntity);
+        }
+
         if (cacheEntity != null) {
             if (HttpMethod.permitsCache(params.getMethod())) {
                 Date lastModified = cacheEntity.getLastModify();
@@ -305,12 +290,211 @@ public class HttpRequest extends UriRequest {
                     params.setHeader("If-None-Match", eTag);
                 }
             }
+            if (httpCacheMode) {
+                // 请求要求验证(no-cache, max-age=0)时不使用新鲜度
+                CacheControl requestCacheControl = CacheControl.parse(getRequestHeader("cache-control"));
+                if (requestCacheControl.noCache || requestCacheControl.maxAge == 0
+                        || "no-cache".equalsIgnoreCase(getRequestHeader("pragma"))) {
+                    cacheStatus = new HttpCacheStatus(0, 0, cacheEntity.getStaleIfErrorUntil());
+                } else {
+                    cacheStatus = new HttpCacheStatus(cacheEntity);
+                }
+            }
             return loader.loadFromCache(cacheEntity);
         } else {
             return null;
         }
     }
 
+    @Override
+    public HttpCacheStatus getHttpCacheStatus() {
+        return cacheStatus;
+    }
+
+    @Override
+    public void prepareCacheEntity(DiskCacheEntity entity) {
+        if (!isHttpCacheMode()) return;
+        HttpCacheStatus status = getResponseCacheStatus();
+        if (status != null) {
+            status.applyTo(entity);
+        }
+
+        // 记录Vary, 下次读取缓存时据此生成缓存key.
+        String vary = connection == null ? null : connection.getHeaderField("Vary");
+        if (vary != null) {
+            String names = normalizeVary(vary);
+            getVaryNames(); // 加载已记录的Vary
+            if (!TextUtils.isEmpty(names) && !"*".equals(names) && !names.equals(varyNames)) {
+                DiskCacheEntity varyEntity = new DiskCacheEntity();
+                varyEntity.setKey(VARY_KEY_PREFIX + getBaseCacheKey());
+                varyEntity.setTextContent(names);
+                varyEntity.setLastAccess(System.currentTimeMillis());
+                LruDiskCache.getDiskCache(params.getCacheDirName()).put(varyEntity);
+                varyNames = names;
+            }
+        }
+    }
+
+    @Override
+    public void updateCacheOnNotModified() {
+        if (!isHttpCacheMode() || connection == null) return;
+        HttpCacheStatus status = getResponseCacheStatus();
+        if (status == null) return;
+
+        LruDiskCache diskCache = LruDiskCache.getDiskCache(params.getCacheDirName());
+        DiskCacheEntity cached = diskCache.get(getCacheKey());
+        if (cached == null) return;
+        // get()返回的是索引中共享的实体, 修改副本后再保存.
+        DiskCacheEntity entity = cached.copy();
+        status.applyTo(entity);
+        String eTag = getETag();
+        if (!TextUtils.isEmpty(eTag)) {
+            entity.setEtag(eTag);
+        }
+        entity.setLastAccess(System.currentTimeMillis());
+        diskCache.put(entity);
+    }
+
+    /**
+     * HTTP缓存模式只用于GET请求, 文件下载仍使用原来的缓存方式.
+     */
+    private boolean isHttpCacheMode() {
+        return params.isHttpCacheEnabled()
+                && HttpMethod.permitsCache(params.getMethod())
+                && !(loader instanceof FileLoader);
+    }
+
+    /**
+     * @return 响应的Vary(已规范化), 没有响应时使用缓存记录的Vary.
+     */
+    private String getVaryNames() {
+        if (responseCode > 0 && connection != null) {
+            String vary = connection.getHeaderField("Vary");
+            if (vary != null) {
+                return normalizeVary(vary);
+            }
+        }
+        if (!varyNamesLoaded) {
+            varyNamesLoaded = true;
+            DiskCacheEntity varyEntity = LruDiskCache.getDiskCache(params.getCacheDirName())
+                    .get(VARY_KEY_PREFIX + getBaseCacheKey());
+            varyNames = varyEntity == null ? null : varyEntity.getTextContent();
+        }
+        return varyNames;
+    }
+
+    // "Accept-Encoding, User-Agent" -> "accept-encoding,user-agent"
+    private static String normalizeVary(String vary) {
+        TreeSet<String> names = new TreeSet<String>();
+        for (String name : vary.split(",")) {
+            name = name.trim().toLowerCase();
+            if ("*".equals(name)) {
+                return "*";
+            } else if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        return TextUtils.join(",", names);
+    }
+
+    /**
+     * @return 本次请求会发送的请求头的值, 没有时返回空字符串.
+     */
+    private String getRequestHeader(String name) {
+        if ("cookie".equalsIgnoreCase(name) && params.isUseCookie()) {
+            try {
+                Map<String, List<String>> singleMap =
+                        COOKIE_MANAGER.get(new URI(queryUrl), new HashMap<String, List<String>>(0));
+                List<String> cookies = singleMap.get("Cookie");
+                if (cookies != null) {
+                    return TextUtils.join(";", cookies);
+                }
+            } catch (Throwable ex) {
+                LogUtil.w(ex.getMessage(), ex);
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        List<RequestParams.Header> headers = params.getHeaders();
+        if (headers != null) {
+            for (RequestParams.Header header : headers) {
+                String value = header.getValueStrOrNull();
+                if (name.equalsIgnoreCase(header.key) && value != null) {
+                    if (header.setHeader) {
+                        builder.setLength(0);
+                    } else if (builder.length() > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(value);
+                }
+            }
+        }
+        if (builder.length() == 0 && "accept-encoding".equalsIgnoreCase(name)
+                && params.isAcceptCompressed() && !hasHeader("Range")) {
+            String acceptEncoding = UriRequestFactory.getAcceptEncoding();
+            return acceptEncoding == null ? "" : acceptEncoding;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按RFC 7234计算本次响应的新鲜度.
+     *
+     * @return null: 响应不能缓存(no-store, Vary: *)
+     */
+    private HttpCacheStatus getResponseCacheStatus() {
+        if (connection == null) return null;
+        if (responseCacheStatus == null) {
+            CacheControl cacheControl = CacheControl.parse(connection.getHeaderField("Cache-Control"));
+            if (cacheControl.noStore || "*".equals(getVaryNames())
+                    || CacheControl.parse(getRequestHeader("cache-control")).noStore) {
+                return null;
+            }
+
+            long now = System.currentTimeMillis();
+            long date = connection.getHeaderFieldDate("Date", now);
+            long age = Math.max(0, now - date);
+            try {
+                String ageHeader = connection.getHeaderField("Age");
+                if (!TextUtils.isEmpty(ageHeader)) {
+                    age = Math.max(age, Long.parseLong(ageHeader.trim()) * 1000L);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+
+            long lifetime = 0;
+            if (cacheControl.maxAge >= 0) {
+                lifetime = cacheControl.maxAge * 1000L;
+            } else if (connection.getHeaderField("Expires") != null) {
+                // 无效的Expires(如"0")表示已过期
+                long expires = connection.getHeaderFieldDate("Expires", 0);
+                lifetime = expires > date ? expires - date : 0;
+            } else if (params.getCacheMaxAge() > 0) {
+                lifetime = params.getCacheMaxAge();
+            } else if (!queryUrl.contains("?")) {
+                // 启发式新鲜度: Last-Modified到现在的10%
+                long lastModified = connection.getHeaderFieldDate("Last-Modified", 0);
+                if (lastModified > 0 && date > lastModified) {
+                    lifetime = (date - lastModified) / 10;
+                }
+            }
+
+            long freshUntil = cacheControl.noCache ? now : now + lifetime - age;
+            long staleWhileRevalidateUntil = freshUntil;
+            long staleIfErrorUntil = freshUntil;
+            if (!cacheControl.noCache && !cacheControl.mustRevalidate) {
+                if (cacheControl.staleWhileRevalidate > 0) {
+                    staleWhileRevalidateUntil += cacheControl.staleWhileRevalidate * 1000L;
+                }
+                if (cacheControl.staleIfError > 0) {
+                    staleIfErrorUntil += cacheControl.staleIfError * 1000L;
+                }
+            }
+            responseCacheStatus = new HttpCacheStatus(freshUntil, staleWhileRevalidateUntil, staleIfErrorUntil);
+        }
+        return responseCacheStatus;
+    }
+
     @Override
     public void clearCacheHeader() {
         params.setHeader("If-Modified-Since", null);
@@ -320,12 +504,176 @@ public class HttpRequest extends UriRequest {
     @Override
     public InputStream getInputStream() throws IOException {
         if (connection != null && inputStream == null) {
-            inputStream = connection.getResponseCode() >= 400 ?
+            InputStream in = connection.getResponseCode() >= 400 ?
                     connection.getErrorStream() : connection.getInputStream();
+            ContentDecoder decoder = getResponseDecoder();
+            if (in != null && decoder != null) {
+                contentEncoding = connection.getHeaderField("Content-Encoding").trim().toLowerCase();
+                if (keepCompressedBody) {
+                    compressedBody = new RecordingInputStream(in);
+                    in = compressedBody;
+                }
+                in = new DecodingInputStream(in, decoder);
+            }
+            inputStream = in;
         }
         return inputStream;
     }
 
+    @Override
+    public void setKeepCompressedBody(boolean keepCompressedBody) {
+        this.keepCompressedBody = keepCompressedBody;
+    }
+
+    @Override
+    public byte[] getCompressedBody() {
+        RecordingInputStream body = compressedBody;
+        return body != null && body.eof ? body.toByteArray() : null;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return 响应使用了本次请求协商的压缩格式时返回它的解压实现
+     */
+    private ContentDecoder getResponseDecoder() {
+        if (!acceptEncodingSent || connection == null) return null;
+        return UriRequestFactory.getContentDecoder(connection.getHeaderField("Content-Encoding"));
+    }
+
+    /**
+     * 使用当前请求的地址(重定向后的)和参数, 打开一个只请求[start, end]部分数据的GET连接, 用于分段下载.
+     * 响应由调用者处理, 使用完后需要disconnect.
+     *
+     * @param ifRange 资源校验值(ETag或Last-Modified), 资源已变化时服务器返回完整内容(200).
+     */
+    public HttpConnection openRangeConnection(long start, long end, String ifRange) throws IOException {
+        URL url = new URL(getRequestUri());
+        HttpConnection rangeConnection = UriRequestFactory.getHttpTransport().openConnection(url, params);
+        addCookiesAndHeaders(rangeConnection, url);
+        rangeConnection.setRequestMethod(HttpMethod.GET.toString());
+        rangeConnection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        rangeConnection.setRequestProperty("Accept-Encoding", "identity");
+        if (!TextUtils.isEmpty(ifRange)) {
+            rangeConnection.setRequestProperty("If-Range", ifRange);
+        }
+        return rangeConnection;
+    }
+
+    @Override
+    public Object loadResultFromEntity(DiskCacheEntity entity) throws Throwable {
+        entity = decodeCacheEntity(entity);
+        return entity == null ? null : loader.loadFromCache(entity);
+    }
+
+    @Override
+    public String getRequestHeadersKey() {
+        StringBuilder builder = new StringBuilder();
+        if (params.isUseCookie()) {
+            builder.append("cookie:").append(getRequestHeader("cookie")).append('\n');
+        }
+        List<RequestParams.Header> headers = params.getHeaders();
+        if (headers != null) {
+            for (RequestParams.Header header : headers) {
+                String value = header.getValueStrOrNull();
+                if (!TextUtils.isEmpty(header.key) && value != null) {
+                    builder.append(header.setHeader ? "=" : "+")
+                            .append(header.key.toLowerCase()).append(':')
+                            .append(value).append('\n');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private void addCookiesAndHeaders(HttpConnection connection, URL url) {
+        if (params.isUseCookie()) {// add cookies
+            try {
+                Map<String, List<String>> singleMap =
+                        COOKIE_MANAGER.get(url.toURI(), new HashMap<String, List<String>>(0));
+                List<String> cookies = singleMap.get("Cookie");
+                if (cookies != null) {
+                    connection.setRequestProperty("Cookie", TextUtils.join(";", cookies));
+                }
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+
+        {// add headers
+            List<RequestParams.Header> headers = params.getHeaders();
+            if (headers != null) {
+                for (RequestParams.Header header : headers) {
+                    String name = header.key;
+                    String value = header.getValueStrOrNull();
+                    if (!TextUtils.isEmpty(name)) {
+                        if (header.setHeader) {
+                            connection.setRequestProperty(name, value);
+                        } else {
+                            connection.addRequestProperty(name, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean hasHeader(String name) {
+        List<RequestParams.Header> headers = params.getHeaders();
+        if (headers != null) {
+            for (RequestParams.Header header : headers) {
+                if (name.equalsIgnoreCase(header.key) && header.getValueStrOrNull() != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解压以压缩格式保存的缓存
+     *
+     * @return 不能解压时返回null
+     */
+    private static DiskCacheEntity decodeCacheEntity(DiskCacheEntity entity) {
+        String encoding = entity.getContentEncoding();
+        if (TextUtils.isEmpty(encoding)) return entity;
+
+        ContentDecoder decoder = UriRequestFactory.getContentDecoder(encoding);
+        byte[] data = entity.getBytesContent();
+        if (decoder == null || data == null) return null;
+
+        DiskCacheEntity result = new DiskCacheEntity();
+        result.setKey(entity.getKey());
+        result.setEtag(entity.getEtag());
+        result.setExpires(entity.getExpires());
+        result.setFreshUntil(entity.getFreshUntil());
+        result.setStaleWhileRevalidateUntil(entity.getStaleWhileRevalidateUntil());
+        result.setStaleIfErrorUntil(entity.getStaleIfErrorUntil());
+        result.setLastModify(entity.getLastModify());
+        result.setLastAccess(entity.getLastAccess());
+        result.setHits(entity.getHits());
+        InputStream in = null;
+        try {
+            in = decoder.decode(new ByteArrayInputStream(data));
+            String charset = entity.getContentCharset();
+            if (charset != null) {
+                result.setTextContent(IOUtil.readStr(in, charset));
+            } else {
+                result.setBytesContent(IOUtil.readBytes(in));
+            }
+            return result;
+        } catch (Throwable ex) {
+            LogUtil.w("decode cache error: " + encoding, ex);
+            return null;
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (inputStream != null) {
@@ -338,9 +686,15 @@ public class HttpRequest extends UriRequest {
         }
     }
 
+    /**
+     * 自动解压的响应返回-1(解压后的大小未知).
+     */
     @Override
     public long getContentLength() {
         long result = -1;
+        if (getResponseDecoder() != null) {
+            return result;
+        }
         if (connection != null) {
             try {
                 String value = connection.getHeaderField("content-length");
@@ -386,6 +740,16 @@ public class HttpRequest extends UriRequest {
     public long getExpiration() {
         if (connection == null) return -1L;
 
+        if (isHttpCacheMode()) {
+            HttpCacheStatus status = getResponseCacheStatus();
+            if (status == null) return 0L; // 不保存
+            if (!TextUtils.isEmpty(getETag()) || connection.getHeaderField("Last-Modified") != null) {
+                return Long.MAX_VALUE; // 过期后仍可用于条件请求
+            }
+            return Math.max(status.getFreshUntil(),
+                    Math.max(status.getStaleWhileRevalidateUntil(), status.getStaleIfErrorUntil()));
+        }
+
         long expiration = -1L;
 
         // from max-age
@@ -463,4 +827,113 @@ public class HttpRequest extends UriRequest {
         sdf.setTimeZone(gmtZone);
         return sdf.format(date);
     }
+
+    /**
+     * 记录读取到的原始数据
+     */
+    private static final class RecordingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        private volatile boolean eof = false;
+
+        private RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                eof = true;
+            } else {
+                buffer.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count == -1) {
+                eof = true;
+            } else {
+                buffer.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * 边读边解压; 空的响应体不创建解压流, 解压结束后读完原始流剩余的数据.
+     */
+    private static final class DecodingInputStream extends InputStream {
+        private final PushbackInputStream raw;
+        private final ContentDecoder decoder;
+        private InputStream decoded;
+        private boolean eof = false;
+
+        private DecodingInputStream(InputStream raw, ContentDecoder decoder) {
+            this.raw = new PushbackInputStream(raw, 1);
+            this.decoder = decoder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int count = read(b, 0, 1);
+            return count == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) return -1;
+            if (decoded == null) {
+                int first = raw.read();
+                if (first == -1) {
+                    eof = true;
+                    return -1;
+                }
+                raw.unread(first);
+                decoded = decoder.decode(raw);
+            }
+            int count = decoded.read(b, off, len);
+            if (count == -1) {
+                eof = true;
+                byte[] tmp = new byte[512];
+                int total = 0;
+                int n;
+                while (total < 8192 && (n = raw.read(tmp)) != -1) {
+                    total += n;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return eof || decoded == null ? 0 : decoded.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) {
+                decoded.close();
+            } else {
+                raw.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package org.xutils.http.request;
+
+import org.xutils.http.RequestParams;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * http传输层, 为HttpRequest创建连接.
+ * 默认使用{@link UrlConnectionTransport}, 可通过{@link UriRequestFactory#registerHttpTransport(HttpTransport)}替换.
+ */
+public interface HttpTransport {
+
+    /**
+     * 创建连接, 超时/代理/SSL/重定向等设置从params中获取.
+     * 返回的连接还未发送请求.
+     */
+    HttpConnection openConnection(URL url, RequestParams params) throws IOException;
+}
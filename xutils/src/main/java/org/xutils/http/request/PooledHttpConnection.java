@@ -0,0 +1,789 @@
+package org.xutils.http.request;
+
+import android.text.TextUtils;
+
+import org.xutils.http.RequestParams;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.URL;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link PooledHttpTransport}的HTTP/1.1连接.
+ * 响应体读完后连接放回连接池; 未读完就关闭时尝试读掉剩余的少量数据, 否则关闭socket.
+ */
+/*package*/ final class PooledHttpConnection extends HttpConnection {
+
+    private static final int MAX_REDIRECTS = 20;
+    private static final int MAX_DISCARD_BYTES = 64 * 1024;
+    private static final int DISCARD_TIMEOUT = 100; // ms
+    private static final String[] DATE_FORMATS = {
+            "EEE, dd MMM yyyy HH:mm:ss zzz",
+            "EEEE, dd-MMM-yy HH:mm:ss zzz",
+            "EEE MMM d HH:mm:ss yyyy"
+    };
+
+    private final PooledHttpTransport transport;
+    private final RequestParams params;
+    private final boolean followRedirects;
+
+    private URL url;
+    private String method = "GET";
+    private final ArrayList<String> requestHeaders = new ArrayList<String>(); // name, value交替存放
+    private long fixedContentLength = -1;
+    private boolean chunked = false;
+
+    private volatile RealConnection connection;
+    private OutputStream requestBodyStream;
+    private boolean transparentGzip = false;
+
+    private int responseCode = -1;
+    private String responseMessage;
+    private final LinkedHashMap<String, List<String>> responseHeaders = new LinkedHashMap<String, List<String>>();
+    private boolean keepAlive = false;
+    private boolean responseStarted = false; // 已收到响应的第一个字节
+    private BodyInputStream responseBody;
+    private InputStream decodedBody;
+
+    /*package*/ PooledHttpConnection(PooledHttpTransport transport, URL url, RequestParams params) {
+        this.transport = transport;
+        this.url = url;
+        this.params = params;
+        this.followRedirects = params.getRedirectHandler() == null;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws IOException {
+        checkNotSent();
+        this.method = method;
+    }
+
+    @Override
+    public void setRequestProperty(String name, String value) {
+        checkNotSent();
+        removeRequestHeader(name);
+        addRequestProperty(name, value);
+    }
+
+    @Override
+    public void addRequestProperty(String name, String value) {
+        checkNotSent();
+        if (TextUtils.isEmpty(name) || value == null) return;
+        requestHeaders.add(name);
+        requestHeaders.add(value);
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        checkNotSent();
+        this.fixedContentLength = contentLength;
+        this.chunked = false;
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        checkNotSent();
+        this.fixedContentLength = -1;
+        this.chunked = true;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (requestBodyStream == null) {
+            if (responseCode != -1) {
+                throw new ProtocolException("cannot write request body after response has been read");
+            }
+            writeRequestHead(true, false);
+            if (fixedContentLength >= 0) {
+                requestBodyStream = new FixedLengthOutputStream(connection.out, fixedContentLength);
+            } else {
+                requestBodyStream = new ChunkedOutputStream(connection.out);
+            }
+        }
+        return requestBodyStream;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        execute();
+        return responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        execute();
+        return responseMessage;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        execute();
+        if (decodedBody == null) {
+            if (transparentGzip && responseBody.remaining() != 0
+                    && "gzip".equalsIgnoreCase(getHeaderField("Content-Encoding"))) {
+                decodedBody = new GZIPInputStream(responseBody);
+                // 与HttpURLConnection一致, 自动解压后不再返回压缩相关的头信息.
+                removeHeader(responseHeaders, "Content-Encoding");
+                removeHeader(responseHeaders, "Content-Length");
+            } else {
+                decodedBody = responseBody;
+            }
+        }
+        return decodedBody;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        try {
+            if (responseCode >= 400) {
+                return getInputStream();
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        List<String> values = getHeaderValues(responseHeaders, name);
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return Collections.unmodifiableMap(responseHeaders);
+    }
+
+    @Override
+    public long getHeaderFieldDate(String name, long defaultValue) {
+        String value = getHeaderField(name);
+        if (value == null) return defaultValue;
+        for (String format : DATE_FORMATS) {
+            SimpleDateFormat sdf = new SimpleDateFormat(format, Locale.US);
+            sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+            Date date = sdf.parse(value, new ParsePosition(0));
+            if (date != null) {
+                return date.getTime();
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public long getExpiration() {
+        return getHeaderFieldDate("Expires", 0);
+    }
+
+    @Override
+    public void disconnect() {
+        InputStream body = decodedBody != null ? decodedBody : responseBody;
+        if (body != null) {
+            try {
+                body.close(); // 读完的响应体关闭时连接放回连接池
+            } catch (Throwable ignored) {
+            }
+        }
+        RealConnection conn = connection;
+        if (conn != null) {
+            connection = null;
+            conn.close();
+        }
+    }
+
+    private void checkNotSent() {
+        if (connection != null || responseCode != -1) {
+            throw new IllegalStateException("Already connected");
+        }
+    }
+
+    /**
+     * 发送请求(结束请求体), 读取响应头, 按需跟随重定向.
+     */
+    private void execute() throws IOException {
+        if (responseCode != -1) return;
+
+        int redirectCount = 0;
+        while (true) {
+            if (requestBodyStream != null) {
+                requestBodyStream.close();
+                readResponseHead();
+            } else {
+                sendWithoutBody();
+            }
+
+            URL redirectUrl = followRedirects ? getRedirectUrl() : null;
+            if (redirectUrl == null) {
+                break;
+            }
+            if (++redirectCount > MAX_REDIRECTS) {
+                throw new ProtocolException("Too many redirects: " + redirectCount);
+            }
+
+            // 丢弃重定向的响应体, 连接可以复用.
+            responseBody.close();
+            url = redirectUrl;
+            if (responseCode == 303 || !"HEAD".equals(method)) {
+                method = "GET";
+            }
+            removeRequestHeader("Content-Length");
+            removeRequestHeader("Content-Type");
+            removeRequestHeader("Transfer-Encoding");
+            removeRequestHeader("Host");
+            requestBodyStream = null;
+            fixedContentLength = -1;
+            chunked = false;
+            responseCode = -1;
+            responseMessage = null;
+            responseHeaders.clear();
+            responseBody = null;
+        }
+    }
+
+    /**
+     * 复用的连接可能已被服务端关闭, 没有请求体时换新连接重试一次.
+     * 只重试幂等的请求, 且连接在收到任何响应数据之前被重置或关闭(服务端没有处理这个请求).
+     */
+    private void sendWithoutBody() throws IOException {
+        boolean forceNew = false;
+        while (true) {
+            responseStarted = false;
+            writeRequestHead(false, forceNew);
+            RealConnection conn = connection;
+            try {
+                conn.out.flush();
+                readResponseHead();
+                return;
+            } catch (IOException ex) {
+                connection = null;
+                conn.close();
+                if (forceNew || conn.useCount == 0 || responseStarted
+                        || !isIdempotent(method) || !isConnectionClosed(ex)) {
+                    throw ex;
+                }
+                forceNew = true;
+            }
+        }
+    }
+
+    private static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                || "TRACE".equals(method) || "PUT".equals(method) || "DELETE".equals(method);
+    }
+
+    /**
+     * 连接被重置(SocketException, 读超时不属于此类)或被对方关闭(EOF)
+     */
+    private static boolean isConnectionClosed(IOException ex) {
+        return ex instanceof EOFException || ex instanceof SocketException;
+    }
+
+    private void writeRequestHead(boolean hasBody, boolean forceNew) throws IOException {
+        RealConnection conn = transport.obtain(url, params, forceNew);
+        connection = conn;
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(method).append(' ');
+        if (conn.viaHttpProxy) {
+            String fullUrl = url.toString();
+            int fragmentIndex = fullUrl.indexOf('#');
+            head.append(fragmentIndex > 0 ? fullUrl.substring(0, fragmentIndex) : fullUrl);
+        } else {
+            String file = url.getFile();
+            head.append(TextUtils.isEmpty(file) ? "/" : file);
+        }
+        head.append(" HTTP/1.1\r\n");
+
+        if (getRequestHeader("Host") == null) {
+            int port = url.getPort();
+            String host = url.getHost();
+            appendHeader(head, "Host", port > 0 && port != url.getDefaultPort() ? host + ":" + port : host);
+        }
+        if (getRequestHeader("User-Agent") == null) {
+            String agent = System.getProperty("http.agent");
+            if (!TextUtils.isEmpty(agent)) {
+                appendHeader(head, "User-Agent", agent);
+            }
+        }
+        transparentGzip = getRequestHeader("Accept-Encoding") == null;
+        if (transparentGzip) {
+            appendHeader(head, "Accept-Encoding", "gzip");
+        }
+        if (hasBody) {
+            if (fixedContentLength >= 0) {
+                if (getRequestHeader("Content-Length") == null) {
+                    appendHeader(head, "Content-Length", String.valueOf(fixedContentLength));
+                }
+            } else {
+                chunked = true;
+                removeRequestHeader("Content-Length");
+                if (getRequestHeader("Transfer-Encoding") == null) {
+                    appendHeader(head, "Transfer-Encoding", "chunked");
+                }
+            }
+        } else if (("POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method))
+                && getRequestHeader("Content-Length") == null) {
+            appendHeader(head, "Content-Length", "0");
+        }
+        for (int i = 0; i < requestHeaders.size(); i += 2) {
+            appendHeader(head, requestHeaders.get(i), requestHeaders.get(i + 1));
+        }
+        head.append("\r\n");
+
+        conn.out.write(head.toString().getBytes("UTF-8"));
+    }
+
+    private void readResponseHead() throws IOException {
+        RealConnection conn = connection;
+        String statusLine;
+        int code;
+        long start = System.currentTimeMillis();
+        responseStarted = false;
+        conn.in.mark(1);
+        if (conn.in.read() == -1) {
+            throw new EOFException("unexpected end of stream");
+        }
+        conn.in.reset();
+        responseStarted = true;
+        HostStats.obtain(url.getHost()).getTtfb().record(System.currentTimeMillis() - start);
+        while (true) {
+            statusLine = PooledHttpTransport.readLine(conn.in);
+            code = PooledHttpTransport.parseStatusCode(statusLine);
+            responseHeaders.clear();
+            String line;
+            while ((line = PooledHttpTransport.readLine(conn.in)).length() > 0) {
+                int index = line.indexOf(':');
+                if (index <= 0) continue;
+                String name = line.substring(0, index).trim();
+                String value = line.substring(index + 1).trim();
+                List<String> values = getHeaderValues(responseHeaders, name);
+                if (values == null) {
+                    values = new ArrayList<String>(1);
+                    responseHeaders.put(name, values);
+                }
+                values.add(value);
+            }
+            if (code != 100) {
+                break;
+            }
+        }
+
+        boolean http10 = statusLine.startsWith("HTTP/1.0");
+        String connectionHeader = getHeaderField("Connection");
+        keepAlive = http10 ? "keep-alive".equalsIgnoreCase(connectionHeader)
+                : !"close".equalsIgnoreCase(connectionHeader);
+
+        if ("HEAD".equals(method) || (code >= 100 && code < 200) || code == 204 || code == 304) {
+            responseBody = new FixedLengthInputStream(conn.in, 0);
+        } else if ("chunked".equalsIgnoreCase(getHeaderField("Transfer-Encoding"))) {
+            responseBody = new ChunkedInputStream(conn.in);
+        } else {
+            long contentLength = -1;
+            String value = getHeaderField("Content-Length");
+            if (value != null) {
+                try {
+                    contentLength = Long.parseLong(value.trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            if (contentLength >= 0) {
+                responseBody = new FixedLengthInputStream(conn.in, contentLength);
+            } else {
+                keepAlive = false;
+                responseBody = new UntilCloseInputStream(conn.in);
+            }
+        }
+
+        responseMessage = statusLine.length() > 13 ? statusLine.substring(13) : "";
+        responseCode = code;
+    }
+
+    private URL getRedirectUrl() throws IOException {
+        switch (responseCode) {
+            case 301:
+            case 302:
+            case 303:
+                break;
+            case 307:
+            case 308:
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    return null; // 请求体不能重新发送
+                }
+                break;
+            default:
+                return null;
+        }
+        String location = getHeaderField("Location");
+        if (location == null) return null;
+        URL result = new URL(url, location);
+        // 与HttpURLConnection一致, 不跟随切换协议的重定向.
+        if (!result.getProtocol().equalsIgnoreCase(url.getProtocol())) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * 响应体结束或被关闭时调用
+     */
+    private void releaseConnection(boolean reusable) {
+        RealConnection conn = connection;
+        if (conn == null) return;
+        connection = null;
+        if (reusable && keepAlive) {
+            transport.recycle(conn);
+        } else {
+            conn.close();
+        }
+    }
+
+    private String getRequestHeader(String name) {
+        for (int i = requestHeaders.size() - 2; i >= 0; i -= 2) {
+            if (requestHeaders.get(i).equalsIgnoreCase(name)) {
+                return requestHeaders.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    private void removeRequestHeader(String name) {
+        for (int i = requestHeaders.size() - 2; i >= 0; i -= 2) {
+            if (requestHeaders.get(i).equalsIgnoreCase(name)) {
+                requestHeaders.remove(i + 1);
+                requestHeaders.remove(i);
+            }
+        }
+    }
+
+    private static void appendHeader(StringBuilder head, String name, String value) {
+        head.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    private static List<String> getHeaderValues(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void removeHeader(Map<String, List<String>> headers, String name) {
+        Iterator<String> itr = headers.keySet().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().equalsIgnoreCase(name)) {
+                itr.remove();
+            }
+        }
+    }
+
+    private static final class FixedLengthOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long contentLength;
+        private long written = 0;
+        private boolean closed = false;
+
+        private FixedLengthOutputStream(OutputStream out, long contentLength) {
+            this.out = out;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            if (closed) throw new IOException("closed");
+            if (written + count > contentLength) {
+                throw new ProtocolException("expected " + contentLength + " bytes but received " + (written + count));
+            }
+            out.write(buffer, offset, count);
+            written += count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (written != contentLength) {
+                throw new ProtocolException("expected " + contentLength + " bytes but received " + written);
+            }
+            out.flush();
+        }
+    }
+
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private boolean closed = false;
+
+        private ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            if (closed) throw new IOException("closed");
+            if (count == 0) return;
+            out.write((Integer.toHexString(count) + "\r\n").getBytes("ISO-8859-1"));
+            out.write(buffer, offset, count);
+            out.write('\r');
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            out.write("0\r\n\r\n".getBytes("ISO-8859-1"));
+            out.flush();
+        }
+    }
+
+    private abstract class BodyInputStream extends InputStream {
+        protected final InputStream in;
+        private volatile boolean closed = false;
+        private volatile boolean reading = false;
+        private boolean finished = false;
+
+        BodyInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return 剩余的字节数, 未知时返回-1.
+         */
+        abstract long remaining();
+
+        abstract int readBody(byte[] buffer, int offset, int count) throws IOException;
+
+        final void endOfBody(boolean reusable) {
+            if (finished) return;
+            finished = true;
+            releaseConnection(reusable);
+        }
+
+        final void checkNotClosed() throws IOException {
+            if (closed) throw new IOException("stream closed");
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            checkNotClosed();
+            reading = true;
+            try {
+                return readBody(buffer, offset, count);
+            } finally {
+                reading = false;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            if (!finished) {
+                // 其他线程正在读取时(取消请求)直接关闭连接
+                endOfBody(!reading && discard());
+            }
+        }
+
+        /**
+         * 尝试在短时间内读掉剩余的数据, 以便复用连接.
+         */
+        private boolean discard() {
+            RealConnection conn = connection;
+            if (conn == null || !keepAlive) return false;
+            long remaining = remaining();
+            if (remaining < 0 || remaining > MAX_DISCARD_BYTES) return false;
+            try {
+                conn.socket.setSoTimeout(DISCARD_TIMEOUT);
+                byte[] buffer = new byte[4096];
+                int total = 0;
+                int count;
+                while ((count = readBody(buffer, 0, buffer.length)) != -1) {
+                    total += count;
+                    if (total > MAX_DISCARD_BYTES) return false;
+                }
+                return finished;
+            } catch (Throwable ex) {
+                return false;
+            }
+        }
+    }
+
+    private final class FixedLengthInputStream extends BodyInputStream {
+        private long bytesRemaining;
+
+        FixedLengthInputStream(InputStream in, long contentLength) {
+            super(in);
+            this.bytesRemaining = contentLength;
+            if (bytesRemaining == 0) {
+                endOfBody(true);
+            }
+        }
+
+        @Override
+        long remaining() {
+            return bytesRemaining;
+        }
+
+        @Override
+        int readBody(byte[] buffer, int offset, int count) throws IOException {
+            if (bytesRemaining == 0) return -1;
+            int read = in.read(buffer, offset, (int) Math.min(count, bytesRemaining));
+            if (read == -1) {
+                endOfBody(false);
+                throw new ProtocolException("unexpected end of stream");
+            }
+            bytesRemaining -= read;
+            if (bytesRemaining == 0) {
+                endOfBody(true);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkNotClosed();
+            return bytesRemaining == 0 ? 0 : (int) Math.min(in.available(), bytesRemaining);
+        }
+    }
+
+    private final class ChunkedInputStream extends BodyInputStream {
+        private long bytesRemainingInChunk = -1;
+        private boolean hasMoreChunks = true;
+
+        ChunkedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        long remaining() {
+            return hasMoreChunks ? -1 : 0;
+        }
+
+        @Override
+        int readBody(byte[] buffer, int offset, int count) throws IOException {
+            if (!hasMoreChunks) return -1;
+            if (bytesRemainingInChunk == 0 || bytesRemainingInChunk == -1) {
+                readChunkSize();
+                if (!hasMoreChunks) return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(count, bytesRemainingInChunk));
+            if (read == -1) {
+                endOfBody(false);
+                throw new ProtocolException("unexpected end of stream");
+            }
+            bytesRemainingInChunk -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkNotClosed();
+            if (!hasMoreChunks || bytesRemainingInChunk <= 0) return 0;
+            return (int) Math.min(in.available(), bytesRemainingInChunk);
+        }
+
+        private void readChunkSize() throws IOException {
+            if (bytesRemainingInChunk != -1) {
+                PooledHttpTransport.readLine(in); // 上一块数据结尾的\r\n
+            }
+            String line = PooledHttpTransport.readLine(in);
+            int index = line.indexOf(';');
+            if (index != -1) {
+                line = line.substring(0, index);
+            }
+            try {
+                bytesRemainingInChunk = Long.parseLong(line.trim(), 16);
+            } catch (NumberFormatException ex) {
+                throw new ProtocolException("Expected a hex chunk size but was " + line);
+            }
+            if (bytesRemainingInChunk == 0) {
+                hasMoreChunks = false;
+                while (PooledHttpTransport.readLine(in).length() > 0) {
+                    // trailers
+                }
+                endOfBody(true);
+            }
+        }
+    }
+
+    private final class UntilCloseInputStream extends BodyInputStream {
+        private boolean eof = false;
+
+        UntilCloseInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        long remaining() {
+            return eof ? 0 : -1;
+        }
+
+        @Override
+        int readBody(byte[] buffer, int offset, int count) throws IOException {
+            if (eof) return -1;
+            int read = in.read(buffer, offset, count);
+            if (read == -1) {
+                eof = true;
+                endOfBody(false);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkNotClosed();
+            return eof ? 0 : in.available();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.xutils.http.request;
+
+import org.xutils.common.util.LogUtil;
+import org.xutils.http.RequestParams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * 基于socket的HTTP/1.1传输层, 请求完成后连接放回{@link ConnectionPool}供后续请求复用.
+ * 不受系统HttpURLConnection在API 19之前不能keep-alive的限制.
+ * <p>
+ * 使用方法: UriRequestFactory.registerHttpTransport(new PooledHttpTransport());
+ */
+public final class PooledHttpTransport implements HttpTransport {
+
+    private final ConnectionPool connectionPool;
+
+    public PooledHttpTransport() {
+        this(new ConnectionPool(5, 1000L * 60 * 5));
+    }
+
+    public PooledHttpTransport(ConnectionPool connectionPool) {
+        if (connectionPool == null) {
+            throw new IllegalArgumentException("connectionPool == null");
+        }
+        this.connectionPool = connectionPool;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    @Override
+    public HttpConnection openConnection(URL url, RequestParams params) throws IOException {
+        if (!isHttpProtocol(url)) {
+            throw new MalformedURLException("not support: " + url);
+        }
+        return new PooledHttpConnection(this, url, params);
+    }
+
+    /**
+     * 获取到url的连接, 优先复用连接池中的空闲连接.
+     *
+     * @param forceNew 不使用空闲连接(复用的连接已失效时重试)
+     */
+    /*package*/ RealConnection obtain(URL url, RequestParams params, boolean forceNew) throws IOException {
+        Proxy proxy = selectProxy(url, params);
+        boolean https = isHttps(url);
+        String host = url.getHost();
+        int port = getPort(url);
+
+        StringBuilder keyBuilder = new StringBuilder(url.getProtocol().toLowerCase())
+                .append("://").append(host.toLowerCase()).append(":").append(port)
+                .append("|").append(proxy);
+        SSLSocketFactory sslSocketFactory = null;
+        HostnameVerifier hostnameVerifier = null;
+        if (https) {
+            sslSocketFactory = params.getSslSocketFactory();
+            if (sslSocketFactory == null) {
+                sslSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+            }
+            hostnameVerifier = params.getHostnameVerifier();
+            if (hostnameVerifier == null) {
+                hostnameVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+            }
+            keyBuilder.append("|").append(System.identityHashCode(sslSocketFactory))
+                    .append("|").append(System.identityHashCode(hostnameVerifier));
+        }
+        String poolKey = keyBuilder.toString();
+
+        RealConnection conn = forceNew ? null : connectionPool.get(poolKey);
+        if (conn == null) {
+            conn = connect(poolKey, host, port, proxy, sslSocketFactory, hostnameVerifier, params);
+        }
+        conn.socket.setSoTimeout(params.getReadTimeout());
+        return conn;
+    }
+
+    /*package*/ void recycle(RealConnection conn) {
+        connectionPool.put(conn);
+    }
+
+    /**
+     * 预先建立到url的连接(包括tls握手), 放入连接池供之后的请求复用.
+     * params需要与之后请求使用的一致(代理, SSLSocketFactory和HostnameVerifier), 否则连接不会被复用.
+     */
+    public void preconnect(URL url, RequestParams params) throws IOException {
+        if (!isHttpProtocol(url)) {
+            throw new MalformedURLException("not support: " + url);
+        }
+        recycle(obtain(url, params, true));
+    }
+
+    private static RealConnection connect(String poolKey, String host, int port, Proxy proxy,
+                                          SSLSocketFactory sslSocketFactory,
+                                          HostnameVerifier hostnameVerifier,
+                                          RequestParams params) throws IOException {
+        Socket socket;
+        long start = System.currentTimeMillis();
+        if (proxy.type() == Proxy.Type.SOCKS) {
+            socket = new Socket(proxy);
+            connectSocket(socket, InetSocketAddress.createUnresolved(host, port), params);
+        } else if (proxy.type() == Proxy.Type.HTTP) {
+            SocketAddress address = proxy.address();
+            if (address instanceof InetSocketAddress && ((InetSocketAddress) address).isUnresolved()) {
+                InetSocketAddress unresolved = (InetSocketAddress) address;
+                address = new InetSocketAddress(unresolved.getHostName(), unresolved.getPort());
+            }
+            socket = new Socket();
+            connectSocket(socket, address, params);
+        } else {
+            socket = connectDirect(host, port, params);
+        }
+        HostStats hostStats = HostStats.obtain(host);
+        hostStats.getConnect().record(System.currentTimeMillis() - start);
+
+        try {
+            socket.setSoTimeout(params.getReadTimeout());
+            socket.setTcpNoDelay(true);
+
+            if (sslSocketFactory != null) {
+                if (proxy.type() == Proxy.Type.HTTP) {
+                    createTunnel(socket, host, port);
+                }
+                start = System.currentTimeMillis();
+                SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+                socket = sslSocket;
+                sslSocket.startHandshake();
+                if (!hostnameVerifier.verify(host, sslSocket.getSession())) {
+                    throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+                }
+                hostStats.getTls().record(System.currentTimeMillis() - start);
+            }
+
+            boolean viaHttpProxy = sslSocketFactory == null && proxy.type() == Proxy.Type.HTTP;
+            return new RealConnection(poolKey, socket, viaHttpProxy);
+        } catch (IOException ex) {
+            closeQuietly(socket);
+            throw ex;
+        }
+    }
+
+    /**
+     * 不经过代理时使用{@link DnsCache}解析的地址, 依次尝试直到连接成功;
+     * 全部失败时清除缓存的地址, 下次重新解析.
+     */
+    private static Socket connectDirect(String host, int port, RequestParams params) throws IOException {
+        InetAddress[] addresses = DnsCache.lookup(host);
+        IOException lastEx = null;
+        for (InetAddress inetAddress : addresses) {
+            Socket socket = new Socket();
+            try {
+                connectSocket(socket, new InetSocketAddress(inetAddress, port), params);
+                return socket;
+            } catch (IOException ex) {
+                lastEx = ex;
+            }
+        }
+        DnsCache.evict(host);
+        throw lastEx != null ? lastEx : new UnknownHostException(host);
+    }
+
+    private static void connectSocket(Socket socket, SocketAddress address, RequestParams params) throws IOException {
+        try {
+            socket.connect(address, params.getConnectTimeout());
+        } catch (IOException ex) {
+            closeQuietly(socket);
+            throw ex;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (Throwable ignored) {
+        }
+    }
+
+    /**
+     * 通过http代理访问https地址时, 先用CONNECT建立隧道.
+     */
+    private static void createTunnel(Socket socket, String host, int port) throws IOException {
+        String authority = host + ":" + port;
+        OutputStream out = socket.getOutputStream();
+        out.write(("CONNECT " + authority + " HTTP/1.1\r\nHost: " + authority + "\r\n\r\n").getBytes("ISO-8859-1"));
+        out.flush();
+
+        // 逐字节读取, 不能读到隧道建立后的数据.
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        int code = parseStatusCode(statusLine);
+        String line;
+        do {
+            line = readLine(in);
+        } while (line.length() > 0);
+        if (code != 200) {
+            throw new IOException("Unexpected response code for CONNECT: " + statusLine);
+        }
+    }
+
+    private static Proxy selectProxy(URL url, RequestParams params) {
+        Proxy proxy = params.getProxy();
+        if (proxy == null) {
+            try {
+                ProxySelector selector = ProxySelector.getDefault();
+                if (selector != null) {
+                    List<Proxy> proxies = selector.select(url.toURI());
+                    if (proxies != null && !proxies.isEmpty()) {
+                        proxy = proxies.get(0);
+                    }
+                }
+            } catch (Throwable ex) {
+                LogUtil.w(ex.getMessage(), ex);
+            }
+        }
+        return proxy == null ? Proxy.NO_PROXY : proxy;
+    }
+
+    /*package*/ static boolean isHttpProtocol(URL url) {
+        String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /*package*/ static boolean isHttps(URL url) {
+        return "https".equalsIgnoreCase(url.getProtocol());
+    }
+
+    /*package*/ static int getPort(URL url) {
+        int port = url.getPort();
+        return port > 0 ? port : url.getDefaultPort();
+    }
+
+    /*package*/ static int parseStatusCode(String statusLine) throws ProtocolException {
+        // HTTP/1.1 200 OK
+        if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12 || statusLine.charAt(8) != ' ') {
+            throw new ProtocolException("Unexpected status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException ex) {
+            throw new ProtocolException("Unexpected status line: " + statusLine);
+        }
+    }
+
+    /**
+     * 读取一行(不含行尾的\r\n), 流结束时抛出异常.
+     */
+    /*package*/ static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(80);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("unexpected end of stream");
+            }
+            if (buffer.size() >= 64 * 1024) {
+                throw new ProtocolException("line too long");
+            }
+            buffer.write(b);
+        }
+        int len = buffer.size();
+        byte[] bytes = buffer.toByteArray();
+        if (len > 0 && bytes[len - 1] == '\r') {
+            len--;
+        }
+        return new String(bytes, 0, len, "ISO-8859-1");
+    }
+}
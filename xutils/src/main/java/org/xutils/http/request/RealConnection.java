@@ -0,0 +1,74 @@
+package org.xutils.http.request;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * {@link PooledHttpTransport}使用的一个tcp(或tls)连接, 可以被多次请求复用.
+ */
+/*package*/ final class RealConnection {
+
+    /*package*/ final String poolKey;
+    /*package*/ final Socket socket;
+    /*package*/ final InputStream in;
+    /*package*/ final OutputStream out;
+    /**
+     * 通过http代理访问http地址, 请求行需要使用完整的url.
+     */
+    /*package*/ final boolean viaHttpProxy;
+
+    /*package*/ long idleAtMillis;
+    /*package*/ int useCount = 0;
+
+    /*package*/ RealConnection(String poolKey, Socket socket, boolean viaHttpProxy) throws IOException {
+        this.poolKey = poolKey;
+        this.socket = socket;
+        this.viaHttpProxy = viaHttpProxy;
+        this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    /**
+     * 检查空闲的连接是否已被服务端关闭
+     */
+    /*package*/ boolean isHealthy() {
+        if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+
+        int soTimeout = -1;
+        try {
+            soTimeout = socket.getSoTimeout();
+            socket.setSoTimeout(1);
+            in.mark(1);
+            if (in.read() == -1) {
+                return false; // 服务端已关闭
+            }
+            in.reset();
+            return false; // 空闲时不应收到数据
+        } catch (SocketTimeoutException ex) {
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (soTimeout >= 0) {
+                try {
+                    socket.setSoTimeout(soTimeout);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /*package*/ void close() {
+        try {
+            socket.close();
+        } catch (Throwable ignored) {
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.xutils.http.request;
 
+import org.xutils.cache.DiskCacheEntity;
 import org.xutils.common.util.LogUtil;
 import org.xutils.http.ProgressHandler;
 import org.xutils.http.RequestParams;
@@ -86,6 +87,46 @@ public abstract class UriRequest implements Closeable {
 
     public abstract void clearCacheHeader();
 
+    /**
+     * HTTP缓存模式下, loadResultFromCache读取到的缓存的新鲜度; 没有读取到缓存或不支持时返回null.
+     */
+    public HttpCacheStatus getHttpCacheStatus() {
+        return null;
+    }
+
+    /**
+     * 保存缓存前由loader调用, 补充HTTP缓存模式需要的信息.
+     */
+    public void prepareCacheEntity(DiskCacheEntity entity) {
+    }
+
+    /**
+     * HTTP缓存模式下响应304时, 用响应头更新缓存的新鲜度.
+     */
+    public void updateCacheOnNotModified() {
+    }
+
+    /**
+     * 由本次响应生成缓存实体但不保存, 用于把结果复制给合并的相同请求; 不支持时返回null.
+     */
+    public DiskCacheEntity createCacheSnapshot() {
+        return loader.createCacheSnapshot(this);
+    }
+
+    /**
+     * 由缓存实体(如其他请求的createCacheSnapshot)生成新的结果对象.
+     */
+    public Object loadResultFromEntity(DiskCacheEntity entity) throws Throwable {
+        return loader.loadFromCache(entity);
+    }
+
+    /**
+     * 实际发送的请求头(包括cookie), 用于判断两个请求是否可以合并.
+     */
+    public String getRequestHeadersKey() {
+        return "";
+    }
+
     public void save2Cache() {
         x.task().run(new Runnable() {
             @Override
@@ -101,6 +142,26 @@ public abstract class UriRequest implements Closeable {
 
     public abstract InputStream getInputStream() throws IOException;
 
+    /**
+     * 读取响应时保留压缩的原始数据, 用于以压缩格式保存缓存. 需要在getInputStream之前调用.
+     */
+    public void setKeepCompressedBody(boolean keepCompressedBody) {
+    }
+
+    /**
+     * @return 响应被自动解压且已完整读取时返回压缩的原始数据, 否则返回null.
+     */
+    public byte[] getCompressedBody() {
+        return null;
+    }
+
+    /**
+     * @return 被自动解压的响应的Content-Encoding, 未解压时返回null.
+     */
+    public String getContentEncoding() {
+        return null;
+    }
+
     @Override
     public abstract void close() throws IOException;
 
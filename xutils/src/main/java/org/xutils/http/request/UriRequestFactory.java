@@ -4,11 +4,19 @@ import android.text.TextUtils;
 
 import org.xutils.common.util.LogUtil;
 import org.xutils.http.RequestParams;
+import org.xutils.http.app.ContentDecoder;
 import org.xutils.http.app.RequestTracker;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Created by wyouflf on 15/11/4.
@@ -18,9 +26,42 @@ public final class UriRequestFactory {
 
     private static Class<? extends RequestTracker> defaultTrackerCls;
 
+    private static final HttpTransport DEFAULT_HTTP_TRANSPORT = new UrlConnectionTransport();
+    private static volatile HttpTransport httpTransport = DEFAULT_HTTP_TRANSPORT;
+
     private static final HashMap<String, Class<? extends UriRequest>>
             SCHEME_CLS_MAP = new HashMap<String, Class<? extends UriRequest>>();
 
+    /**
+     * key: Content-Encoding(小写), 注册顺序即Accept-Encoding中的顺序.
+     */
+    private static final LinkedHashMap<String, ContentDecoder>
+            CONTENT_DECODER_MAP = new LinkedHashMap<String, ContentDecoder>();
+    private static volatile String acceptEncoding;
+
+    static {
+        CONTENT_DECODER_MAP.put("gzip", new ContentDecoder() {
+            @Override
+            public InputStream decode(InputStream in) throws IOException {
+                return new GZIPInputStream(in, 8192);
+            }
+        });
+        CONTENT_DECODER_MAP.put("deflate", new ContentDecoder() {
+            @Override
+            public InputStream decode(InputStream in) throws IOException {
+                // 标准为zlib格式, 部分服务器返回不带zlib头的原始deflate数据.
+                BufferedInputStream bis = new BufferedInputStream(in, 8192);
+                bis.mark(2);
+                int cmf = bis.read();
+                int flg = bis.read();
+                bis.reset();
+                boolean zlib = cmf != -1 && flg != -1
+                        && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+                return new InflaterInputStream(bis, new Inflater(!zlib), 8192);
+            }
+        });
+    }
+
     private UriRequestFactory() {
     }
 
@@ -75,6 +116,57 @@ public final class UriRequestFactory {
         return null;
     }
 
+    /**
+     * 设置http请求使用的传输层, 为空时恢复默认的{@link UrlConnectionTransport}.
+     */
+    public static void registerHttpTransport(HttpTransport transport) {
+        UriRequestFactory.httpTransport = transport == null ? DEFAULT_HTTP_TRANSPORT : transport;
+    }
+
+    public static HttpTransport getHttpTransport() {
+        return httpTransport;
+    }
+
+    /**
+     * 注册响应体解压实现, 注册后请求头的Accept-Encoding中会包含该编码.
+     *
+     * @param decoder 为空时移除该编码
+     */
+    public static void registerContentDecoder(String encoding, ContentDecoder decoder) {
+        if (TextUtils.isEmpty(encoding)) return;
+        synchronized (CONTENT_DECODER_MAP) {
+            if (decoder == null) {
+                CONTENT_DECODER_MAP.remove(encoding.toLowerCase());
+            } else {
+                CONTENT_DECODER_MAP.put(encoding.toLowerCase(), decoder);
+            }
+            acceptEncoding = null;
+        }
+    }
+
+    public static ContentDecoder getContentDecoder(String encoding) {
+        if (TextUtils.isEmpty(encoding)) return null;
+        synchronized (CONTENT_DECODER_MAP) {
+            return CONTENT_DECODER_MAP.get(encoding.trim().toLowerCase());
+        }
+    }
+
+    /**
+     * @return 已注册的编码, 如: "gzip, deflate"; 没有注册任何编码时返回null.
+     */
+    public static String getAcceptEncoding() {
+        String result = acceptEncoding;
+        if (result == null) {
+            synchronized (CONTENT_DECODER_MAP) {
+                if (!CONTENT_DECODER_MAP.isEmpty()) {
+                    result = TextUtils.join(", ", CONTENT_DECODER_MAP.keySet());
+                    acceptEncoding = result;
+                }
+            }
+        }
+        return result;
+    }
+
     public static void registerRequestClass(String scheme, Class<? extends UriRequest> uriRequestCls) {
         SCHEME_CLS_MAP.put(scheme, uriRequestCls);
     }
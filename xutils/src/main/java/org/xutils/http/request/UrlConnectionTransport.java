@@ -0,0 +1,187 @@
+package org.xutils.http.request;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import org.xutils.http.RequestParams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * 基于系统HttpURLConnection的默认传输层.
+ * <p>
+ * HttpURLConnection自己解析域名和管理连接, 这里只能做到:
+ * 不使用代理时打开连接前先通过{@link DnsCache}解析host, 记录解析时间并预热系统的域名缓存;
+ * 在{@link HostStats}中记录域名解析和首字节时间, 不记录tcp连接和tls握手时间.
+ */
+public final class UrlConnectionTransport implements HttpTransport {
+
+    @Override
+    public HttpConnection openConnection(URL url, RequestParams params) throws IOException {
+        HttpURLConnection connection;
+        Proxy proxy = params.getProxy();
+        if (proxy != null) {
+            connection = (HttpURLConnection) url.openConnection(proxy);
+        } else {
+            try {
+                DnsCache.lookup(url.getHost());
+            } catch (Throwable ignored) {
+                // 由连接报告解析错误
+            }
+            connection = (HttpURLConnection) url.openConnection();
+        }
+
+        // try to fix bug: accidental EOFException before API 19
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            connection.setRequestProperty("Connection", "close");
+        }
+
+        connection.setReadTimeout(params.getReadTimeout());
+        connection.setConnectTimeout(params.getConnectTimeout());
+        connection.setInstanceFollowRedirects(params.getRedirectHandler() == null);
+        if (connection instanceof HttpsURLConnection) {
+            SSLSocketFactory sslSocketFactory = params.getSslSocketFactory();
+            if (sslSocketFactory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+            }
+
+            HostnameVerifier hostnameVerifier = params.getHostnameVerifier();
+            if (hostnameVerifier != null) {
+                ((HttpsURLConnection) connection).setHostnameVerifier(hostnameVerifier);
+            }
+        }
+        return new UrlConnection(connection);
+    }
+
+    private static final class UrlConnection extends HttpConnection {
+        private final HttpURLConnection connection;
+        private boolean responseReceived = false;
+
+        private UrlConnection(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public URL getURL() {
+            return connection.getURL();
+        }
+
+        @Override
+        public void setRequestMethod(String method) throws IOException {
+            try {
+                connection.setRequestMethod(method);
+            } catch (ProtocolException ex) {
+                try { // fix: HttpURLConnection not support PATCH method.
+                    Field methodField = HttpURLConnection.class.getDeclaredField("method");
+                    methodField.setAccessible(true);
+                    methodField.set(connection, method);
+                } catch (Throwable ignored) {
+                    throw ex;
+                }
+            }
+        }
+
+        @Override
+        public void setRequestProperty(String name, String value) {
+            connection.setRequestProperty(name, value);
+        }
+
+        @Override
+        public void addRequestProperty(String name, String value) {
+            connection.addRequestProperty(name, value);
+        }
+
+        @Override
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        public void setFixedLengthStreamingMode(long contentLength) {
+            if (contentLength < Integer.MAX_VALUE) {
+                connection.setFixedLengthStreamingMode((int) contentLength);
+            } else {
+                connection.setFixedLengthStreamingMode(contentLength);
+            }
+        }
+
+        @Override
+        public void setChunkedStreamingMode(int chunkLength) {
+            connection.setChunkedStreamingMode(chunkLength);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            connection.setDoOutput(true);
+            return connection.getOutputStream();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            awaitResponse();
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            awaitResponse();
+            return connection.getInputStream();
+        }
+
+        /**
+         * 建立连接后等待响应行, 记录首字节时间(TTFB).
+         */
+        private void awaitResponse() throws IOException {
+            if (responseReceived) return;
+            responseReceived = true;
+            connection.connect();
+            long start = System.currentTimeMillis();
+            connection.getResponseCode();
+            HostStats.obtain(connection.getURL().getHost()).getTtfb().record(System.currentTimeMillis() - start);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return connection.getErrorStream();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return connection.getHeaderFields();
+        }
+
+        @Override
+        public long getHeaderFieldDate(String name, long defaultValue) {
+            return connection.getHeaderFieldDate(name, defaultValue);
+        }
+
+        @Override
+        public long getExpiration() {
+            return connection.getExpiration();
+        }
+
+        @Override
+        public void disconnect() {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.xutils.image;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 可复用Bitmap池, 按尺寸和Config分组, 供decodeBitmap通过BitmapFactory.Options.inBitmap复用.
+ * <p>
+ * KITKAT之前inBitmap要求尺寸完全相同(且inSampleSize为1), 之后只要求可用内存足够;
+ * 池中的Bitmap超出容量时按放入的先后顺序丢弃.
+ */
+/*package*/ final class BitmapPool {
+
+    // 复用的Bitmap最多比需要的大4倍, 避免小图长期占用大内存.
+    private static final int MAX_OVER_SIZE_MULTIPLE = 4;
+
+    /**
+     * key: config + width + height(KITKAT之前) 或 config(KITKAT及之后), value: byteCount -> bitmaps
+     */
+    private final HashMap<String, TreeMap<Integer, ArrayList<Bitmap>>> groupMap =
+            new HashMap<String, TreeMap<Integer, ArrayList<Bitmap>>>();
+    private final LinkedList<Bitmap> order = new LinkedList<Bitmap>();
+
+    private int maxSize;
+    private int size;
+
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    /*package*/ BitmapPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 放入一个不再被使用的Bitmap
+     *
+     * @return false: 不能复用或超出容量, 调用者不应再使用它.
+     */
+    public boolean put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()
+                || bitmap.getConfig() == null
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return false;
+        }
+
+        int byteCount = byteCountOf(bitmap);
+        synchronized (this) {
+            if (byteCount > maxSize / 2) {
+                return false;
+            }
+            String groupKey = groupKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            TreeMap<Integer, ArrayList<Bitmap>> group = groupMap.get(groupKey);
+            if (group == null) {
+                group = new TreeMap<Integer, ArrayList<Bitmap>>();
+                groupMap.put(groupKey, group);
+            }
+            ArrayList<Bitmap> bitmaps = group.get(byteCount);
+            if (bitmaps == null) {
+                bitmaps = new ArrayList<Bitmap>(2);
+                group.put(byteCount, bitmaps);
+            }
+            bitmaps.add(bitmap);
+            order.addLast(bitmap);
+            size += byteCount;
+            putCount++;
+            trimToSize(maxSize);
+        }
+        return true;
+    }
+
+    /**
+     * 取出一个可以用作inBitmap的Bitmap
+     *
+     * @param width  解码后的宽度
+     * @param height 解码后的高度
+     * @return null: 没有合适的Bitmap
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0) return null;
+        if (config == null) {
+            config = Bitmap.Config.ARGB_8888;
+        }
+
+        Bitmap result = null;
+        synchronized (this) {
+            TreeMap<Integer, ArrayList<Bitmap>> group = groupMap.get(groupKey(width, height, config));
+            if (group != null) {
+                int needSize = width * height * bytesPerPixel(config);
+                Map.Entry<Integer, ArrayList<Bitmap>> entry = group.ceilingEntry(needSize);
+                if (entry != null && entry.getKey() <= needSize * MAX_OVER_SIZE_MULTIPLE) {
+                    ArrayList<Bitmap> bitmaps = entry.getValue();
+                    result = bitmaps.remove(bitmaps.size() - 1);
+                    if (bitmaps.isEmpty()) {
+                        group.remove(entry.getKey());
+                    }
+                    order.remove(result);
+                    size -= entry.getKey();
+                }
+            }
+            if (result != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+
+        if (result != null) {
+            result.eraseColor(0); // Color.TRANSPARENT
+        }
+        return result;
+    }
+
+    /**
+     * 按放入的先后顺序丢弃Bitmap, 直到池的大小不超过maxSize.
+     */
+    public synchronized void trimToSize(int maxSize) {
+        while (size > maxSize && !order.isEmpty()) {
+            Bitmap bitmap = order.removeFirst();
+            int byteCount = byteCountOf(bitmap);
+            TreeMap<Integer, ArrayList<Bitmap>> group =
+                    groupMap.get(groupKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()));
+            if (group != null) {
+                ArrayList<Bitmap> bitmaps = group.get(byteCount);
+                if (bitmaps != null) {
+                    bitmaps.remove(bitmap);
+                    if (bitmaps.isEmpty()) {
+                        group.remove(byteCount);
+                    }
+                }
+            }
+            size -= byteCount;
+            evictionCount++;
+            bitmap.recycle();
+        }
+        if (order.isEmpty()) {
+            groupMap.clear();
+            size = 0;
+        } else {
+            Iterator<TreeMap<Integer, ArrayList<Bitmap>>> itr = groupMap.values().iterator();
+            while (itr.hasNext()) {
+                if (itr.next().isEmpty()) {
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized void resize(int maxSize) {
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long putCount() {
+        return putCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    private static String groupKey(int width, int height, Bitmap.Config config) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return String.valueOf(config);
+        } else {
+            return config + "_" + width + "x" + height;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int byteCountOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        } else {
+            return bitmap.getByteCount();
+        }
+    }
+
+    /*package*/
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.xutils.image;
+
+import org.xutils.common.Callback;
+import org.xutils.common.task.Priority;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * 解码任务的准入控制: 同时最多maxWorker个解码, 其余的线程排队等待.
+ * <p>
+ * 优先级高的先解码, 相同优先级后到的先解码(LIFO, 列表快速滑动时当前可见的图片先解码);
+ * 每个等待者单独唤醒, 不会一次唤醒所有线程. 排队中的任务被取消时立即出队.
+ */
+/*package*/ final class DecodeScheduler {
+
+    private final int maxWorker;
+    private int activeWorker = 0;
+    /**
+     * 头部是下一个获得许可的等待者
+     */
+    private final LinkedList<Waiter> waiters = new LinkedList<Waiter>();
+
+    /*package*/ DecodeScheduler(int maxWorker) {
+        if (maxWorker < 1) {
+            throw new IllegalArgumentException("maxWorker < 1");
+        }
+        this.maxWorker = maxWorker;
+    }
+
+    /**
+     * 获取解码许可, 获取成功后必须调用{@link #release()}.
+     *
+     * @throws Callback.CancelledException 等待期间被取消或中断
+     */
+    public void acquire(Callback.Cancelable cancelable, Priority priority) {
+        if (cancelable != null && cancelable.isCancelled()) {
+            throw new Callback.CancelledException("cancelled during decode image");
+        }
+
+        Waiter waiter;
+        synchronized (this) {
+            if (activeWorker < maxWorker && waiters.isEmpty()) {
+                activeWorker++;
+                return;
+            }
+            waiter = new Waiter(cancelable, priority == null ? Priority.DEFAULT : priority);
+            enqueue(waiter);
+        }
+
+        boolean interrupted = false;
+        synchronized (waiter) {
+            while (!waiter.granted && !waiter.removed) {
+                try {
+                    waiter.wait();
+                } catch (InterruptedException iex) {
+                    interrupted = true;
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            boolean granted;
+            synchronized (this) {
+                // 出队和分配许可都在锁内完成, 不在队列中时granted已经确定.
+                granted = !waiters.remove(waiter) && isGranted(waiter);
+            }
+            if (granted) {
+                release();
+            }
+            throw new Callback.CancelledException("cancelled during decode image");
+        }
+
+        if (!waiter.granted) { // removed
+            throw new Callback.CancelledException("cancelled during decode image");
+        }
+    }
+
+    /**
+     * 释放许可, 直接转交给下一个未被取消的等待者.
+     */
+    public void release() {
+        Waiter next;
+        synchronized (this) {
+            while ((next = waiters.poll()) != null) {
+                if (next.cancelable != null && next.cancelable.isCancelled()) {
+                    next.wake(false);
+                } else {
+                    break;
+                }
+            }
+            if (next == null) {
+                if (activeWorker > 0) {
+                    activeWorker--;
+                }
+            } else {
+                next.wake(true);
+            }
+        }
+    }
+
+    /**
+     * 取消排队中的任务, 它的线程会立即抛出CancelledException.
+     */
+    public void cancel(Callback.Cancelable cancelable) {
+        if (cancelable == null) return;
+        synchronized (this) {
+            Iterator<Waiter> itr = waiters.iterator();
+            while (itr.hasNext()) {
+                Waiter waiter = itr.next();
+                if (waiter.cancelable == cancelable) {
+                    itr.remove();
+                    waiter.wake(false);
+                }
+            }
+        }
+    }
+
+    public synchronized int getActiveWorker() {
+        return activeWorker;
+    }
+
+    public synchronized int getWaitingCount() {
+        return waiters.size();
+    }
+
+    /**
+     * 插入到第一个优先级不高于它的等待者之前
+     */
+    private void enqueue(Waiter waiter) {
+        ListIterator<Waiter> itr = waiters.listIterator();
+        while (itr.hasNext()) {
+            if (itr.next().priority.ordinal() >= waiter.priority.ordinal()) {
+                itr.previous();
+                break;
+            }
+        }
+        itr.add(waiter);
+    }
+
+    private static boolean isGranted(Waiter waiter) {
+        synchronized (waiter) {
+            return waiter.granted;
+        }
+    }
+
+    private static final class Waiter {
+        final Callback.Cancelable cancelable;
+        final Priority priority;
+        boolean granted = false;
+        boolean removed = false;
+
+        Waiter(Callback.Cancelable cancelable, Priority priority) {
+            this.cancelable = cancelable;
+            this.priority = priority;
+        }
+
+        synchronized void wake(boolean granted) {
+            if (granted) {
+                this.granted = true;
+            } else {
+                this.removed = true;
+            }
+            this.notify();
+        }
+    }
+}
@@ -11,11 +11,13 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 
 import org.xutils.cache.DiskCacheEntity;
 import org.xutils.cache.DiskCacheFile;
 import org.xutils.cache.LruDiskCache;
 import org.xutils.common.Callback;
+import org.xutils.common.task.Priority;
 import org.xutils.common.task.PriorityExecutor;
 import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.LogUtil;
@@ -28,7 +30,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by wyouflf on 15/10/9.
@@ -37,18 +38,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class ImageDecoder {
 
     private final static int BITMAP_DECODE_MAX_WORKER;
-    private final static AtomicInteger bitmapDecodeWorker = new AtomicInteger(0);
-    private final static Object bitmapDecodeLock = new Object();
-
-    private final static Object gifDecodeLock = new Object();
+    private final static DecodeScheduler BITMAP_DECODE_SCHEDULER;
+    private final static int GIF_DECODE_MAX_WORKER = 2;
+    private final static DecodeScheduler GIF_DECODE_SCHEDULER = new DecodeScheduler(GIF_DECODE_MAX_WORKER);
     private final static byte[] GIF_HEADER = new byte[]{'G', 'I', 'F'};
 
     private final static Executor THUMB_CACHE_EXECUTOR = new PriorityExecutor(1, true);
     private final static LruDiskCache THUMB_CACHE = LruDiskCache.getDiskCache("xUtils_img_thumb");
 
+    /**
+     * 解码时通过inBitmap复用的Bitmap, 由ImageLoader的内存缓存回收.
+     */
+    /*package*/ final static BitmapPool BITMAP_POOL = new BitmapPool(1024 * 1024); // 1M, ImageLoader会重新设置
+
     static {
         int cpuCount = Runtime.getRuntime().availableProcessors();
         BITMAP_DECODE_MAX_WORKER = cpuCount > 4 ? 2 : 1;
+        BITMAP_DECODE_SCHEDULER = new DecodeScheduler(BITMAP_DECODE_MAX_WORKER);
     }
 
     private ImageDecoder() {
@@ -59,6 +65,15 @@ public final class ImageDecoder {
         THUMB_CACHE.clearCacheFiles();
     }
 
+    /**
+     * 取消排队等待解码的任务
+     */
+    /*package*/
+    static void cancelDecode(Callback.Cancelable cancelable) {
+        BITMAP_DECODE_SCHEDULER.cancel(cancelable);
+        GIF_DECODE_SCHEDULER.cancel(cancelable);
+    }
+
     /**
      * decode image file for ImageLoader
      */
@@ -66,6 +81,19 @@ public final class ImageDecoder {
     static Drawable decodeFileWithLock(final File file,
                                        final ImageOptions options,
                                        final Callback.Cancelable cancelable) throws IOException {
+        return decodeFileWithLock(file, options, Priority.DEFAULT, cancelable);
+    }
+
+    /**
+     * decode image file for ImageLoader
+     *
+     * @param priority 排队等待解码时的优先级, 相同优先级后到的先解码.
+     */
+    /*package*/
+    static Drawable decodeFileWithLock(final File file,
+                                       final ImageOptions options,
+                                       final Priority priority,
+                                       final Callback.Cancelable cancelable) throws IOException {
         if (file == null || !file.exists() || file.length() < 1) return null;
         if (cancelable != null && cancelable.isCancelled()) {
             throw new Callback.CancelledException("cancelled during decode image");
@@ -74,8 +102,11 @@ public final class ImageDecoder {
         Drawable result = null;
         if (!options.isIgnoreGif() && isGif(file)) {
             Movie movie = null;
-            synchronized (gifDecodeLock) { // decode with lock
+            GIF_DECODE_SCHEDULER.acquire(cancelable, priority);
+            try {
                 movie = decodeGif(file, options, cancelable);
+            } finally {
+                GIF_DECODE_SCHEDULER.release();
             }
             if (movie != null) {
                 result = new GifDrawable(movie, (int) file.length());
@@ -84,26 +115,12 @@ public final class ImageDecoder {
         } else {
             Bitmap bitmap = null;
             { // decode with lock
-                boolean decodeStarted = false;
+                BITMAP_DECODE_SCHEDULER.acquire(cancelable, priority);
                 try {
-                    synchronized (bitmapDecodeLock) {
-                        while (bitmapDecodeWorker.get() >= BITMAP_DECODE_MAX_WORKER
-                                && (cancelable == null || !cancelable.isCancelled())) {
-                            try {
-                                bitmapDecodeLock.wait();
-                            } catch (InterruptedException iex) {
-                                throw new Callback.CancelledException("cancelled during decode image");
-                            } catch (Throwable ignored) {
-                            }
-                        }
-                    }
-
                     if (cancelable != null && cancelable.isCancelled()) {
                         throw new Callback.CancelledException("cancelled during decode image");
                     }
 
-                    decodeStarted = true;
-                    bitmapDecodeWorker.incrementAndGet();
                     // get from thumb cache
                     if (options.isCompress()) {
                         bitmap = getThumbCache(file, options);
@@ -122,12 +139,7 @@ public final class ImageDecoder {
                         }
                     }
                 } finally {
-                    if (decodeStarted) {
-                        bitmapDecodeWorker.decrementAndGet();
-                    }
-                    synchronized (bitmapDecodeLock) {
-                        bitmapDecodeLock.notifyAll();
-                    }
+                    BITMAP_DECODE_SCHEDULER.release();
                 }
             }
             if (bitmap != null) {
@@ -178,6 +190,8 @@ public final class ImageDecoder {
             bitmapOps.inPurgeable = true;
             bitmapOps.inInputShareable = true;
             BitmapFactory.decodeFile(file.getAbsolutePath(), bitmapOps);
+            final int boundsWidth = bitmapOps.outWidth;
+            final int boundsHeight = bitmapOps.outHeight;
             bitmapOps.inJustDecodeBounds = false;
             bitmapOps.inPreferredConfig = options.getConfig();
             int rotateAngle = 0;
@@ -209,9 +223,28 @@ public final class ImageDecoder {
                 throw new Callback.CancelledException("cancelled during decode image");
             }
 
+            // 复用BitmapPool中的Bitmap
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                bitmapOps.inMutable = true; // 可变的Bitmap之后才能被复用
+                Bitmap reusable = getReusableBitmap(
+                        boundsWidth, boundsHeight, bitmapOps.inSampleSize, bitmapOps.inPreferredConfig);
+                if (reusable != null) {
+                    bitmapOps.inBitmap = reusable;
+                    bitmapOps.inPurgeable = false;
+                }
+            }
+
             // decode file
             Bitmap bitmap = null;
-            bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), bitmapOps);
+            try {
+                bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), bitmapOps);
+            } catch (IllegalArgumentException ex) {
+                // inBitmap不满足解码要求, 不复用重试一次.
+                if (bitmapOps.inBitmap == null) throw ex;
+                BITMAP_POOL.put(bitmapOps.inBitmap);
+                bitmapOps.inBitmap = null;
+                bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), bitmapOps);
+            }
             if (bitmap == null) {
                 throw new IOException("decode image error");
             }
@@ -265,6 +298,21 @@ public final class ImageDecoder {
         return result;
     }
 
+    /**
+     * 从BitmapPool中取出可用作inBitmap的Bitmap.
+     * KITKAT之前要求尺寸相同且inSampleSize为1; 之后解码器会将inSampleSize向下取整为2的幂.
+     */
+    private static Bitmap getReusableBitmap(int width, int height, int sampleSize, Bitmap.Config config) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            if (sampleSize > 1) return null;
+        } else if (sampleSize > 1) {
+            int sample = Integer.highestOneBit(sampleSize);
+            width = (width + sample - 1) / sample;
+            height = (height + sample - 1) / sample;
+        }
+        return BITMAP_POOL.get(width, height, config);
+    }
+
     /**
      * 转换文件为Movie, 可用于创建GifDrawable.
      */
@@ -2,6 +2,7 @@ package org.xutils.image;
 
 import android.annotation.SuppressLint;
 import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Paint;
@@ -12,7 +13,7 @@ import android.view.View;
 import android.view.animation.Animation;
 import android.widget.ImageView;
 
-import org.xutils.cache.LruCache;
+import org.xutils.cache.ConcurrentLruCache;
 import org.xutils.cache.LruDiskCache;
 import org.xutils.common.Callback;
 import org.xutils.common.task.Priority;
@@ -20,6 +21,7 @@ import org.xutils.common.task.PriorityExecutor;
 import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.LogUtil;
 import org.xutils.ex.FileLockedException;
+import org.xutils.http.HttpDispatcher;
 import org.xutils.http.RequestParams;
 import org.xutils.x;
 
@@ -47,6 +49,7 @@ import java.util.concurrent.atomic.AtomicLong;
     private MemCacheKey key;
     private ImageOptions options;
     private WeakReference<ImageView> viewRef;
+    private Priority priority = Priority.BG_LOW;
     private int fileLockedExceptionRetryCount = 0;
 
     private final static AtomicLong SEQ_SEEK = new AtomicLong(0);
@@ -65,9 +68,9 @@ import java.util.concurrent.atomic.AtomicLong;
     private final static String DISK_CACHE_DIR_NAME = "xUtils_img";
     private final static Executor EXECUTOR = new PriorityExecutor(10, false);
     private final static int MEM_CACHE_MIN_SIZE = 1024 * 1024 * 4; // 4M
-    private final static LruCache<MemCacheKey, Drawable> MEM_CACHE =
-            new LruCache<MemCacheKey, Drawable>(MEM_CACHE_MIN_SIZE) {
-                private boolean deepClear = false;
+    private final static ConcurrentLruCache<MemCacheKey, Drawable> MEM_CACHE =
+            new ConcurrentLruCache<MemCacheKey, Drawable>(MEM_CACHE_MIN_SIZE) {
+                private volatile boolean deepClear = false;
 
                 @Override
                 protected int sizeOf(MemCacheKey key, Drawable value) {
@@ -92,11 +95,21 @@ import java.util.concurrent.atomic.AtomicLong;
                 @Override
                 protected void entryRemoved(boolean evicted, MemCacheKey key, Drawable oldValue, Drawable newValue) {
                     super.entryRemoved(evicted, key, oldValue, newValue);
-                    if (evicted && deepClear && oldValue instanceof ReusableDrawable) {
-                        ((ReusableDrawable) oldValue).setMemCacheKey(null);
+                    if (evicted && oldValue instanceof ReusableDrawable) {
+                        if (deepClear) {
+                            ((ReusableDrawable) oldValue).setMemCacheKey(null);
+                        } else {
+                            // 可能还在被ImageView使用, 转入弱引用的二级缓存.
+                            WEAK_MEM_CACHE.put(key, oldValue);
+                        }
+                    }
+                    if (oldValue != newValue && oldValue instanceof ReusableBitmapDrawable) {
+                        // 不再被任何ImageView显示时, bitmap会被回收到BitmapPool.
+                        ((ReusableBitmapDrawable) oldValue).markUncached();
                     }
                 }
             };
+    private final static WeakMemCache WEAK_MEM_CACHE = new WeakMemCache();
 
     static {
         int memClass = ((ActivityManager) x.app()
@@ -108,6 +121,7 @@ import java.util.concurrent.atomic.AtomicLong;
             cacheSize = MEM_CACHE_MIN_SIZE;
         }
         MEM_CACHE.resize(cacheSize);
+        ImageDecoder.BITMAP_POOL.resize(cacheSize / 4);
     }
 
     private ImageLoader() {
@@ -116,6 +130,83 @@ import java.util.concurrent.atomic.AtomicLong;
     /*package*/
     static void clearMemCache() {
         MEM_CACHE.evictAll();
+        WEAK_MEM_CACHE.clear();
+    }
+
+    /**
+     * 内存不足时释放缓存
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_*
+     */
+    /*package*/
+    static void trimMemory(int level) {
+        BitmapPool bitmapPool = ImageDecoder.BITMAP_POOL;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            clearMemCache();
+            bitmapPool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            bitmapPool.clear();
+            MEM_CACHE.trimToSize(MEM_CACHE.maxSize() / 2);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            bitmapPool.trimToSize(bitmapPool.maxSize() / 2);
+        }
+    }
+
+    /*package*/
+    static MemCacheStats getMemCacheStats() {
+        BitmapPool bitmapPool = ImageDecoder.BITMAP_POOL;
+        return new MemCacheStats(
+                MEM_CACHE.size(), MEM_CACHE.maxSize(),
+                MEM_CACHE.hitCount(), MEM_CACHE.missCount(), MEM_CACHE.evictionCount(),
+                WEAK_MEM_CACHE.size(), WEAK_MEM_CACHE.hitCount(), WEAK_MEM_CACHE.missCount(),
+                bitmapPool.size(), bitmapPool.maxSize(), bitmapPool.hitCount(), bitmapPool.missCount());
+    }
+
+    /**
+     * 放入一级内存缓存
+     *
+     * @return false: drawable的bitmap已被回收到BitmapPool.
+     */
+    private static boolean putMemCache(MemCacheKey key, Drawable drawable) {
+        if (drawable instanceof ReusableBitmapDrawable
+                && !((ReusableBitmapDrawable) drawable).markCached()) {
+            return false;
+        }
+        MEM_CACHE.put(key, drawable);
+        return true;
+    }
+
+    /**
+     * 在ImageView.setImageDrawable之前调用, 记录ReusableBitmapDrawable被显示的次数.
+     */
+    private static void trackDisplayedDrawable(ImageView view, Drawable newDrawable) {
+        if (view instanceof FakeImageView) return;
+        ReusableBitmapDrawable oldValue = unwrapReusableBitmapDrawable(view.getDrawable());
+        ReusableBitmapDrawable newValue = unwrapReusableBitmapDrawable(newDrawable);
+        if (oldValue == newValue) return;
+        if (newValue != null) {
+            newValue.setDisplayed(true);
+        }
+        if (oldValue != null) {
+            oldValue.setDisplayed(false);
+        }
+    }
+
+    private static ReusableBitmapDrawable unwrapReusableBitmapDrawable(Drawable drawable) {
+        if (drawable instanceof AsyncDrawable) {
+            drawable = ((AsyncDrawable) drawable).getBaseDrawable();
+        }
+        return drawable instanceof ReusableBitmapDrawable ? (ReusableBitmapDrawable) drawable : null;
+    }
+
+    /**
+     * 交给调用者的drawable可能被长期持有, 不能再回收它的bitmap.
+     */
+    private static void markExposed(Drawable drawable) {
+        if (drawable instanceof ReusableBitmapDrawable) {
+            ((ReusableBitmapDrawable) drawable).markExposed();
+        }
     }
 
     /*package*/
@@ -203,7 +294,7 @@ import java.util.concurrent.atomic.AtomicLong;
         } else if (oldDrawable instanceof ReusableDrawable) {
             MemCacheKey oldKey = ((ReusableDrawable) oldDrawable).getMemCacheKey();
             if (oldKey != null && oldKey.equals(key)) {
-                MEM_CACHE.put(key, oldDrawable);
+                putMemCache(key, oldDrawable);
             }
         }
 
@@ -217,6 +308,13 @@ import java.util.concurrent.atomic.AtomicLong;
                     memDrawable = null;
                 }
             }
+            if (memDrawable == null) {
+                // 二级缓存命中时重新放回一级缓存
+                memDrawable = WEAK_MEM_CACHE.take(key);
+                if (memDrawable != null && !putMemCache(key, memDrawable)) {
+                    memDrawable = null;
+                }
+            }
         }
         if (memDrawable != null) { // has mem cache
             boolean trustMemCache = false;
@@ -229,6 +327,9 @@ import java.util.concurrent.atomic.AtomicLong;
                     }
                 }
 
+                if (callback != null) {
+                    markExposed(memDrawable);
+                }
                 if (callback instanceof CacheCallback) {
                     try {
                         // 是否信任内存缓存. onStart 之后再次调用 onCache 时, 入参是磁盘缓存.
@@ -243,6 +344,7 @@ import java.util.concurrent.atomic.AtomicLong;
                 // hit mem cache
                 if (trustMemCache) {
                     view.setScaleType(localOptions.getImageScaleType());
+                    trackDisplayedDrawable(view, memDrawable);
                     view.setImageDrawable(memDrawable);
                     if (callback != null) {
                         try {
@@ -314,10 +416,13 @@ import java.util.concurrent.atomic.AtomicLong;
             loadingDrawable = options.getLoadingDrawable(view);
             view.setScaleType(options.getPlaceholderScaleType());
         }
-        view.setImageDrawable(new AsyncDrawable(this, loadingDrawable));
+        AsyncDrawable asyncDrawable = new AsyncDrawable(this, loadingDrawable);
+        trackDisplayedDrawable(view, asyncDrawable);
+        view.setImageDrawable(asyncDrawable);
 
         // request
         RequestParams params = createRequestParams(view.getContext(), url, options);
+        this.priority = params.getPriority();
         if (view instanceof FakeImageView) {
             synchronized (FAKE_IMG_MAP) {
                 FAKE_IMG_MAP.put(view.hashCode() + url, (FakeImageView) view);
@@ -333,6 +438,7 @@ import java.util.concurrent.atomic.AtomicLong;
         if (httpCancelable != null) {
             httpCancelable.cancel();
         }
+        ImageDecoder.cancelDecode(this);
     }
 
     @Override
@@ -382,12 +488,13 @@ import java.util.concurrent.atomic.AtomicLong;
                 result = prepareCallback.prepare(rawData);
             }
             if (result == null) {
-                result = ImageDecoder.decodeFileWithLock(rawData, options, this);
+                result = ImageDecoder.decodeFileWithLock(rawData, options, priority, this);
             }
             if (result != null) {
                 if (result instanceof ReusableDrawable) {
                     ((ReusableDrawable) result).setMemCacheKey(key);
-                    MEM_CACHE.put(key, result);
+                    putMemCache(key, result);
+                    WEAK_MEM_CACHE.remove(key);
                 }
             }
             return result;
@@ -406,6 +513,9 @@ import java.util.concurrent.atomic.AtomicLong;
         if (result != null) {
             hasCache = true;
             setSuccessDrawable4Callback(result);
+            if (callback != null) {
+                markExposed(result);
+            }
             if (cacheCallback != null) {
                 return cacheCallback.onCache(result);
             } else if (callback != null) {
@@ -425,6 +535,7 @@ import java.util.concurrent.atomic.AtomicLong;
         if (result != null) {
             setSuccessDrawable4Callback(result);
             if (callback != null) {
+                markExposed(result);
                 callback.onSuccess(result);
             }
         }
@@ -494,6 +605,7 @@ import java.util.concurrent.atomic.AtomicLong;
         params.setCacheDirName(DISK_CACHE_DIR_NAME);
         params.setConnectTimeout(1000 * 8);
         params.setPriority(Priority.BG_LOW);
+        params.setLane(HttpDispatcher.Lane.IMAGE);
         params.setExecutor(EXECUTOR);
         params.setCancelFast(true);
         params.setUseCookie(false);
@@ -544,6 +656,7 @@ import java.util.concurrent.atomic.AtomicLong;
                 }
                 view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
             }
+            trackDisplayedDrawable(view, drawable);
             if (options.getAnimation() != null) {
                 ImageAnimationHelper.animationDisplay(view, drawable, options.getAnimation());
             } else if (options.isFadeIn()) {
@@ -559,6 +672,7 @@ import java.util.concurrent.atomic.AtomicLong;
         if (view != null) {
             Drawable drawable = options.getFailureDrawable(view);
             view.setScaleType(options.getPlaceholderScaleType());
+            trackDisplayedDrawable(view, drawable);
             view.setImageDrawable(drawable);
         }
     }
@@ -574,8 +688,10 @@ import java.util.concurrent.atomic.AtomicLong;
                         ((ProgressCallback) callback).onWaiting();
                     }
                     if (view != null && options != null) {
+                        Drawable failureDrawable = options.getFailureDrawable(view);
                         view.setScaleType(options.getPlaceholderScaleType());
-                        view.setImageDrawable(options.getFailureDrawable(view));
+                        trackDisplayedDrawable(view, failureDrawable);
+                        view.setImageDrawable(failureDrawable);
                     }
                     if (callback != null) {
                         callback.onError(new IllegalArgumentException(exMsg), false);
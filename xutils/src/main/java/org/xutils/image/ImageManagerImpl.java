@@ -87,6 +87,16 @@ public final class ImageManagerImpl implements ImageManager {
         ImageLoader.clearMemCache();
     }
 
+    @Override
+    public void trimMemory(int level) {
+        ImageLoader.trimMemory(level);
+    }
+
+    @Override
+    public MemCacheStats getMemCacheStats() {
+        return ImageLoader.getMemCacheStats();
+    }
+
     @Override
     public void clearCacheFiles() {
         ImageLoader.clearCacheFiles();
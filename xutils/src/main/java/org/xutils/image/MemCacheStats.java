@@ -0,0 +1,63 @@
+package org.xutils.image;
+
+import java.util.Locale;
+
+/**
+ * 图片内存缓存的统计信息, 用于调整一级缓存的容量.
+ * primary: 强引用的LRU缓存; secondary: 弱引用持有的已淘汰Drawable;
+ * bitmapPool: 等待被解码复用(inBitmap)的Bitmap.
+ */
+public final class MemCacheStats {
+
+    public final int primarySize;
+    public final int primaryMaxSize;
+    public final long primaryHitCount;
+    public final long primaryMissCount;
+    public final long primaryEvictionCount;
+
+    public final int secondaryCount;
+    public final long secondaryHitCount;
+    public final long secondaryMissCount;
+
+    public final int bitmapPoolSize; // 池中保留的字节数
+    public final int bitmapPoolMaxSize;
+    public final long bitmapPoolHitCount;
+    public final long bitmapPoolMissCount;
+
+    /*package*/ MemCacheStats(int primarySize, int primaryMaxSize,
+                              long primaryHitCount, long primaryMissCount, long primaryEvictionCount,
+                              int secondaryCount, long secondaryHitCount, long secondaryMissCount,
+                              int bitmapPoolSize, int bitmapPoolMaxSize,
+                              long bitmapPoolHitCount, long bitmapPoolMissCount) {
+        this.primarySize = primarySize;
+        this.primaryMaxSize = primaryMaxSize;
+        this.primaryHitCount = primaryHitCount;
+        this.primaryMissCount = primaryMissCount;
+        this.primaryEvictionCount = primaryEvictionCount;
+        this.secondaryCount = secondaryCount;
+        this.secondaryHitCount = secondaryHitCount;
+        this.secondaryMissCount = secondaryMissCount;
+        this.bitmapPoolSize = bitmapPoolSize;
+        this.bitmapPoolMaxSize = bitmapPoolMaxSize;
+        this.bitmapPoolHitCount = bitmapPoolHitCount;
+        this.bitmapPoolMissCount = bitmapPoolMissCount;
+    }
+
+    /**
+     * BitmapPool命中率(0~100)
+     */
+    public int getBitmapPoolHitPercent() {
+        long requests = bitmapPoolHitCount + bitmapPoolMissCount;
+        return requests == 0 ? 0 : (int) (100 * bitmapPoolHitCount / requests);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(),
+                "MemCacheStats[primary: size=%d/%d, hits=%d, misses=%d, evictions=%d; secondary: count=%d, hits=%d, misses=%d; " +
+                        "bitmapPool: size=%d/%d, hits=%d, misses=%d, hitRate=%d%%]",
+                primarySize, primaryMaxSize, primaryHitCount, primaryMissCount, primaryEvictionCount,
+                secondaryCount, secondaryHitCount, secondaryMissCount,
+                bitmapPoolSize, bitmapPoolMaxSize, bitmapPoolHitCount, bitmapPoolMissCount, getBitmapPoolHitPercent());
+    }
+}
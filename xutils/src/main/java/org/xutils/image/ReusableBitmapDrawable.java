@@ -8,6 +8,15 @@ import android.graphics.drawable.BitmapDrawable;
 
     private MemCacheKey key;
 
+    /**
+     * 正在显示它的ImageView数量(只统计由ImageLoader设置的)
+     */
+    private int displayRefCount = 0;
+    private boolean hasBeenDisplayed = false;
+    private boolean exposed = false;
+    private boolean cached = false;
+    private boolean pooled = false;
+
     public ReusableBitmapDrawable(Resources res, Bitmap bitmap) {
         super(res, bitmap);
     }
@@ -21,4 +30,64 @@ import android.graphics.drawable.BitmapDrawable;
     public void setMemCacheKey(MemCacheKey key) {
         this.key = key;
     }
+
+    /**
+     * ImageLoader将它设置到ImageView或从ImageView替换掉时调用.
+     */
+    /*package*/ void setDisplayed(boolean isDisplayed) {
+        synchronized (this) {
+            if (isDisplayed) {
+                displayRefCount++;
+                hasBeenDisplayed = true;
+            } else if (displayRefCount > 0) {
+                displayRefCount--;
+            }
+        }
+        checkRecycleToPool();
+    }
+
+    /**
+     * 交给调用者的回调后调用, 调用者可能持有它, 之后不再回收到BitmapPool.
+     */
+    /*package*/ synchronized void markExposed() {
+        exposed = true;
+    }
+
+    /**
+     * 放入内存缓存前调用
+     *
+     * @return false: bitmap已被放入BitmapPool, 不能再使用.
+     */
+    /*package*/ synchronized boolean markCached() {
+        if (pooled) return false;
+        cached = true;
+        return true;
+    }
+
+    /**
+     * 从内存缓存中移除后调用
+     */
+    /*package*/ void markUncached() {
+        synchronized (this) {
+            cached = false;
+        }
+        checkRecycleToPool();
+    }
+
+    /**
+     * 不在内存缓存中, 且曾经显示它的ImageView都已替换为其他Drawable时, 将bitmap放入BitmapPool.
+     * 从未被显示过或交给过调用者回调的可能被调用者持有, 不回收.
+     */
+    private void checkRecycleToPool() {
+        Bitmap bitmap;
+        synchronized (this) {
+            if (pooled || cached || exposed || !hasBeenDisplayed || displayRefCount > 0) {
+                return;
+            }
+            pooled = true;
+            key = null;
+            bitmap = getBitmap();
+        }
+        ImageDecoder.BITMAP_POOL.put(bitmap);
+    }
 }
@@ -0,0 +1,104 @@
+package org.xutils.image;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存缓存的第二级: 弱引用持有已被MEM_CACHE淘汰, 但可能还在被ImageView或AsyncDrawable使用的Drawable.
+ * 命中后重新放回MEM_CACHE, 不需要再次读取磁盘和解码.
+ */
+/*package*/ final class WeakMemCache {
+
+    private final HashMap<MemCacheKey, DrawableRef> refMap = new HashMap<MemCacheKey, DrawableRef>();
+    private final ReferenceQueue<Drawable> refQueue = new ReferenceQueue<Drawable>();
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    /*package*/ WeakMemCache() {
+    }
+
+    public synchronized void put(MemCacheKey key, Drawable drawable) {
+        if (key == null || drawable == null) return;
+        expungeStaleRefs();
+        refMap.put(key, new DrawableRef(key, drawable, refQueue));
+    }
+
+    /**
+     * 取出key对应的Drawable, 命中后从本级移除(由调用者放回MEM_CACHE).
+     */
+    public Drawable take(MemCacheKey key) {
+        Drawable result = null;
+        synchronized (this) {
+            expungeStaleRefs();
+            DrawableRef ref = refMap.remove(key);
+            if (ref != null) {
+                result = ref.get();
+            }
+        }
+
+        if (result instanceof ReusableDrawable
+                && !key.equals(((ReusableDrawable) result).getMemCacheKey())) {
+            result = null;
+        } else if (result instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) result).getBitmap();
+            if (bitmap == null || bitmap.isRecycled()) {
+                result = null;
+            }
+        }
+
+        if (result != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    public synchronized void remove(MemCacheKey key) {
+        refMap.remove(key);
+    }
+
+    public synchronized void clear() {
+        refMap.clear();
+        while (refQueue.poll() != null) ;
+    }
+
+    public synchronized int size() {
+        expungeStaleRefs();
+        return refMap.size();
+    }
+
+    public long hitCount() {
+        return hitCount.get();
+    }
+
+    public long missCount() {
+        return missCount.get();
+    }
+
+    private void expungeStaleRefs() {
+        DrawableRef ref;
+        while ((ref = (DrawableRef) refQueue.poll()) != null) {
+            // 只移除仍指向这个引用的条目, 同一个key可能已被重新放入.
+            if (refMap.get(ref.key) == ref) {
+                refMap.remove(ref.key);
+            }
+        }
+    }
+
+    private static final class DrawableRef extends WeakReference<Drawable> {
+        final MemCacheKey key;
+
+        DrawableRef(MemCacheKey key, Drawable drawable, ReferenceQueue<Drawable> queue) {
+            super(drawable, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.xutils.cache;
+
+/**
+ * 测试用的DiskCacheEntity, 文件大小只能在包内设置.
+ */
+public final class TestEntities {
+
+    private TestEntities() {
+    }
+
+    public static DiskCacheEntity create(String key, long fileSize, long lastAccess, long hits) {
+        DiskCacheEntity entity = new DiskCacheEntity();
+        entity.setKey(key);
+        entity.setFileSize(fileSize);
+        entity.setLastAccess(lastAccess);
+        entity.setHits(hits);
+        return entity;
+    }
+}
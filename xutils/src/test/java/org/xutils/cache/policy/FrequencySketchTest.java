@@ -0,0 +1,48 @@
+package org.xutils.cache.policy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void countsIncrements() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("a"));
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a");
+        }
+        sketch.increment("b");
+
+        assertEquals(5, sketch.frequency("a"));
+        assertEquals(1, sketch.frequency("b"));
+        assertEquals(0, sketch.frequency("c"));
+    }
+
+    @Test
+    public void saturatesAtMaxCount() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    public void agesOldCounts() {
+        FrequencySketch sketch = new FrequencySketch(256);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(15, sketch.frequency("hot"));
+
+        // 累计的访问次数达到width * 10后所有计数器减半
+        for (int i = 0; i < 256 * 10; i++) {
+            sketch.increment("key" + i);
+        }
+        assertTrue(sketch.frequency("hot") < 15);
+    }
+}
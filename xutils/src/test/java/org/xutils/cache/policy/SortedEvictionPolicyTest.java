@@ -0,0 +1,66 @@
+package org.xutils.cache.policy;
+
+import org.junit.Test;
+import org.xutils.cache.DiskCacheEntity;
+import org.xutils.cache.TestEntities;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SortedEvictionPolicyTest {
+
+    private static final DiskCacheEntity OLD_HOT = TestEntities.create("old-hot", 100, 1000, 9);
+    private static final DiskCacheEntity OLD_COLD = TestEntities.create("old-cold", 100, 1000, 0);
+    private static final DiskCacheEntity MIDDLE = TestEntities.create("middle", 100, 2000, 1);
+    private static final DiskCacheEntity RECENT = TestEntities.create("recent", 100, 3000, 0);
+
+    private static final List<DiskCacheEntity> CANDIDATES = Arrays.asList(OLD_HOT, OLD_COLD, MIDDLE, RECENT);
+
+    @Test
+    public void lruEvictsOldestFirst() {
+        List<DiskCacheEntity> victims = new LruEvictionPolicy().selectVictims(CANDIDATES, 3, 0L);
+        assertEquals(Arrays.asList(OLD_COLD, OLD_HOT, MIDDLE), victims);
+    }
+
+    @Test
+    public void lfuEvictsLeastHitsFirst() {
+        List<DiskCacheEntity> victims = new LfuEvictionPolicy().selectVictims(CANDIDATES, 2, 0L);
+        assertEquals(Arrays.asList(OLD_COLD, RECENT), victims);
+    }
+
+    @Test
+    public void takesUntilSizeIsFreed() {
+        List<DiskCacheEntity> victims = new LruEvictionPolicy().selectVictims(CANDIDATES, 1, 250L);
+        assertEquals(3, victims.size());
+
+        victims = new LruEvictionPolicy().selectVictims(CANDIDATES, 0, 0L);
+        assertTrue(victims.isEmpty());
+
+        victims = new LruEvictionPolicy().selectVictims(CANDIDATES, 10, 0L);
+        assertEquals(4, victims.size());
+    }
+
+    @Test
+    public void sizeWeightedEvictsLargeColdFirst() {
+        long now = System.currentTimeMillis();
+        DiskCacheEntity small = TestEntities.create("small", 1024, now - 60000, 0);
+        DiskCacheEntity large = TestEntities.create("large", 1024 * 1024, now - 60000, 0);
+        DiskCacheEntity largeHot = TestEntities.create("large-hot", 1024 * 1024, now - 60000, 1000000);
+        DiskCacheEntity largeRecent = TestEntities.create("large-recent", 1024 * 1024, now, 0);
+
+        List<DiskCacheEntity> victims = new SizeWeightedEvictionPolicy().selectVictims(
+                Arrays.asList(small, large, largeHot, largeRecent), 4, 0L);
+        assertEquals(large, victims.get(0));
+        assertEquals(largeHot, victims.get(3));
+    }
+
+    @Test
+    public void doesNotModifyCandidates() {
+        List<DiskCacheEntity> candidates = Arrays.asList(OLD_HOT, OLD_COLD, MIDDLE, RECENT);
+        new LfuEvictionPolicy().selectVictims(candidates, 4, 0L);
+        assertEquals(CANDIDATES, candidates);
+    }
+}
@@ -0,0 +1,61 @@
+package org.xutils.cache.policy;
+
+import org.junit.Test;
+import org.xutils.cache.DiskCacheEntity;
+import org.xutils.cache.TestEntities;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TinyLfuEvictionPolicyTest {
+
+    // 候选实体按lastAccess升序排列, 最后一个在窗口区中.
+    private final DiskCacheEntity newCold = TestEntities.create("new-cold", 100, 1000, 0);
+    private final DiskCacheEntity oldHot = TestEntities.create("old-hot", 100, 2000, 5);
+    private final DiskCacheEntity newPopular = TestEntities.create("new-popular", 100, 3000, 0);
+    private final DiskCacheEntity recent = TestEntities.create("recent", 100, 4000, 0);
+    private final List<DiskCacheEntity> candidates = Arrays.asList(newCold, oldHot, newPopular, recent);
+
+    private TinyLfuEvictionPolicy createPolicy() {
+        TinyLfuEvictionPolicy policy = new TinyLfuEvictionPolicy(new LruEvictionPolicy(), 1024, 1);
+        policy.recordAccess("old-hot");
+        for (int i = 0; i < 3; i++) {
+            policy.recordAccess("new-popular");
+        }
+        return policy;
+    }
+
+    @Test
+    public void rejectsColdCandidate() {
+        List<DiskCacheEntity> victims = createPolicy().selectVictims(candidates, 1, 0L);
+        assertEquals(Arrays.asList(newCold), victims);
+    }
+
+    @Test
+    public void admitsFrequentCandidate() {
+        List<DiskCacheEntity> victims = createPolicy().selectVictims(candidates, 2, 0L);
+        assertEquals(Arrays.asList(newCold, oldHot), victims);
+    }
+
+    @Test
+    public void fallsBackToAdmittedAndWindow() {
+        List<DiskCacheEntity> victims = createPolicy().selectVictims(candidates, 3, 0L);
+        assertEquals(Arrays.asList(newCold, oldHot, newPopular), victims);
+
+        victims = createPolicy().selectVictims(candidates, 4, 0L);
+        assertEquals(Arrays.asList(newCold, oldHot, newPopular, recent), victims);
+    }
+
+    @Test
+    public void takesUntilSizeIsFreed() {
+        List<DiskCacheEntity> victims = createPolicy().selectVictims(candidates, 0, 150L);
+        assertEquals(Arrays.asList(newCold, oldHot), victims);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresDelegate() {
+        new TinyLfuEvictionPolicy(null, 1024, 1);
+    }
+}
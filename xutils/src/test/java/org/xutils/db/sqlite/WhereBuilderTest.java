@@ -0,0 +1,105 @@
+package org.xutils.db.sqlite;
+
+import org.junit.Test;
+import org.xutils.common.util.KeyValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WhereBuilder生成的占位符语句和绑定参数
+ */
+public class WhereBuilderTest {
+
+    @Test
+    public void bindsValuesInOrder() {
+        WhereBuilder where = WhereBuilder.b("id", "=", 1).and("name", "!=", "a'b").or("age", ">", 18L);
+
+        assertEquals("\"id\" = ? AND \"name\" <> ? OR \"age\" > ?", where.toSql());
+        assertEquals("\"id\" = 1 AND \"name\" <> 'a''b' OR \"age\" > 18", where.toString());
+        List<KeyValue> args = where.getBindArgs();
+        assertEquals(3, args.size());
+        assertEquals(new KeyValue("id", 1), args.get(0));
+        assertEquals(new KeyValue("name", "a'b"), args.get(1));
+        assertEquals(new KeyValue("age", 18L), args.get(2));
+    }
+
+    @Test
+    public void nullValueIsNotBound() {
+        WhereBuilder where = WhereBuilder.b("path", "=", null).and("etag", "!=", null);
+
+        assertEquals("\"path\" IS NULL AND \"etag\" IS NOT NULL", where.toSql());
+        assertTrue(where.getBindArgs().isEmpty());
+    }
+
+    @Test
+    public void numericInListIsInlined() {
+        WhereBuilder where = WhereBuilder.b("id", "IN", new long[]{1L, 2L, 3L});
+
+        assertEquals("\"id\" IN (1,2,3)", where.toSql());
+        assertTrue(where.getBindArgs().isEmpty());
+    }
+
+    @Test
+    public void textInListIsBound() {
+        WhereBuilder where = WhereBuilder.b("key", "IN", Arrays.asList("a", "b"));
+
+        assertEquals("\"key\" IN (?,?)", where.toSql());
+        assertEquals(Arrays.asList(new KeyValue("key", "a"), new KeyValue("key", "b")), where.getBindArgs());
+    }
+
+    @Test
+    public void largeTextInListIsInlined() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 501; i++) {
+            keys.add("k" + i);
+        }
+        keys.add("it's");
+        WhereBuilder where = WhereBuilder.b("key", "IN", keys);
+
+        String sql = where.toSql();
+        assertTrue(sql.startsWith("\"key\" IN ('k0','k1',"));
+        assertTrue(sql.endsWith(",'k500','it''s')"));
+        assertTrue(where.getBindArgs().isEmpty());
+    }
+
+    @Test
+    public void betweenBindsBothEnds() {
+        WhereBuilder where = WhereBuilder.b("expires", "BETWEEN", new Object[]{10L, "20"});
+
+        assertEquals("\"expires\" BETWEEN ? AND ?", where.toSql());
+        assertEquals(Arrays.asList(new KeyValue("expires", 10L), new KeyValue("expires", "20")),
+                where.getBindArgs());
+    }
+
+    @Test
+    public void nestedWhereKeepsArgOrder() {
+        WhereBuilder inner = WhereBuilder.b("b", "=", "x").or("c", "LIKE", "y%");
+        WhereBuilder where = WhereBuilder.b("a", "=", 1).and(inner).expr("AND \"d\" > 0");
+
+        assertEquals("\"a\" = ? AND (\"b\" = ? OR \"c\" LIKE ?) AND \"d\" > 0", where.toSql());
+        List<KeyValue> args = where.getBindArgs();
+        assertEquals(3, args.size());
+        assertEquals("a", args.get(0).key);
+        assertEquals("x", args.get(1).value);
+        assertEquals("y%", args.get(2).value);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void inRequiresArrayOrIterable() {
+        WhereBuilder.b("id", "IN", 1);
+    }
+
+    @Test
+    public void emptyWhere() {
+        WhereBuilder where = WhereBuilder.b();
+
+        assertEquals("", where.toSql());
+        assertEquals(0, where.getWhereItemSize());
+        assertTrue(where.getBindArgs().isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+package org.xutils.http.loader;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentDownloaderTest {
+
+    private static final long TOTAL = 3000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String saveFilePath;
+    private File dataFile;
+    private File stateFile;
+
+    @Before
+    public void setUp() throws IOException {
+        saveFilePath = new File(folder.getRoot(), "file.bin").getAbsolutePath();
+        dataFile = new File(saveFilePath + ".seg.tmp");
+        stateFile = new File(saveFilePath + ".seg.cfg");
+    }
+
+    @Test
+    public void parsesContentRange() {
+        assertArrayEquals(new long[]{0L, 999L, 3000L}, SegmentDownloader.parseContentRange("bytes 0-999/3000"));
+        assertArrayEquals(new long[]{100L, 199L, -1L}, SegmentDownloader.parseContentRange(" bytes 100 - 199/*"));
+        assertArrayEquals(new long[]{0L, 0L, 1L}, SegmentDownloader.parseContentRange("bytes 0-0/1"));
+    }
+
+    @Test
+    public void rejectsMalformedContentRange() {
+        assertNull(SegmentDownloader.parseContentRange(null));
+        assertNull(SegmentDownloader.parseContentRange(""));
+        assertNull(SegmentDownloader.parseContentRange("items 0-1/2"));
+        assertNull(SegmentDownloader.parseContentRange("bytes=0-1/2"));
+        assertNull(SegmentDownloader.parseContentRange("bytes */3000"));
+        assertNull(SegmentDownloader.parseContentRange("bytes 0-999"));
+        assertNull(SegmentDownloader.parseContentRange("bytes a-b/3000"));
+        assertNull(SegmentDownloader.parseContentRange("bytes 0-1/x"));
+    }
+
+    @Test
+    public void resumesFromFirstUnfinishedSegment() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\"etag\"\n0 999 1000\n1000 1999 1500\n2000 2999 2000\n");
+
+        SegmentDownloader downloader = new SegmentDownloader(saveFilePath, 3, true);
+
+        assertEquals("bytes=1500-1999", downloader.getResumeRange());
+        assertTrue(dataFile.exists());
+        assertTrue(stateFile.exists());
+    }
+
+    @Test
+    public void discardsStateWithoutAutoResume() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999 500\n1000 2999 1000\n");
+
+        SegmentDownloader downloader = new SegmentDownloader(saveFilePath, 3, false);
+
+        assertNull(downloader.getResumeRange());
+        assertFalse(dataFile.exists());
+        assertFalse(stateFile.exists());
+    }
+
+    @Test
+    public void rejectsDataFileOfOtherLength() throws IOException {
+        writeData(TOTAL - 1);
+        writeState("1\n3000\n\n0 999 500\n1000 2999 1000\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsSegmentGap() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999 500\n1001 2999 1001\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsSegmentsNotCoveringFile() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999 500\n1000 1999 1000\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsPositionOutOfSegment() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999 1001\n1000 2999 1000\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsOtherVersion() throws IOException {
+        writeData(TOTAL);
+        writeState("0\n3000\n\n0 999 500\n1000 2999 1000\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsFinishedState() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999 1000\n1000 2999 3000\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    @Test
+    public void rejectsBrokenState() throws IOException {
+        writeData(TOTAL);
+        writeState("1\n3000\n\n0 999\n");
+
+        assertDiscarded(new SegmentDownloader(saveFilePath, 3, true));
+    }
+
+    private void assertDiscarded(SegmentDownloader downloader) {
+        assertNull(downloader.getResumeRange());
+        assertFalse(dataFile.exists());
+        assertFalse(stateFile.exists());
+    }
+
+    private void writeData(long length) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(dataFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeState(String state) throws IOException {
+        FileOutputStream out = new FileOutputStream(stateFile);
+        try {
+            out.write(state.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.xutils.http.request;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 使用本地回环连接测试空闲连接的复用和回收
+ */
+public class ConnectionPoolTest {
+
+    private static final String ROUTE_A = "http://127.0.0.1:1";
+    private static final String ROUTE_B = "http://127.0.0.1:2";
+
+    private ServerSocket server;
+    private final List<Socket> serverSockets = new ArrayList<Socket>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Socket socket : serverSockets) {
+            socket.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void reusesIdleConnection() throws IOException {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        assertNull(pool.get(ROUTE_A));
+        assertEquals(1, pool.getConnectCount());
+
+        RealConnection conn = connect(ROUTE_A);
+        pool.put(conn);
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(conn, pool.get(ROUTE_A));
+        assertEquals(1, conn.useCount);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(1, pool.getConnectCount());
+    }
+
+    @Test
+    public void separatesRoutes() throws IOException {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        RealConnection conn = connect(ROUTE_A);
+        pool.put(conn);
+
+        assertNull(pool.get(ROUTE_B));
+        assertSame(conn, pool.get(ROUTE_A));
+    }
+
+    @Test
+    public void returnsMostRecentFirst() throws IOException {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        RealConnection first = connect(ROUTE_A);
+        RealConnection second = connect(ROUTE_A);
+        pool.put(first);
+        pool.put(second);
+
+        assertSame(second, pool.get(ROUTE_A));
+        assertSame(first, pool.get(ROUTE_A));
+        assertNull(pool.get(ROUTE_A));
+    }
+
+    @Test
+    public void limitsIdlePerRoute() throws IOException {
+        ConnectionPool pool = new ConnectionPool(1, 60000);
+        RealConnection first = connect(ROUTE_A);
+        RealConnection second = connect(ROUTE_A);
+        RealConnection other = connect(ROUTE_B);
+        pool.put(first);
+        pool.put(second);
+        pool.put(other);
+
+        assertEquals(2, pool.getIdleCount());
+        assertTrue(first.socket.isClosed());
+        assertFalse(second.socket.isClosed());
+    }
+
+    @Test
+    public void closesInsteadOfPoolingWhenDisabled() throws IOException {
+        ConnectionPool pool = new ConnectionPool(0, 60000);
+        RealConnection conn = connect(ROUTE_A);
+        pool.put(conn);
+
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(conn.socket.isClosed());
+    }
+
+    @Test
+    public void dropsClosedConnectionOnPut() throws IOException {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        RealConnection conn = connect(ROUTE_A);
+        conn.close();
+        pool.put(conn);
+
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void evictsExpiredConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(5, 50);
+        RealConnection conn = connect(ROUTE_A);
+        pool.put(conn);
+        Thread.sleep(100);
+
+        assertNull(pool.get(ROUTE_A));
+        assertTrue(conn.socket.isClosed());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void skipsConnectionClosedByServer() throws Exception {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        RealConnection healthy = connect(ROUTE_A);
+        RealConnection stale = connect(ROUTE_A);
+        pool.put(healthy);
+        pool.put(stale);
+        serverSockets.get(1).close();
+        Thread.sleep(50);
+
+        assertSame(healthy, pool.get(ROUTE_A));
+        assertTrue(stale.socket.isClosed());
+        assertEquals(1, pool.getReuseCount());
+    }
+
+    @Test
+    public void evictAllClosesIdleConnections() throws IOException {
+        ConnectionPool pool = new ConnectionPool(5, 60000);
+        RealConnection first = connect(ROUTE_A);
+        RealConnection second = connect(ROUTE_B);
+        pool.put(first);
+        pool.put(second);
+        pool.evictAll();
+
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(first.socket.isClosed());
+        assertTrue(second.socket.isClosed());
+        assertNull(pool.get(ROUTE_A));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeIdleCount() {
+        new ConnectionPool(-1, 60000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveKeepAlive() {
+        new ConnectionPool(5, 0);
+    }
+
+    private RealConnection connect(String poolKey) throws IOException {
+        Socket socket = new Socket(server.getInetAddress(), server.getLocalPort());
+        serverSockets.add(server.accept());
+        return new RealConnection(poolKey, socket, false);
+    }
+}